@@ -51,6 +51,16 @@ public class RssSparkConfig {
               "The timeout of spilling data to remote shuffle server, "
                   + "which will be triggered by Spark TaskMemoryManager. Unit is sec, default value is 1");
 
+  public static final ConfigOption<Integer> RSS_WRITER_COMPRESS_THREADS =
+      ConfigOptions.key("rss.writer.compress.threads")
+          .intType()
+          .checkValue(value -> value >= 0, "compress threads must be non-negative")
+          .defaultValue(0)
+          .withDescription(
+              "The number of threads shared by the tasks of an executor to compress the shuffle "
+                  + "blocks, so the tasks don't wait for the compression. "
+                  + "The blocks are compressed in the task threads if it's 0");
+
   public static final ConfigOption<Boolean> RSS_ROW_BASED =
       ConfigOptions.key("rss.row.based")
           .booleanType()
@@ -96,6 +106,18 @@ public class RssSparkConfig {
       createStringBuilder(new ConfigBuilder("spark.rss.writer.pre.allocated.buffer.size"))
           .createWithDefault("16m");
 
+  public static final ConfigEntry<Boolean> RSS_WRITER_BUFFER_OFF_HEAP_ENABLED =
+      createBooleanBuilder(
+              new ConfigBuilder("spark.rss.writer.buffer.offHeap.enabled")
+                  .doc(
+                      "Whether to keep the shuffle data of the writer buffers in the direct "
+                          + "memory, which is acquired from the off heap memory of Spark, it "
+                          + "only takes effect when spark.memory.offHeap.enabled is true. The "
+                          + "data is allocated from the pooled direct memory of Netty, which is "
+                          + "limited by io.netty.maxDirectMemory or -XX:MaxDirectMemorySize "
+                          + "separately, spark.memory.offHeap.size only accounts for it"))
+          .createWithDefault(false);
+
   public static final ConfigEntry<Integer> RSS_WRITER_REQUIRE_MEMORY_RETRY_MAX =
       createIntegerBuilder(new ConfigBuilder("spark.rss.writer.require.memory.retryMax"))
           .createWithDefault(1200);
@@ -113,7 +135,10 @@ public class RssSparkConfig {
   public static final ConfigEntry<Long> RSS_CLIENT_SEND_CHECK_INTERVAL_MS =
       createLongBuilder(
               new ConfigBuilder(
-                  SPARK_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_SEND_CHECK_INTERVAL_MS))
+                      SPARK_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_SEND_CHECK_INTERVAL_MS)
+                  .doc(
+                      "Deprecated, it's ignored as the writer is woken up once the blocks are "
+                          + "sent or any of them fails instead of checking them periodically"))
           .createWithDefault(RssClientConfig.RSS_CLIENT_SEND_CHECK_INTERVAL_MS_DEFAULT_VALUE);
 
   public static final ConfigEntry<Boolean> RSS_TEST_FLAG =
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.shuffle.writer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.uniffle.common.exception.RssException;
+
+/**
+ * Checks the result of the blocks sent by a task. The futures of the events sent to the shuffle
+ * servers are completed once the events are processed, so the task waits on them instead of
+ * polling the number of the sent blocks, and it's woken up as soon as all the blocks are sent or
+ * any of them fails.
+ */
+public class BlockSendResultChecker {
+  private static final Logger LOG = LoggerFactory.getLogger(BlockSendResultChecker.class);
+
+  private final String taskId;
+  private final long sendCheckTimeout;
+  private final LongSupplier successBlockNum;
+  private final LongSupplier failedBlockNum;
+  private final List<CompletableFuture<Long>> sendFutures = new ArrayList<>();
+
+  public BlockSendResultChecker(
+      String taskId,
+      long sendCheckTimeout,
+      LongSupplier successBlockNum,
+      LongSupplier failedBlockNum) {
+    this.taskId = taskId;
+    this.sendCheckTimeout = sendCheckTimeout;
+    this.successBlockNum = successBlockNum;
+    this.failedBlockNum = failedBlockNum;
+  }
+
+  public void addSendFutures(List<CompletableFuture<Long>> futures) {
+    sendFutures.addAll(futures);
+  }
+
+  /** Wait until the given number of blocks are sent, throw RssException if they can't be sent. */
+  public void checkBlockSendResult(long blockNum) {
+    checkIfBlocksFailed();
+    // only the blocks of this task are counted, if all of them are sent, all data are sent
+    if (blockNum - successBlockNum.getAsLong() <= 0) {
+      return;
+    }
+    // wake up once all the events are processed, or any of them fails
+    CompletableFuture<Void> allSent =
+        CompletableFuture.allOf(sendFutures.toArray(new CompletableFuture[0]));
+    CompletableFuture<Void> anyFailed = new CompletableFuture<>();
+    for (CompletableFuture<Long> future : sendFutures) {
+      future.whenComplete(
+          (memory, e) -> {
+            if (e != null) {
+              anyFailed.completeExceptionally(e);
+            } else if (failedBlockNum.getAsLong() > 0) {
+              anyFailed.complete(null);
+            }
+          });
+    }
+    try {
+      CompletableFuture.anyOf(allSent, anyFailed).get(sendCheckTimeout, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      // the blocks which aren't sent are reported below
+    } catch (ExecutionException e) {
+      String errorMsg =
+          "Send failed: Task[" + taskId + "] failed because of the error in sending blocks.";
+      LOG.error(errorMsg, e.getCause());
+      throw new RssException(errorMsg, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RssException("Interrupted when waiting for the blocks sent of task " + taskId, e);
+    }
+    checkIfBlocksFailed();
+    long remainingBlockNum = blockNum - successBlockNum.getAsLong();
+    if (remainingBlockNum > 0) {
+      String errorMsg =
+          "Timeout: Task["
+              + taskId
+              + "] failed because "
+              + remainingBlockNum
+              + " blocks can't be sent to shuffle server in "
+              + sendCheckTimeout
+              + " ms.";
+      LOG.error(errorMsg);
+      throw new RssException(errorMsg);
+    }
+  }
+
+  // if failed when send data to shuffle server, mark task as failed
+  public void checkIfBlocksFailed() {
+    long failedNum = failedBlockNum.getAsLong();
+    if (failedNum > 0) {
+      String errorMsg =
+          "Send failed: Task["
+              + taskId
+              + "] failed because "
+              + failedNum
+              + " blocks can't be sent to shuffle server.";
+      LOG.error(errorMsg);
+      throw new RssException(errorMsg);
+    }
+  }
+}
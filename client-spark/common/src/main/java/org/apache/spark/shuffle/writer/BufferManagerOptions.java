@@ -35,6 +35,7 @@ public class BufferManagerOptions {
   private long preAllocatedBufferSize;
   private long requireMemoryInterval;
   private int requireMemoryRetryMax;
+  private boolean offHeapEnabled;
 
   public BufferManagerOptions(SparkConf sparkConf) {
     bufferSize =
@@ -59,6 +60,7 @@ public class BufferManagerOptions {
             RssSparkConfig.RSS_WRITER_PRE_ALLOCATED_BUFFER_SIZE.defaultValue().get());
     requireMemoryInterval = sparkConf.get(RssSparkConfig.RSS_WRITER_REQUIRE_MEMORY_INTERVAL);
     requireMemoryRetryMax = sparkConf.get(RssSparkConfig.RSS_WRITER_REQUIRE_MEMORY_RETRY_MAX);
+    offHeapEnabled = sparkConf.get(RssSparkConfig.RSS_WRITER_BUFFER_OFF_HEAP_ENABLED);
     LOG.info(RssSparkConfig.RSS_WRITER_BUFFER_SIZE.key() + "=" + bufferSize);
     LOG.info(RssSparkConfig.RSS_WRITER_BUFFER_SPILL_SIZE.key() + "=" + bufferSpillThreshold);
     LOG.info(
@@ -126,4 +128,8 @@ public class BufferManagerOptions {
   public int getRequireMemoryRetryMax() {
     return requireMemoryRetryMax;
   }
+
+  public boolean isOffHeapEnabled() {
+    return offHeapEnabled;
+  }
 }
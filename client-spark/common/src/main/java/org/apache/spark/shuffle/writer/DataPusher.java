@@ -30,7 +30,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Queues;
-import com.google.common.collect.Sets;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,10 +52,10 @@ public class DataPusher implements Closeable {
   private final ExecutorService executorService;
 
   private final ShuffleWriteClient shuffleWriteClient;
-  // Must be thread safe
-  private final Map<String, Set<Long>> taskToSuccessBlockIds;
-  // Must be thread safe
-  private final Map<String, Set<Long>> taskToFailedBlockIds;
+  // Must be thread safe, the bitmaps are guarded by themselves
+  private final Map<String, Roaring64NavigableMap> taskToSuccessBlockIds;
+  // Must be thread safe, the bitmaps are guarded by themselves
+  private final Map<String, Roaring64NavigableMap> taskToFailedBlockIds;
   private final Map<String, Map<Long, List<ShuffleServerInfo>>> taskToFailedBlockIdsAndServer;
   private String rssAppId;
   // Must be thread safe
@@ -63,8 +63,8 @@ public class DataPusher implements Closeable {
 
   public DataPusher(
       ShuffleWriteClient shuffleWriteClient,
-      Map<String, Set<Long>> taskToSuccessBlockIds,
-      Map<String, Set<Long>> taskToFailedBlockIds,
+      Map<String, Roaring64NavigableMap> taskToSuccessBlockIds,
+      Map<String, Roaring64NavigableMap> taskToFailedBlockIds,
       Map<String, Map<Long, List<ShuffleServerInfo>>> taskToFailedBlockIdsAndServer,
       Set<String> failedTaskIds,
       int threadPoolSize,
@@ -116,13 +116,17 @@ public class DataPusher implements Closeable {
   }
 
   private synchronized void putBlockId(
-      Map<String, Set<Long>> taskToBlockIds, String taskAttemptId, Set<Long> blockIds) {
+      Map<String, Roaring64NavigableMap> taskToBlockIds,
+      String taskAttemptId,
+      Set<Long> blockIds) {
     if (blockIds == null || blockIds.isEmpty()) {
       return;
     }
-    taskToBlockIds
-        .computeIfAbsent(taskAttemptId, x -> Sets.newConcurrentHashSet())
-        .addAll(blockIds);
+    Roaring64NavigableMap bitmap =
+        taskToBlockIds.computeIfAbsent(taskAttemptId, x -> Roaring64NavigableMap.bitmapOf());
+    synchronized (bitmap) {
+      blockIds.forEach(bitmap::addLong);
+    }
   }
 
   private synchronized void putSendFailedBlockIdAndShuffleServer(
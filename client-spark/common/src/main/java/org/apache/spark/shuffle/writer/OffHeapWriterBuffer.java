@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.shuffle.writer;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * The {@link WriterBuffer} which keeps the records in the direct buffers, so the serialized records
+ * of the partitions are not kept in the heap, and they are compressed from the direct buffers
+ * without being copied to a byte array.
+ */
+public class OffHeapWriterBuffer extends WriterBuffer {
+
+  private final ByteBufAllocator allocator;
+  private ByteBuf buffer;
+  private List<ByteBuf> buffers = Lists.newArrayList();
+
+  public OffHeapWriterBuffer(int bufferSize, ByteBufAllocator allocator) {
+    super(bufferSize);
+    this.allocator = allocator;
+  }
+
+  @Override
+  public void addRecord(byte[] recordBuffer, int length) {
+    if (askForMemory(length)) {
+      // buffer has data already, add buffer to list
+      if (nextOffset > 0) {
+        buffers.add(buffer);
+        nextOffset = 0;
+      } else if (buffer != null) {
+        buffer.release();
+      }
+      int newBufferSize = Math.max(length, bufferSize);
+      buffer = allocator.directBuffer(newBufferSize, newBufferSize);
+      memoryUsed += newBufferSize;
+    }
+    buffer.writeBytes(recordBuffer, 0, length);
+    nextOffset += length;
+    dataLength += length;
+  }
+
+  @Override
+  public boolean askForMemory(long length) {
+    return buffer == null || nextOffset + length > bufferSize;
+  }
+
+  /**
+   * Get the data in one direct buffer, which is owned by the caller then. The buffers of this
+   * writer buffer are released, it can't be used anymore.
+   */
+  public ByteBuf getDataBuffer() {
+    if (buffers.isEmpty()) {
+      ByteBuf data = buffer;
+      buffer = null;
+      return data;
+    }
+    long start = System.currentTimeMillis();
+    ByteBuf data = allocator.directBuffer(dataLength, dataLength);
+    for (ByteBuf segment : buffers) {
+      data.writeBytes(segment);
+      segment.release();
+    }
+    buffers.clear();
+    data.writeBytes(buffer);
+    buffer.release();
+    buffer = null;
+    copyTime += System.currentTimeMillis() - start;
+    return data;
+  }
+
+  @Override
+  public byte[] getData() {
+    byte[] data = new byte[dataLength];
+    int offset = 0;
+    for (ByteBuf segment : buffers) {
+      segment.getBytes(segment.readerIndex(), data, offset, segment.readableBytes());
+      offset += segment.readableBytes();
+    }
+    buffer.getBytes(buffer.readerIndex(), data, offset, buffer.readableBytes());
+    return data;
+  }
+
+  /** Release the direct buffers which are not taken by {@link #getDataBuffer()}. */
+  public void release() {
+    buffers.forEach(ByteBuf::release);
+    buffers.clear();
+    if (buffer != null) {
+      buffer.release();
+      buffer = null;
+    }
+  }
+}
@@ -17,13 +17,17 @@
 
 package org.apache.spark.shuffle.writer;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -35,6 +39,8 @@ import scala.reflect.ManifestFactory$;
 import com.clearspring.analytics.util.Lists;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import org.apache.spark.executor.ShuffleWriteMetrics;
 import org.apache.spark.memory.MemoryConsumer;
 import org.apache.spark.memory.MemoryMode;
@@ -53,10 +59,13 @@ import org.apache.uniffle.common.compression.Codec;
 import org.apache.uniffle.common.config.RssConf;
 import org.apache.uniffle.common.exception.RssException;
 import org.apache.uniffle.common.util.ChecksumUtils;
+import org.apache.uniffle.common.util.ThreadUtils;
 
 public class WriteBufferManager extends MemoryConsumer {
 
   private static final Logger LOG = LoggerFactory.getLogger(WriteBufferManager.class);
+  // the compression workers shared by all the tasks of the executor
+  private static ExecutorService compressExecutor;
   private int bufferSize;
   private long spillSize;
   // allocated bytes from executor memory
@@ -78,9 +87,9 @@ public class WriteBufferManager extends MemoryConsumer {
   private Map<Integer, List<ShuffleServerInfo>> partitionToServers;
   private int serializerBufferSize;
   private int bufferSegmentSize;
-  private long copyTime = 0;
+  private AtomicLong copyTime = new AtomicLong(0);
   private long serializeTime = 0;
-  private long compressTime = 0;
+  private AtomicLong compressTime = new AtomicLong(0);
   private long writeTime = 0;
   private long estimateTime = 0;
   private long requireMemoryTime = 0;
@@ -95,6 +104,12 @@ public class WriteBufferManager extends MemoryConsumer {
   private boolean memorySpillEnabled;
   private int memorySpillTimeoutSec;
   private boolean isRowBased;
+  // the records are kept in the direct buffers if the off heap memory is acquired
+  private boolean offHeap;
+  // the blocks being compressed by the compression workers, in the order they're handed off
+  private Deque<CompletableFuture<ShuffleBlockInfo>> compressingBlocks = new ArrayDeque<>();
+  private int maxCompressingBlocks;
+  private ExecutorService executor;
 
   public WriteBufferManager(
       int shuffleId,
@@ -129,7 +144,11 @@ public class WriteBufferManager extends MemoryConsumer {
       ShuffleWriteMetrics shuffleWriteMetrics,
       RssConf rssConf,
       Function<List<ShuffleBlockInfo>, List<CompletableFuture<Long>>> spillFunc) {
-    super(taskMemoryManager, taskMemoryManager.pageSizeBytes(), MemoryMode.ON_HEAP);
+    super(
+        taskMemoryManager,
+        taskMemoryManager.pageSizeBytes(),
+        getMemoryMode(bufferManagerOptions, taskMemoryManager));
+    this.offHeap = getMode() == MemoryMode.OFF_HEAP;
     this.bufferSize = bufferManagerOptions.getBufferSize();
     this.spillSize = bufferManagerOptions.getBufferSpillThreshold();
     this.buffers = Maps.newHashMap();
@@ -160,6 +179,32 @@ public class WriteBufferManager extends MemoryConsumer {
     this.sendSizeLimit = rssConf.get(RssSparkConfig.RSS_CLIENT_SEND_SIZE_LIMITATION);
     this.memorySpillTimeoutSec = rssConf.get(RssSparkConfig.RSS_MEMORY_SPILL_TIMEOUT);
     this.memorySpillEnabled = rssConf.get(RssSparkConfig.RSS_MEMORY_SPILL_ENABLED);
+    int compressThreads = rssConf.get(RssSparkConfig.RSS_WRITER_COMPRESS_THREADS);
+    if (compressThreads > 0) {
+      this.executor = getCompressExecutor(compressThreads);
+      this.maxCompressingBlocks = compressThreads * 2;
+    }
+  }
+
+  private static synchronized ExecutorService getCompressExecutor(int threads) {
+    if (compressExecutor == null) {
+      compressExecutor = ThreadUtils.getDaemonFixedThreadPool(threads, "rssWriterCompress");
+    }
+    return compressExecutor;
+  }
+
+  private static MemoryMode getMemoryMode(
+      BufferManagerOptions bufferManagerOptions, TaskMemoryManager taskMemoryManager) {
+    if (!bufferManagerOptions.isOffHeapEnabled()) {
+      return MemoryMode.ON_HEAP;
+    }
+    if (taskMemoryManager.getTungstenMemoryMode() != MemoryMode.OFF_HEAP) {
+      LOG.warn(
+          "The writer buffers are kept in the heap, because the off heap memory of Spark is "
+              + "disabled, please set spark.memory.offHeap.enabled and spark.memory.offHeap.size");
+      return MemoryMode.ON_HEAP;
+    }
+    return MemoryMode.OFF_HEAP;
   }
 
   /** add serialized columnar data directly when integrate with gluten */
@@ -180,6 +225,11 @@ public class WriteBufferManager extends MemoryConsumer {
       writeTime += System.currentTimeMillis() - start;
       return multiSendingBlocks;
     }
+    if (!compressingBlocks.isEmpty()) {
+      // hand out the compressed blocks, the task waits only if too many blocks are pending
+      singleOrEmptySendingBlocks = new ArrayList<>();
+      collectCompressedBlocks(singleOrEmptySendingBlocks, maxCompressingBlocks);
+    }
     writeTime += System.currentTimeMillis() - start;
     return singleOrEmptySendingBlocks;
   }
@@ -217,8 +267,7 @@ public class WriteBufferManager extends MemoryConsumer {
       wb.addRecord(serializedData, serializedDataLength);
       if (wb.getMemoryUsed() > bufferSize) {
         List<ShuffleBlockInfo> sentBlocks = new ArrayList<>(1);
-        sentBlocks.add(createShuffleBlock(partitionId, wb));
-        copyTime += wb.getCopyTime();
+        handOff(partitionId, wb, sentBlocks);
         buffers.remove(partitionId);
         if (LOG.isDebugEnabled()) {
           LOG.debug(
@@ -243,7 +292,10 @@ public class WriteBufferManager extends MemoryConsumer {
       }
       usedBytes.addAndGet(required);
 
-      WriterBuffer wb = new WriterBuffer(bufferSegmentSize);
+      WriterBuffer wb =
+          offHeap
+              ? new OffHeapWriterBuffer(bufferSegmentSize, PooledByteBufAllocator.DEFAULT)
+              : new WriterBuffer(bufferSegmentSize);
       wb.addRecord(serializedData, serializedDataLength);
       buffers.put(partitionId, wb);
     }
@@ -292,10 +344,11 @@ public class WriteBufferManager extends MemoryConsumer {
       WriterBuffer wb = entry.getValue();
       dataSize += wb.getDataLength();
       memoryUsed += wb.getMemoryUsed();
-      result.add(createShuffleBlock(entry.getKey(), wb));
+      handOff(entry.getKey(), wb, result);
       iterator.remove();
-      copyTime += wb.getCopyTime();
     }
+    // wait for all the blocks being compressed
+    collectCompressedBlocks(result, 0);
     LOG.info(
         "Flush total buffer for shuffleId["
             + shuffleId
@@ -309,23 +362,69 @@ public class WriteBufferManager extends MemoryConsumer {
     return result;
   }
 
+  /**
+   * Hand off the filled buffer to be transformed to a shuffleBlock. The block id is decided here,
+   * so the sequence numbers of a partition follow the order of its buffers no matter which
+   * compression worker finishes first. The block is added to the result at once if there are no
+   * compression workers, otherwise it's collected by {@link #collectCompressedBlocks}.
+   */
+  private void handOff(int partitionId, WriterBuffer wb, List<ShuffleBlockInfo> result) {
+    if (executor == null) {
+      result.add(createShuffleBlock(partitionId, wb));
+      return;
+    }
+    final long blockId =
+        ClientUtils.getBlockId(partitionId, taskAttemptId, getNextSeqNo(partitionId));
+    // add memory to indicate bytes which will be sent to shuffle server
+    inSendListBytes.addAndGet(wb.getMemoryUsed());
+    compressingBlocks.addLast(
+        CompletableFuture.supplyAsync(() -> encode(partitionId, blockId, wb), executor));
+  }
+
+  // collect the compressed blocks in order, until at most maxPending blocks are being compressed
+  private void collectCompressedBlocks(List<ShuffleBlockInfo> result, int maxPending) {
+    while (!compressingBlocks.isEmpty()
+        && (compressingBlocks.size() > maxPending || compressingBlocks.peekFirst().isDone())) {
+      try {
+        result.add(onBlockCreated(compressingBlocks.peekFirst().join()));
+      } catch (CompletionException e) {
+        throw new RssException("Failed to compress the shuffle block", e.getCause());
+      } finally {
+        compressingBlocks.pollFirst();
+      }
+    }
+  }
+
+  // the metrics of the task are only updated in the task thread
+  private ShuffleBlockInfo onBlockCreated(ShuffleBlockInfo block) {
+    uncompressedDataLen += block.getUncompressLength();
+    shuffleWriteMetrics.incBytesWritten(block.getLength());
+    return block;
+  }
+
   // transform records to shuffleBlock
   protected ShuffleBlockInfo createShuffleBlock(int partitionId, WriterBuffer wb) {
+    final long blockId =
+        ClientUtils.getBlockId(partitionId, taskAttemptId, getNextSeqNo(partitionId));
+    // add memory to indicate bytes which will be sent to shuffle server
+    inSendListBytes.addAndGet(wb.getMemoryUsed());
+    return onBlockCreated(encode(partitionId, blockId, wb));
+  }
+
+  private ShuffleBlockInfo encode(int partitionId, long blockId, WriterBuffer wb) {
+    if (wb instanceof OffHeapWriterBuffer) {
+      return encodeOffHeap(partitionId, blockId, (OffHeapWriterBuffer) wb);
+    }
     byte[] data = wb.getData();
+    copyTime.addAndGet(wb.getCopyTime());
     final int uncompressLength = data.length;
     byte[] compressed = data;
     if (codec != null) {
       long start = System.currentTimeMillis();
       compressed = codec.compress(data);
-      compressTime += System.currentTimeMillis() - start;
+      compressTime.addAndGet(System.currentTimeMillis() - start);
     }
     final long crc32 = ChecksumUtils.getCrc32(compressed);
-    final long blockId =
-        ClientUtils.getBlockId(partitionId, taskAttemptId, getNextSeqNo(partitionId));
-    uncompressedDataLen += data.length;
-    shuffleWriteMetrics.incBytesWritten(compressed.length);
-    // add memory to indicate bytes which will be sent to shuffle server
-    inSendListBytes.addAndGet(wb.getMemoryUsed());
     return new ShuffleBlockInfo(
         shuffleId,
         partitionId,
@@ -339,7 +438,44 @@ public class WriteBufferManager extends MemoryConsumer {
         taskAttemptId);
   }
 
-  // it's run in single thread, and is not thread safe
+  // compress the records from the direct buffers into a pooled direct buffer
+  private ShuffleBlockInfo encodeOffHeap(int partitionId, long blockId, OffHeapWriterBuffer wb) {
+    ByteBuf data = wb.getDataBuffer();
+    copyTime.addAndGet(wb.getCopyTime());
+    final int uncompressLength = data.readableBytes();
+    ByteBuf compressed = data;
+    if (codec != null) {
+      long start = System.currentTimeMillis();
+      int maxLength = codec.maxCompressedLength(uncompressLength);
+      compressed = PooledByteBufAllocator.DEFAULT.directBuffer(maxLength, maxLength);
+      try {
+        int compressedLength =
+            codec.compress(data.nioBuffer(), compressed.nioBuffer(0, compressed.capacity()));
+        compressed.writerIndex(compressedLength);
+      } catch (Throwable e) {
+        compressed.release();
+        throw e;
+      } finally {
+        data.release();
+      }
+      compressTime.addAndGet(System.currentTimeMillis() - start);
+    }
+    final int compressedLength = compressed.readableBytes();
+    final long crc32 = ChecksumUtils.getCrc32(compressed.nioBuffer());
+    return new ShuffleBlockInfo(
+        shuffleId,
+        partitionId,
+        blockId,
+        compressedLength,
+        crc32,
+        compressed,
+        partitionToServers.get(partitionId),
+        uncompressLength,
+        wb.getMemoryUsed(),
+        taskAttemptId);
+  }
+
+  // it's run in the task thread, and is not thread safe
   private int getNextSeqNo(int partitionId) {
     partitionToSeqNo.putIfAbsent(partitionId, 0);
     int seqNo = partitionToSeqNo.get(partitionId);
@@ -513,6 +649,17 @@ public class WriteBufferManager extends MemoryConsumer {
   }
 
   public void freeAllMemory() {
+    // the blocks being compressed are dropped once they're done
+    for (CompletableFuture<ShuffleBlockInfo> future : compressingBlocks) {
+      future.thenAccept(block -> block.getData().release());
+    }
+    compressingBlocks.clear();
+    // the direct buffers of the records which are never sent
+    for (WriterBuffer wb : buffers.values()) {
+      if (wb instanceof OffHeapWriterBuffer) {
+        ((OffHeapWriterBuffer) wb).release();
+      }
+    }
     long memory = allocatedBytes.get();
     if (memory > 0) {
       freeMemory(memory);
@@ -26,13 +26,13 @@ import org.slf4j.LoggerFactory;
 public class WriterBuffer {
 
   private static final Logger LOG = LoggerFactory.getLogger(WriterBuffer.class);
-  private long copyTime = 0;
+  protected long copyTime = 0;
   private byte[] buffer;
-  private int bufferSize;
-  private int nextOffset = 0;
+  protected int bufferSize;
+  protected int nextOffset = 0;
   private List<WrappedBuffer> buffers = Lists.newArrayList();
-  private int dataLength = 0;
-  private int memoryUsed = 0;
+  protected int dataLength = 0;
+  protected int memoryUsed = 0;
 
   public WriterBuffer(int bufferSize) {
     this.bufferSize = bufferSize;
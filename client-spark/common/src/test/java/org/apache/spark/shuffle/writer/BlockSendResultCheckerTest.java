@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.spark.shuffle.writer;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.jupiter.api.Test;
+
+import org.apache.uniffle.common.exception.RssException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BlockSendResultCheckerTest {
+
+  private static final long LONG_TIMEOUT = 60000;
+
+  private final AtomicLong successBlockNum = new AtomicLong();
+  private final AtomicLong failedBlockNum = new AtomicLong();
+  private final CompletableFuture<Long> f1 = new CompletableFuture<>();
+  private final CompletableFuture<Long> f2 = new CompletableFuture<>();
+
+  @Test
+  public void allSentTest() {
+    BlockSendResultChecker checker = createChecker(LONG_TIMEOUT);
+    completeLater(
+        () -> {
+          successBlockNum.set(1);
+          f1.complete(10L);
+          successBlockNum.set(3);
+          f2.complete(20L);
+        });
+    long start = System.currentTimeMillis();
+    checker.checkBlockSendResult(3);
+    assertTrue(System.currentTimeMillis() - start < LONG_TIMEOUT);
+    // all the blocks are sent, no need to wait
+    checker.checkBlockSendResult(3);
+  }
+
+  @Test
+  public void exceptionalFutureTest() {
+    BlockSendResultChecker checker = createChecker(LONG_TIMEOUT);
+    // the error fails the task at once though the other sending isn't finished
+    completeLater(() -> f2.completeExceptionally(new RssException("send error")));
+    long start = System.currentTimeMillis();
+    RssException e = assertThrows(RssException.class, () -> checker.checkBlockSendResult(3));
+    assertTrue(System.currentTimeMillis() - start < LONG_TIMEOUT);
+    assertTrue(e.getMessage().startsWith("Send failed: Task[taskId]"));
+    assertEquals("send error", e.getCause().getMessage());
+  }
+
+  @Test
+  public void failedBlockTest() {
+    BlockSendResultChecker checker = createChecker(LONG_TIMEOUT);
+    // the failed blocks are counted before the future of the sending is completed
+    completeLater(
+        () -> {
+          failedBlockNum.set(2);
+          f2.complete(20L);
+        });
+    long start = System.currentTimeMillis();
+    RssException e = assertThrows(RssException.class, () -> checker.checkBlockSendResult(3));
+    assertTrue(System.currentTimeMillis() - start < LONG_TIMEOUT);
+    assertEquals(
+        "Send failed: Task[taskId] failed because 2 blocks can't be sent to shuffle server.",
+        e.getMessage());
+    // the failed blocks are reported without waiting
+    assertThrows(RssException.class, checker::checkIfBlocksFailed);
+  }
+
+  @Test
+  public void timeoutTest() {
+    BlockSendResultChecker checker = createChecker(200);
+    successBlockNum.set(1);
+    f1.complete(10L);
+    long start = System.currentTimeMillis();
+    RssException e = assertThrows(RssException.class, () -> checker.checkBlockSendResult(3));
+    assertTrue(System.currentTimeMillis() - start >= 200);
+    assertEquals(
+        "Timeout: Task[taskId] failed because 2 blocks can't be sent to shuffle server in 200 ms.",
+        e.getMessage());
+  }
+
+  private BlockSendResultChecker createChecker(long sendCheckTimeout) {
+    BlockSendResultChecker checker =
+        new BlockSendResultChecker(
+            "taskId", sendCheckTimeout, successBlockNum::get, failedBlockNum::get);
+    checker.addSendFutures(Arrays.asList(f1, f2));
+    return checker;
+  }
+
+  private static void completeLater(Runnable runnable) {
+    new Thread(
+            () -> {
+              Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+              runnable.run();
+            })
+        .start();
+  }
+}
@@ -29,6 +29,7 @@ import java.util.function.Supplier;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 
 import org.apache.uniffle.client.factory.ShuffleClientFactory;
 import org.apache.uniffle.client.impl.ShuffleWriteClientImpl;
@@ -79,8 +80,8 @@ public class DataPusherTest {
   public void testSendData() throws ExecutionException, InterruptedException {
     FakedShuffleWriteClient shuffleWriteClient = new FakedShuffleWriteClient();
 
-    Map<String, Set<Long>> taskToSuccessBlockIds = Maps.newConcurrentMap();
-    Map<String, Set<Long>> taskToFailedBlockIds = Maps.newConcurrentMap();
+    Map<String, Roaring64NavigableMap> taskToSuccessBlockIds = Maps.newConcurrentMap();
+    Map<String, Roaring64NavigableMap> taskToFailedBlockIds = Maps.newConcurrentMap();
     Map<String, Map<Long, List<ShuffleServerInfo>>> taskToFailedBlockIdsAndServer =
         JavaUtils.newConcurrentMap();
     Set<String> failedTaskIds = new HashSet<>();
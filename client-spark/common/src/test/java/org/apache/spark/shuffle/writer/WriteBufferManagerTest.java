@@ -20,17 +20,21 @@ package org.apache.spark.shuffle.writer;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang3.reflect.FieldUtils;
 import org.apache.spark.SparkConf;
 import org.apache.spark.executor.ShuffleWriteMetrics;
 import org.apache.spark.memory.MemoryConsumer;
 import org.apache.spark.memory.MemoryManager;
+import org.apache.spark.memory.MemoryMode;
 import org.apache.spark.memory.TaskMemoryManager;
 import org.apache.spark.serializer.KryoSerializer;
 import org.apache.spark.serializer.Serializer;
@@ -38,11 +42,15 @@ import org.apache.spark.shuffle.RssSparkConfig;
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.uniffle.client.response.SendShuffleDataResult;
 import org.apache.uniffle.common.ShuffleBlockInfo;
 import org.apache.uniffle.common.config.RssConf;
+import org.apache.uniffle.common.util.ByteBufUtils;
+import org.apache.uniffle.common.util.JavaUtils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -94,6 +102,137 @@ public class WriteBufferManagerTest {
     addRecord(false);
   }
 
+  private WriteBufferManager createOffHeapManager() {
+    SparkConf conf = getConf();
+    conf.set(RssSparkConfig.RSS_WRITER_BUFFER_OFF_HEAP_ENABLED.key(), "true");
+    TaskMemoryManager mockTaskMemoryManager = mock(TaskMemoryManager.class);
+    when(mockTaskMemoryManager.getTungstenMemoryMode()).thenReturn(MemoryMode.OFF_HEAP);
+    WriteBufferManager wbm =
+        new WriteBufferManager(
+            0,
+            0,
+            new BufferManagerOptions(conf),
+            new KryoSerializer(conf),
+            Maps.newHashMap(),
+            mockTaskMemoryManager,
+            new ShuffleWriteMetrics(),
+            RssSparkConfig.toRssConf(conf));
+    WriteBufferManager offHeapManager = spy(wbm);
+    doReturn(512L).when(offHeapManager).acquireMemory(anyLong());
+    return offHeapManager;
+  }
+
+  @Test
+  public void addRecordOffHeapTest() {
+    WriteBufferManager offHeapManager = createOffHeapManager();
+    assertEquals(MemoryMode.OFF_HEAP, offHeapManager.getMode());
+    WriteBufferManager onHeapManager = createManager(getConf());
+    assertEquals(MemoryMode.ON_HEAP, onHeapManager.getMode());
+
+    List<ShuffleBlockInfo> offHeapBlocks = new ArrayList<>();
+    List<ShuffleBlockInfo> onHeapBlocks = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      offHeapBlocks.addAll(offHeapManager.addRecord(0, "Key", "Value"));
+      onHeapBlocks.addAll(onHeapManager.addRecord(0, "Key", "Value"));
+      if (offHeapBlocks.isEmpty()) {
+        assertTrue(offHeapManager.getBuffers().get(0) instanceof OffHeapWriterBuffer);
+      }
+    }
+    // the off heap buffers produce the same blocks in the direct memory
+    assertEquals(1, offHeapBlocks.size());
+    assertEquals(1, onHeapBlocks.size());
+    ShuffleBlockInfo offHeapBlock = offHeapBlocks.get(0);
+    ShuffleBlockInfo onHeapBlock = onHeapBlocks.get(0);
+    assertTrue(offHeapBlock.getData().isDirect());
+    assertEquals(onHeapBlock.getLength(), offHeapBlock.getLength());
+    assertEquals(onHeapBlock.getUncompressLength(), offHeapBlock.getUncompressLength());
+    assertEquals(onHeapBlock.getCrc(), offHeapBlock.getCrc());
+    assertEquals(onHeapBlock.getFreeMemory(), offHeapBlock.getFreeMemory());
+    Assertions.assertArrayEquals(
+        ByteBufUtils.readBytes(onHeapBlock.getData()),
+        ByteBufUtils.readBytes(offHeapBlock.getData()));
+    offHeapBlock.getData().release();
+
+    // the direct buffers of the records which are not sent are released
+    offHeapManager.addRecord(1, "Key", "Value");
+    OffHeapWriterBuffer buffer = (OffHeapWriterBuffer) offHeapManager.getBuffers().get(1);
+    offHeapManager.freeAllMemory();
+    Assertions.assertNull(buffer.getDataBuffer());
+  }
+
+  @Test
+  public void sendOffHeapBlockTest() throws Exception {
+    WriteBufferManager offHeapManager = createOffHeapManager();
+    offHeapManager.setTaskId("taskId");
+    List<ShuffleBlockInfo> blocks = new ArrayList<>();
+    while (blocks.isEmpty()) {
+      blocks.addAll(offHeapManager.addRecord(0, "Key", "Value"));
+    }
+    ShuffleBlockInfo block = blocks.get(0);
+    assertTrue(block.getData().isDirect());
+    assertEquals(1, block.getData().refCnt());
+
+    DataPusherTest.FakedShuffleWriteClient shuffleWriteClient =
+        new DataPusherTest.FakedShuffleWriteClient();
+    shuffleWriteClient.setFakedShuffleDataResult(
+        new SendShuffleDataResult(Sets.newHashSet(block.getBlockId()), Sets.newHashSet()));
+    Map<String, Roaring64NavigableMap> taskToSuccessBlockIds = JavaUtils.newConcurrentMap();
+    try (DataPusher dataPusher =
+        new DataPusher(
+            shuffleWriteClient,
+            taskToSuccessBlockIds,
+            JavaUtils.newConcurrentMap(),
+            JavaUtils.newConcurrentMap(),
+            Sets.newHashSet(),
+            1,
+            2)) {
+      dataPusher.setRssAppId("sendOffHeapBlockTest");
+      for (AddBlockEvent event : offHeapManager.buildBlockEvents(blocks)) {
+        dataPusher.send(event).get();
+      }
+    }
+    // the direct memory of the block is released once it's sent
+    assertTrue(taskToSuccessBlockIds.get("taskId").contains(block.getBlockId()));
+    assertEquals(0, block.getData().refCnt());
+    assertEquals(0, offHeapManager.getInSendListBytes());
+  }
+
+  @Test
+  public void addRecordWithCompressThreadsTest() {
+    SparkConf conf = getConf();
+    conf.set(
+        RssSparkConfig.SPARK_RSS_CONFIG_PREFIX + RssSparkConfig.RSS_WRITER_COMPRESS_THREADS.key(),
+        "2");
+    WriteBufferManager asyncManager = createManager(conf);
+    WriteBufferManager syncManager = createManager(getConf());
+
+    List<ShuffleBlockInfo> asyncBlocks = new ArrayList<>();
+    List<ShuffleBlockInfo> syncBlocks = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      asyncBlocks.addAll(asyncManager.addRecord(i % 3, "Key" + i, "Value" + i));
+      syncBlocks.addAll(syncManager.addRecord(i % 3, "Key" + i, "Value" + i));
+    }
+    asyncBlocks.addAll(asyncManager.clear());
+    syncBlocks.addAll(syncManager.clear());
+
+    // the blocks compressed by the workers are the same as the ones compressed by the task
+    asyncBlocks.sort(Comparator.comparingLong(ShuffleBlockInfo::getBlockId));
+    syncBlocks.sort(Comparator.comparingLong(ShuffleBlockInfo::getBlockId));
+    assertEquals(syncBlocks.size(), asyncBlocks.size());
+    for (int i = 0; i < syncBlocks.size(); i++) {
+      ShuffleBlockInfo syncBlock = syncBlocks.get(i);
+      ShuffleBlockInfo asyncBlock = asyncBlocks.get(i);
+      assertEquals(syncBlock.getBlockId(), asyncBlock.getBlockId());
+      assertEquals(syncBlock.getPartitionId(), asyncBlock.getPartitionId());
+      assertEquals(syncBlock.getLength(), asyncBlock.getLength());
+      assertEquals(syncBlock.getCrc(), asyncBlock.getCrc());
+    }
+    assertEquals(
+        syncManager.getShuffleWriteMetrics().bytesWritten(),
+        asyncManager.getShuffleWriteMetrics().bytesWritten());
+    assertEquals(syncManager.getInSendListBytes(), asyncManager.getInSendListBytes());
+  }
+
   private void addRecord(boolean compress) throws IllegalAccessException {
     SparkConf conf = getConf();
     if (!compress) {
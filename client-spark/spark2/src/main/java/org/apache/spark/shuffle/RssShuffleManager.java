@@ -59,6 +59,7 @@ import org.apache.uniffle.common.RemoteStorageInfo;
 import org.apache.uniffle.common.ShuffleAssignmentsInfo;
 import org.apache.uniffle.common.ShuffleDataDistributionType;
 import org.apache.uniffle.common.ShuffleServerInfo;
+import org.apache.uniffle.common.config.RssClientConf;
 import org.apache.uniffle.common.config.RssConf;
 import org.apache.uniffle.common.exception.RssException;
 import org.apache.uniffle.common.exception.RssFetchFailedException;
@@ -84,8 +85,8 @@ public class RssShuffleManager extends RssShuffleManagerBase {
   private String appId = "";
   private String clientType;
   private ShuffleWriteClient shuffleWriteClient;
-  private Map<String, Set<Long>> taskToSuccessBlockIds = JavaUtils.newConcurrentMap();
-  private Map<String, Set<Long>> taskToFailedBlockIds = JavaUtils.newConcurrentMap();
+  private Map<String, Roaring64NavigableMap> taskToSuccessBlockIds = JavaUtils.newConcurrentMap();
+  private Map<String, Roaring64NavigableMap> taskToFailedBlockIds = JavaUtils.newConcurrentMap();
   // Record both the block that failed to be sent and the ShuffleServer
   private final Map<String, Map<Long, List<ShuffleServerInfo>>> taskToFailedBlockIdsAndServer =
       JavaUtils.newConcurrentMap();
@@ -166,6 +167,9 @@ public class RssShuffleManager extends RssShuffleManagerBase {
                     .dataCommitPoolSize(dataCommitPoolSize)
                     .unregisterThreadPoolSize(unregisterThreadPoolSize)
                     .unregisterRequestTimeSec(unregisterRequestTimeoutSec)
+                    .sendBatchSize(rssConf.get(RssClientConf.RSS_CLIENT_SEND_BATCH_SIZE))
+                    .sendBatchMaxInFlight(
+                        rssConf.get(RssClientConf.RSS_CLIENT_SEND_BATCH_MAX_IN_FLIGHT))
                     .rssConf(rssConf));
     registerCoordinator();
     // fetch client conf and apply them if necessary and disable ESS
@@ -582,36 +586,42 @@ public class RssShuffleManager extends RssShuffleManagerBase {
     return taskIdBitmap;
   }
 
-  public Set<Long> getFailedBlockIds(String taskId) {
-    Set<Long> result = taskToFailedBlockIds.get(taskId);
-    if (result == null) {
-      result = Collections.emptySet();
-    }
-    return result;
+  public long getFailedBlockNum(String taskId) {
+    return getBlockNum(taskToFailedBlockIds, taskId);
   }
 
-  public Set<Long> getSuccessBlockIds(String taskId) {
-    Set<Long> result = taskToSuccessBlockIds.get(taskId);
-    if (result == null) {
-      result = Collections.emptySet();
+  public long getSuccessBlockNum(String taskId) {
+    return getBlockNum(taskToSuccessBlockIds, taskId);
+  }
+
+  private static long getBlockNum(
+      Map<String, Roaring64NavigableMap> taskToBlockIds, String taskId) {
+    Roaring64NavigableMap blockIds = taskToBlockIds.get(taskId);
+    if (blockIds == null) {
+      return 0L;
+    }
+    synchronized (blockIds) {
+      return blockIds.getLongCardinality();
     }
-    return result;
   }
 
   @VisibleForTesting
   public void addFailedBlockIds(String taskId, Set<Long> blockIds) {
-    if (taskToFailedBlockIds.get(taskId) == null) {
-      taskToFailedBlockIds.put(taskId, Sets.newHashSet());
-    }
-    taskToFailedBlockIds.get(taskId).addAll(blockIds);
+    addBlockIds(taskToFailedBlockIds, taskId, blockIds);
   }
 
   @VisibleForTesting
   public void addSuccessBlockIds(String taskId, Set<Long> blockIds) {
-    if (taskToSuccessBlockIds.get(taskId) == null) {
-      taskToSuccessBlockIds.put(taskId, Sets.newHashSet());
+    addBlockIds(taskToSuccessBlockIds, taskId, blockIds);
+  }
+
+  private static void addBlockIds(
+      Map<String, Roaring64NavigableMap> taskToBlockIds, String taskId, Set<Long> blockIds) {
+    Roaring64NavigableMap bitmap =
+        taskToBlockIds.computeIfAbsent(taskId, k -> Roaring64NavigableMap.bitmapOf());
+    synchronized (bitmap) {
+      blockIds.forEach(bitmap::addLong);
     }
-    taskToSuccessBlockIds.get(taskId).addAll(blockIds);
   }
 
   public void clearTaskMeta(String taskId) {
@@ -38,7 +38,6 @@ import scala.collection.Iterator;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.spark.Partitioner;
 import org.apache.spark.ShuffleDependency;
@@ -52,6 +51,7 @@ import org.apache.spark.shuffle.RssShuffleManager;
 import org.apache.spark.shuffle.RssSparkConfig;
 import org.apache.spark.shuffle.ShuffleWriter;
 import org.apache.spark.storage.BlockManagerId;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,7 +69,7 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
   private static final int DUMMY_PORT = 99999;
   // they will be used in commit phase
   private final Set<ShuffleServerInfo> shuffleServersForData;
-  private final Map<Integer, Set<Long>> partitionToBlockIds;
+  private final Map<Integer, Roaring64NavigableMap> partitionToBlockIds;
   private final ShuffleWriteClient shuffleWriteClient;
   private final Map<Integer, List<ShuffleServerInfo>> partitionToServers;
   private String appId;
@@ -84,11 +84,10 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
   private boolean shouldPartition;
   private WriteBufferManager bufferManager;
   private RssShuffleManager shuffleManager;
-  private long sendCheckTimeout;
-  private long sendCheckInterval;
   private boolean isMemoryShuffleEnabled;
   private final Function<String, Boolean> taskFailureCallback;
-  private final Set<Long> blockIds = Sets.newConcurrentHashSet();
+  private final Roaring64NavigableMap blockIds = Roaring64NavigableMap.bitmapOf();
+  private final BlockSendResultChecker sendResultChecker;
 
   public RssShuffleWriter(
       String appId,
@@ -136,8 +135,12 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
     this.partitioner = shuffleDependency.partitioner();
     this.shuffleManager = shuffleManager;
     this.shouldPartition = partitioner.numPartitions() > 1;
-    this.sendCheckTimeout = sparkConf.get(RssSparkConfig.RSS_CLIENT_SEND_CHECK_TIMEOUT_MS);
-    this.sendCheckInterval = sparkConf.get(RssSparkConfig.RSS_CLIENT_SEND_CHECK_INTERVAL_MS);
+    this.sendResultChecker =
+        new BlockSendResultChecker(
+            taskId,
+            sparkConf.get(RssSparkConfig.RSS_CLIENT_SEND_CHECK_TIMEOUT_MS),
+            () -> shuffleManager.getSuccessBlockNum(taskId),
+            () -> shuffleManager.getFailedBlockNum(taskId));
     this.bitmapSplitNum = sparkConf.get(RssSparkConfig.RSS_CLIENT_BITMAP_SPLIT_NUM);
     this.partitionToBlockIds = Maps.newHashMap();
     this.shuffleWriteClient = shuffleWriteClient;
@@ -271,12 +274,12 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
               sbi -> {
                 long blockId = sbi.getBlockId();
                 // add blockId to set, check if it is send later
-                blockIds.add(blockId);
+                blockIds.addLong(blockId);
                 // update [partition, blockIds], it will be sent to shuffle server
                 int partitionId = sbi.getPartitionId();
                 partitionToBlockIds
-                    .computeIfAbsent(partitionId, k -> Sets.newHashSet())
-                    .add(blockId);
+                    .computeIfAbsent(partitionId, k -> Roaring64NavigableMap.bitmapOf())
+                    .addLong(blockId);
               });
       return postBlockEvent(shuffleBlockInfoList);
     }
@@ -291,6 +294,7 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
     for (AddBlockEvent event : bufferManager.buildBlockEvents(shuffleBlockInfoList)) {
       futures.add(shuffleManager.sendData(event));
     }
+    sendResultChecker.addSendFutures(futures);
     return futures;
   }
 
@@ -328,43 +332,8 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
   }
 
   @VisibleForTesting
-  protected void checkBlockSendResult(Set<Long> blockIds) {
-    long start = System.currentTimeMillis();
-    while (true) {
-      Set<Long> failedBlockIds = shuffleManager.getFailedBlockIds(taskId);
-      Set<Long> successBlockIds = shuffleManager.getSuccessBlockIds(taskId);
-      // if failed when send data to shuffle server, mark task as failed
-      if (failedBlockIds.size() > 0) {
-        String errorMsg =
-            "Send failed: Task["
-                + taskId
-                + "] failed because "
-                + failedBlockIds.size()
-                + " blocks can't be sent to shuffle server.";
-        LOG.error(errorMsg);
-        throw new RssException(errorMsg);
-      }
-
-      // remove blockIds which was sent successfully, if there has none left, all data are sent
-      blockIds.removeAll(successBlockIds);
-      if (blockIds.isEmpty()) {
-        break;
-      }
-      LOG.info("Wait " + blockIds.size() + " blocks sent to shuffle server");
-      Uninterruptibles.sleepUninterruptibly(sendCheckInterval, TimeUnit.MILLISECONDS);
-      if (System.currentTimeMillis() - start > sendCheckTimeout) {
-        String errorMsg =
-            "Timeout: Task["
-                + taskId
-                + "] failed because "
-                + blockIds.size()
-                + " blocks can't be sent to shuffle server in "
-                + sendCheckTimeout
-                + " ms.";
-        LOG.error(errorMsg);
-        throw new RssException(errorMsg);
-      }
-    }
+  protected void checkBlockSendResult(Roaring64NavigableMap blockIds) {
+    sendResultChecker.checkBlockSendResult(blockIds.getLongCardinality());
   }
 
   @Override
@@ -379,7 +348,7 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
             createDummyBlockManagerId(appId + "_" + taskId, taskAttemptId);
 
         Map<Integer, List<Long>> ptb = Maps.newHashMap();
-        for (Map.Entry<Integer, Set<Long>> entry : partitionToBlockIds.entrySet()) {
+        for (Map.Entry<Integer, Roaring64NavigableMap> entry : partitionToBlockIds.entrySet()) {
           ptb.put(entry.getKey(), Lists.newArrayList(entry.getValue()));
         }
         long start = System.currentTimeMillis();
@@ -416,7 +385,7 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
   }
 
   @VisibleForTesting
-  protected Map<Integer, Set<Long>> getPartitionToBlockIds() {
+  protected Map<Integer, Roaring64NavigableMap> getPartitionToBlockIds() {
     return partitionToBlockIds;
   }
 
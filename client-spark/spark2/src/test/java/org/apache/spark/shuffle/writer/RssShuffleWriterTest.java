@@ -45,6 +45,7 @@ import org.apache.spark.shuffle.RssShuffleHandle;
 import org.apache.spark.shuffle.RssShuffleManager;
 import org.apache.spark.shuffle.RssSparkConfig;
 import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 
 import org.apache.uniffle.client.api.ShuffleWriteClient;
 import org.apache.uniffle.common.ShuffleBlockInfo;
@@ -75,7 +76,6 @@ public class RssShuffleWriterTest {
         .set(RssSparkConfig.RSS_CLIENT_SEND_CHECK_TIMEOUT_MS.key(), "10000")
         .set(RssSparkConfig.RSS_CLIENT_RETRY_MAX.key(), "10")
         .set(RssSparkConfig.RSS_CLIENT_RETRY_INTERVAL_MAX.key(), "1000")
-        .set(RssSparkConfig.RSS_CLIENT_SEND_CHECK_INTERVAL_MS.key(), "1000")
         .set(RssSparkConfig.RSS_STORAGE_TYPE.key(), StorageType.LOCALFILE.name())
         .set(RssSparkConfig.RSS_COORDINATOR_QUORUM.key(), "127.0.0.1:12345,127.0.0.1:12346");
     // init SparkContext
@@ -122,7 +122,7 @@ public class RssShuffleWriterTest {
 
     // case 1: all blocks are sent successfully
     manager.addSuccessBlockIds(taskId, Sets.newHashSet(1L, 2L, 3L));
-    rssShuffleWriter.checkBlockSendResult(Sets.newHashSet(1L, 2L, 3L));
+    rssShuffleWriter.checkBlockSendResult(Roaring64NavigableMap.bitmapOf(1L, 2L, 3L));
     manager.clearTaskMeta(taskId);
 
     // case 2: partial blocks aren't sent before spark.rss.writer.send.check.timeout,
@@ -131,7 +131,9 @@ public class RssShuffleWriterTest {
     Throwable e2 =
         assertThrows(
             RuntimeException.class,
-            () -> rssShuffleWriter.checkBlockSendResult(Sets.newHashSet(1L, 2L, 3L)));
+            () ->
+                rssShuffleWriter.checkBlockSendResult(
+                    Roaring64NavigableMap.bitmapOf(1L, 2L, 3L)));
     assertTrue(e2.getMessage().startsWith("Timeout:"));
 
     manager.clearTaskMeta(taskId);
@@ -142,11 +144,13 @@ public class RssShuffleWriterTest {
     Throwable e3 =
         assertThrows(
             RuntimeException.class,
-            () -> rssShuffleWriter.checkBlockSendResult(Sets.newHashSet(1L, 2L, 3L)));
+            () ->
+                rssShuffleWriter.checkBlockSendResult(
+                    Roaring64NavigableMap.bitmapOf(1L, 2L, 3L)));
     assertTrue(e3.getMessage().startsWith("Send failed:"));
     manager.clearTaskMeta(taskId);
-    assertTrue(manager.getSuccessBlockIds(taskId).isEmpty());
-    assertTrue(manager.getFailedBlockIds(taskId).isEmpty());
+    assertEquals(0, manager.getSuccessBlockNum(taskId));
+    assertEquals(0, manager.getFailedBlockNum(taskId));
 
     sc.stop();
   }
@@ -160,8 +164,8 @@ public class RssShuffleWriterTest {
 
     private FakedDataPusher(
         ShuffleWriteClient shuffleWriteClient,
-        Map<String, Set<Long>> taskToSuccessBlockIds,
-        Map<String, Set<Long>> taskToFailedBlockIds,
+        Map<String, Roaring64NavigableMap> taskToSuccessBlockIds,
+        Map<String, Roaring64NavigableMap> taskToFailedBlockIds,
         Map<String, Map<Long, List<ShuffleServerInfo>>> taskToFailedBlockIdsAndServer,
         Set<String> failedTaskIds,
         int threadPoolSize,
@@ -195,7 +199,6 @@ public class RssShuffleWriterTest {
         .set(RssSparkConfig.RSS_WRITER_SERIALIZER_BUFFER_SIZE.key(), "32")
         .set(RssSparkConfig.RSS_WRITER_BUFFER_SEGMENT_SIZE.key(), "64")
         .set(RssSparkConfig.RSS_WRITER_BUFFER_SPILL_SIZE.key(), "128")
-        .set(RssSparkConfig.RSS_CLIENT_SEND_CHECK_INTERVAL_MS.key(), "1000")
         .set(RssSparkConfig.RSS_STORAGE_TYPE.key(), StorageType.LOCALFILE.name())
         .set(RssSparkConfig.RSS_COORDINATOR_QUORUM.key(), "127.0.0.1:12345,127.0.0.1:12346");
     // init SparkContext
@@ -320,10 +323,11 @@ public class RssShuffleWriterTest {
         throw new Exception("Shouldn't be here");
       }
     }
-    Map<Integer, Set<Long>> partitionToBlockIds = rssShuffleWriterSpy.getPartitionToBlockIds();
-    assertEquals(2, partitionToBlockIds.get(0).size());
-    assertEquals(2, partitionToBlockIds.get(1).size());
-    assertEquals(2, partitionToBlockIds.get(2).size());
+    Map<Integer, Roaring64NavigableMap> partitionToBlockIds =
+        rssShuffleWriterSpy.getPartitionToBlockIds();
+    assertEquals(2, partitionToBlockIds.get(0).getLongCardinality());
+    assertEquals(2, partitionToBlockIds.get(1).getLongCardinality());
+    assertEquals(2, partitionToBlockIds.get(2).getLongCardinality());
     partitionToBlockIds.clear();
 
     sc.stop();
@@ -347,7 +351,6 @@ public class RssShuffleWriterTest {
         .set(RssSparkConfig.RSS_WRITER_SERIALIZER_BUFFER_SIZE.key(), "32")
         .set(RssSparkConfig.RSS_WRITER_BUFFER_SEGMENT_SIZE.key(), "64")
         .set(RssSparkConfig.RSS_WRITER_BUFFER_SPILL_SIZE.key(), "128")
-        .set(RssSparkConfig.RSS_CLIENT_SEND_CHECK_INTERVAL_MS.key(), "1000")
         .set(RssSparkConfig.RSS_STORAGE_TYPE.key(), StorageType.LOCALFILE.name())
         .set(RssSparkConfig.RSS_COORDINATOR_QUORUM.key(), "127.0.0.1:12345,127.0.0.1:12346")
         .set(
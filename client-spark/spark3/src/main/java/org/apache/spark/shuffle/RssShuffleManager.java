@@ -95,8 +95,8 @@ public class RssShuffleManager extends RssShuffleManagerBase {
   private final boolean dataReplicaSkipEnabled;
   private final int dataTransferPoolSize;
   private final int dataCommitPoolSize;
-  private final Map<String, Set<Long>> taskToSuccessBlockIds;
-  private final Map<String, Set<Long>> taskToFailedBlockIds;
+  private final Map<String, Roaring64NavigableMap> taskToSuccessBlockIds;
+  private final Map<String, Roaring64NavigableMap> taskToFailedBlockIds;
   // Record both the block that failed to be sent and the ShuffleServer
   private final Map<String, Map<Long, List<ShuffleServerInfo>>> taskToFailedBlockIdsAndServer;
   private ScheduledExecutorService heartBeatScheduledExecutorService;
@@ -183,6 +183,9 @@ public class RssShuffleManager extends RssShuffleManagerBase {
                     .dataCommitPoolSize(dataCommitPoolSize)
                     .unregisterThreadPoolSize(unregisterThreadPoolSize)
                     .unregisterRequestTimeSec(unregisterRequestTimeoutSec)
+                    .sendBatchSize(rssConf.get(RssClientConf.RSS_CLIENT_SEND_BATCH_SIZE))
+                    .sendBatchMaxInFlight(
+                        rssConf.get(RssClientConf.RSS_CLIENT_SEND_BATCH_MAX_IN_FLIGHT))
                     .rssConf(rssConf));
     registerCoordinator();
     // fetch client conf and apply them if necessary and disable ESS
@@ -268,8 +271,8 @@ public class RssShuffleManager extends RssShuffleManagerBase {
       SparkConf conf,
       boolean isDriver,
       DataPusher dataPusher,
-      Map<String, Set<Long>> taskToSuccessBlockIds,
-      Map<String, Set<Long>> taskToFailedBlockIds,
+      Map<String, Roaring64NavigableMap> taskToSuccessBlockIds,
+      Map<String, Roaring64NavigableMap> taskToFailedBlockIds,
       Map<String, Map<Long, List<ShuffleServerInfo>>> taskToFailedBlockIdsAndServer) {
     this.sparkConf = conf;
     this.clientType = sparkConf.get(RssSparkConfig.RSS_CLIENT_TYPE);
@@ -321,6 +324,12 @@ public class RssShuffleManager extends RssShuffleManagerBase {
                     .dataCommitPoolSize(dataCommitPoolSize)
                     .unregisterThreadPoolSize(unregisterThreadPoolSize)
                     .unregisterRequestTimeSec(unregisterRequestTimeoutSec)
+                    .sendBatchSize(
+                        RssSparkConfig.toRssConf(sparkConf)
+                            .get(RssClientConf.RSS_CLIENT_SEND_BATCH_SIZE))
+                    .sendBatchMaxInFlight(
+                        RssSparkConfig.toRssConf(sparkConf)
+                            .get(RssClientConf.RSS_CLIENT_SEND_BATCH_MAX_IN_FLIGHT))
                     .rssConf(RssSparkConfig.toRssConf(sparkConf)));
     this.taskToSuccessBlockIds = taskToSuccessBlockIds;
     this.taskToFailedBlockIds = taskToFailedBlockIds;
@@ -872,20 +881,23 @@ public class RssShuffleManager extends RssShuffleManagerBase {
     }
   }
 
-  public Set<Long> getFailedBlockIds(String taskId) {
-    Set<Long> result = taskToFailedBlockIds.get(taskId);
-    if (result == null) {
-      result = Collections.emptySet();
-    }
-    return result;
+  public long getFailedBlockNum(String taskId) {
+    return getBlockNum(taskToFailedBlockIds, taskId);
   }
 
-  public Set<Long> getSuccessBlockIds(String taskId) {
-    Set<Long> result = taskToSuccessBlockIds.get(taskId);
-    if (result == null) {
-      result = Collections.emptySet();
+  public long getSuccessBlockNum(String taskId) {
+    return getBlockNum(taskToSuccessBlockIds, taskId);
+  }
+
+  private static long getBlockNum(
+      Map<String, Roaring64NavigableMap> taskToBlockIds, String taskId) {
+    Roaring64NavigableMap blockIds = taskToBlockIds.get(taskId);
+    if (blockIds == null) {
+      return 0L;
+    }
+    synchronized (blockIds) {
+      return blockIds.getLongCardinality();
     }
-    return result;
   }
 
   /** @return the unique spark id for rss shuffle */
@@ -24,12 +24,10 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -41,7 +39,6 @@ import scala.collection.Iterator;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.spark.Partitioner;
 import org.apache.spark.ShuffleDependency;
@@ -54,6 +51,7 @@ import org.apache.spark.shuffle.RssShuffleManager;
 import org.apache.spark.shuffle.RssSparkConfig;
 import org.apache.spark.shuffle.ShuffleWriter;
 import org.apache.spark.storage.BlockManagerId;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -78,24 +76,22 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
   private final Partitioner partitioner;
   private final RssShuffleManager shuffleManager;
   private final boolean shouldPartition;
-  private final long sendCheckTimeout;
-  private final long sendCheckInterval;
   private final int bitmapSplitNum;
-  private final Map<Integer, Set<Long>> partitionToBlockIds;
+  private final Map<Integer, Roaring64NavigableMap> partitionToBlockIds;
   private final ShuffleWriteClient shuffleWriteClient;
   private final Map<Integer, List<ShuffleServerInfo>> partitionToServers;
   private final Set<ShuffleServerInfo> shuffleServersForData;
   private final long[] partitionLengths;
   private final boolean isMemoryShuffleEnabled;
   private final Function<String, Boolean> taskFailureCallback;
-  private final Set<Long> blockIds = Sets.newConcurrentHashSet();
+  private final Roaring64NavigableMap blockIds = Roaring64NavigableMap.bitmapOf();
 
   /** used by columnar rss shuffle writer implementation */
   protected final long taskAttemptId;
 
   protected final ShuffleWriteMetrics shuffleWriteMetrics;
 
-  private final BlockingQueue<Object> finishEventQueue = new LinkedBlockingQueue<>();
+  private final BlockSendResultChecker sendResultChecker;
 
   // Only for tests
   @VisibleForTesting
@@ -146,8 +142,12 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
     this.shuffleDependency = rssHandle.getDependency();
     this.partitioner = shuffleDependency.partitioner();
     this.shouldPartition = partitioner.numPartitions() > 1;
-    this.sendCheckTimeout = sparkConf.get(RssSparkConfig.RSS_CLIENT_SEND_CHECK_TIMEOUT_MS);
-    this.sendCheckInterval = sparkConf.get(RssSparkConfig.RSS_CLIENT_SEND_CHECK_INTERVAL_MS);
+    this.sendResultChecker =
+        new BlockSendResultChecker(
+            taskId,
+            sparkConf.get(RssSparkConfig.RSS_CLIENT_SEND_CHECK_TIMEOUT_MS),
+            () -> shuffleManager.getSuccessBlockNum(taskId),
+            () -> shuffleManager.getFailedBlockNum(taskId));
     this.bitmapSplitNum = sparkConf.get(RssSparkConfig.RSS_CLIENT_BITMAP_SPLIT_NUM);
     this.partitionToBlockIds = Maps.newHashMap();
     this.shuffleWriteClient = shuffleWriteClient;
@@ -222,7 +222,7 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
     }
     while (records.hasNext()) {
       // Task should fast fail when sending data failed
-      checkIfBlocksFailed();
+      sendResultChecker.checkIfBlocksFailed();
 
       Product2<K, V> record = records.next();
       K key = record._1();
@@ -282,10 +282,12 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
           sbi -> {
             long blockId = sbi.getBlockId();
             // add blockId to set, check if it is sent later
-            blockIds.add(blockId);
+            blockIds.addLong(blockId);
             // update [partition, blockIds], it will be sent to shuffle server
             int partitionId = sbi.getPartitionId();
-            partitionToBlockIds.computeIfAbsent(partitionId, k -> Sets.newHashSet()).add(blockId);
+            partitionToBlockIds
+                .computeIfAbsent(partitionId, k -> Roaring64NavigableMap.bitmapOf())
+                .addLong(blockId);
             partitionLengths[partitionId] += sbi.getLength();
           });
       return postBlockEvent(shuffleBlockInfoList);
@@ -297,78 +299,15 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
       List<ShuffleBlockInfo> shuffleBlockInfoList) {
     List<CompletableFuture<Long>> futures = new ArrayList<>();
     for (AddBlockEvent event : bufferManager.buildBlockEvents(shuffleBlockInfoList)) {
-      event.addCallback(
-          () -> {
-            boolean ret = finishEventQueue.add(new Object());
-            if (!ret) {
-              LOG.error("Add event " + event + " to finishEventQueue fail");
-            }
-          });
       futures.add(shuffleManager.sendData(event));
     }
+    sendResultChecker.addSendFutures(futures);
     return futures;
   }
 
   @VisibleForTesting
-  protected void checkBlockSendResult(Set<Long> blockIds) {
-    boolean interrupted = false;
-
-    try {
-      long remainingMs = sendCheckTimeout;
-      long end = System.currentTimeMillis() + remainingMs;
-
-      while (true) {
-        try {
-          finishEventQueue.clear();
-          checkIfBlocksFailed();
-          Set<Long> successBlockIds = shuffleManager.getSuccessBlockIds(taskId);
-          blockIds.removeAll(successBlockIds);
-          if (blockIds.isEmpty()) {
-            break;
-          }
-          if (finishEventQueue.isEmpty()) {
-            remainingMs = Math.max(end - System.currentTimeMillis(), 0);
-            Object event = finishEventQueue.poll(remainingMs, TimeUnit.MILLISECONDS);
-            if (event == null) {
-              break;
-            }
-          }
-        } catch (InterruptedException e) {
-          interrupted = true;
-        }
-      }
-      if (!blockIds.isEmpty()) {
-        String errorMsg =
-            "Timeout: Task["
-                + taskId
-                + "] failed because "
-                + blockIds.size()
-                + " blocks can't be sent to shuffle server in "
-                + sendCheckTimeout
-                + " ms.";
-        LOG.error(errorMsg);
-        throw new RssException(errorMsg);
-      }
-    } finally {
-      if (interrupted) {
-        Thread.currentThread().interrupt();
-      }
-    }
-  }
-
-  private void checkIfBlocksFailed() {
-    Set<Long> failedBlockIds = shuffleManager.getFailedBlockIds(taskId);
-    if (!failedBlockIds.isEmpty()) {
-      String errorMsg =
-          "Send failed: Task["
-              + taskId
-              + "]"
-              + " failed because "
-              + failedBlockIds.size()
-              + " blocks can't be sent to shuffle server.";
-      LOG.error(errorMsg);
-      throw new RssException(errorMsg);
-    }
+  protected void checkBlockSendResult(Roaring64NavigableMap blockIds) {
+    sendResultChecker.checkBlockSendResult(blockIds.getLongCardinality());
   }
 
   @VisibleForTesting
@@ -417,7 +356,7 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
     try {
       if (success) {
         Map<Integer, List<Long>> ptb = Maps.newHashMap();
-        for (Map.Entry<Integer, Set<Long>> entry : partitionToBlockIds.entrySet()) {
+        for (Map.Entry<Integer, Roaring64NavigableMap> entry : partitionToBlockIds.entrySet()) {
           ptb.put(entry.getKey(), Lists.newArrayList(entry.getValue()));
         }
         long start = System.currentTimeMillis();
@@ -453,7 +392,7 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
   }
 
   @VisibleForTesting
-  Map<Integer, Set<Long>> getPartitionToBlockIds() {
+  Map<Integer, Roaring64NavigableMap> getPartitionToBlockIds() {
     return partitionToBlockIds;
   }
 
@@ -19,11 +19,11 @@ package org.apache.spark.shuffle;
 
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.commons.lang3.SystemUtils;
 import org.apache.spark.SparkConf;
 import org.apache.spark.shuffle.writer.DataPusher;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 
 import org.apache.uniffle.common.ShuffleServerInfo;
 
@@ -35,8 +35,8 @@ public class TestUtils {
       SparkConf conf,
       Boolean isDriver,
       DataPusher dataPusher,
-      Map<String, Set<Long>> successBlockIds,
-      Map<String, Set<Long>> failBlockIds,
+      Map<String, Roaring64NavigableMap> successBlockIds,
+      Map<String, Roaring64NavigableMap> failBlockIds,
       Map<String, Map<Long, List<ShuffleServerInfo>>> taskToFailedBlockIdsAndServer) {
     return new RssShuffleManager(
         conf, isDriver, dataPusher, successBlockIds, failBlockIds, taskToFailedBlockIdsAndServer);
@@ -20,13 +20,11 @@ package org.apache.spark.shuffle.writer;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import scala.Product2;
 import scala.Tuple2;
@@ -34,7 +32,6 @@ import scala.collection.mutable.MutableList;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import org.apache.spark.Partitioner;
 import org.apache.spark.ShuffleDependency;
 import org.apache.spark.SparkConf;
@@ -49,6 +46,7 @@ import org.apache.spark.shuffle.RssSparkConfig;
 import org.apache.spark.shuffle.TestUtils;
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 
 import org.apache.uniffle.client.api.ShuffleWriteClient;
 import org.apache.uniffle.common.ShuffleBlockInfo;
@@ -77,11 +75,10 @@ public class RssShuffleWriterTest {
         .set(RssSparkConfig.RSS_TEST_MODE_ENABLE.key(), "true")
         .set(RssSparkConfig.RSS_CLIENT_SEND_CHECK_TIMEOUT_MS.key(), "10000")
         .set(RssSparkConfig.RSS_CLIENT_RETRY_MAX.key(), "10")
-        .set(RssSparkConfig.RSS_CLIENT_SEND_CHECK_INTERVAL_MS.key(), "1000")
         .set(RssSparkConfig.RSS_STORAGE_TYPE.key(), StorageType.LOCALFILE.name())
         .set(RssSparkConfig.RSS_COORDINATOR_QUORUM.key(), "127.0.0.1:12345,127.0.0.1:12346");
-    Map<String, Set<Long>> failBlocks = JavaUtils.newConcurrentMap();
-    Map<String, Set<Long>> successBlocks = JavaUtils.newConcurrentMap();
+    Map<String, Roaring64NavigableMap> failBlocks = JavaUtils.newConcurrentMap();
+    Map<String, Roaring64NavigableMap> successBlocks = JavaUtils.newConcurrentMap();
     Map<String, Map<Long, List<ShuffleServerInfo>>> taskToFailedBlockIdsAndServer =
         JavaUtils.newConcurrentMap();
     Serializer kryoSerializer = new KryoSerializer(conf);
@@ -127,27 +124,31 @@ public class RssShuffleWriterTest {
     doReturn(1000000L).when(bufferManagerSpy).acquireMemory(anyLong());
 
     // case 1: all blocks are sent successfully
-    successBlocks.put("taskId", Sets.newHashSet(1L, 2L, 3L));
-    rssShuffleWriter.checkBlockSendResult(Sets.newHashSet(1L, 2L, 3L));
+    successBlocks.put("taskId", Roaring64NavigableMap.bitmapOf(1L, 2L, 3L));
+    rssShuffleWriter.checkBlockSendResult(Roaring64NavigableMap.bitmapOf(1L, 2L, 3L));
     successBlocks.clear();
 
     // case 2: partial blocks aren't sent before spark.rss.writer.send.check.timeout,
     // Runtime exception will be thrown
-    successBlocks.put("taskId", Sets.newHashSet(1L, 2L));
+    successBlocks.put("taskId", Roaring64NavigableMap.bitmapOf(1L, 2L));
     Throwable e2 =
         assertThrows(
             RuntimeException.class,
-            () -> rssShuffleWriter.checkBlockSendResult(Sets.newHashSet(1L, 2L, 3L)));
+            () ->
+                rssShuffleWriter.checkBlockSendResult(
+                    Roaring64NavigableMap.bitmapOf(1L, 2L, 3L)));
     assertTrue(e2.getMessage().startsWith("Timeout:"));
     successBlocks.clear();
 
     // case 3: partial blocks are sent failed, Runtime exception will be thrown
-    successBlocks.put("taskId", Sets.newHashSet(1L, 2L));
-    failBlocks.put("taskId", Sets.newHashSet(3L));
+    successBlocks.put("taskId", Roaring64NavigableMap.bitmapOf(1L, 2L));
+    failBlocks.put("taskId", Roaring64NavigableMap.bitmapOf(3L));
     Throwable e3 =
         assertThrows(
             RuntimeException.class,
-            () -> rssShuffleWriter.checkBlockSendResult(Sets.newHashSet(1L, 2L, 3L)));
+            () ->
+                rssShuffleWriter.checkBlockSendResult(
+                    Roaring64NavigableMap.bitmapOf(1L, 2L, 3L)));
     assertTrue(e3.getMessage().startsWith("Send failed:"));
     successBlocks.clear();
     failBlocks.clear();
@@ -162,8 +163,8 @@ public class RssShuffleWriterTest {
 
     private FakedDataPusher(
         ShuffleWriteClient shuffleWriteClient,
-        Map<String, Set<Long>> taskToSuccessBlockIds,
-        Map<String, Set<Long>> taskToFailedBlockIds,
+        Map<String, Roaring64NavigableMap> taskToSuccessBlockIds,
+        Map<String, Roaring64NavigableMap> taskToFailedBlockIds,
         Map<String, Map<Long, List<ShuffleServerInfo>>> taskToFailedBlockIdsAndServer,
         Set<String> failedTaskIds,
         int threadPoolSize,
@@ -198,12 +199,11 @@ public class RssShuffleWriterTest {
         .set(RssSparkConfig.RSS_TEST_FLAG.key(), "true")
         .set(RssSparkConfig.RSS_TEST_MODE_ENABLE.key(), "true")
         .set(RssSparkConfig.RSS_WRITER_BUFFER_SEGMENT_SIZE.key(), "32")
-        .set(RssSparkConfig.RSS_CLIENT_SEND_CHECK_INTERVAL_MS.key(), "1000")
         .set(RssSparkConfig.RSS_WRITER_BUFFER_SPILL_SIZE.key(), "100000")
         .set(RssSparkConfig.RSS_STORAGE_TYPE.key(), StorageType.MEMORY.name())
         .set(RssSparkConfig.RSS_COORDINATOR_QUORUM.key(), "127.0.0.1:12345,127.0.0.1:12346");
 
-    Map<String, Set<Long>> successBlockIds = Maps.newConcurrentMap();
+    Map<String, Roaring64NavigableMap> successBlockIds = Maps.newConcurrentMap();
 
     List<Long> freeMemoryList = new ArrayList<>();
     FakedDataPusher dataPusher =
@@ -213,10 +213,10 @@ public class RssShuffleWriterTest {
               long sum =
                   event.getShuffleDataInfoList().stream().mapToLong(x -> x.getFreeMemory()).sum();
               freeMemoryList.add(sum);
-              successBlockIds.putIfAbsent(event.getTaskId(), new HashSet<>());
+              successBlockIds.putIfAbsent(event.getTaskId(), Roaring64NavigableMap.bitmapOf());
               successBlockIds
                   .get(event.getTaskId())
-                  .add(event.getShuffleDataInfoList().get(0).getBlockId());
+                  .addLong(event.getShuffleDataInfoList().get(0).getBlockId());
               return CompletableFuture.completedFuture(sum);
             });
 
@@ -294,26 +294,21 @@ public class RssShuffleWriterTest {
         .set(RssSparkConfig.RSS_TEST_FLAG.key(), "true")
         .set(RssSparkConfig.RSS_TEST_MODE_ENABLE.key(), "true")
         .set(RssSparkConfig.RSS_WRITER_BUFFER_SEGMENT_SIZE.key(), "64")
-        .set(RssSparkConfig.RSS_CLIENT_SEND_CHECK_INTERVAL_MS.key(), "1000")
         .set(RssSparkConfig.RSS_WRITER_BUFFER_SPILL_SIZE.key(), "128")
         .set(RssSparkConfig.RSS_STORAGE_TYPE.key(), StorageType.LOCALFILE.name())
         .set(RssSparkConfig.RSS_COORDINATOR_QUORUM.key(), "127.0.0.1:12345,127.0.0.1:12346");
     List<ShuffleBlockInfo> shuffleBlockInfos = Lists.newArrayList();
-    Map<String, Set<Long>> successBlockIds = Maps.newConcurrentMap();
+    Map<String, Roaring64NavigableMap> successBlockIds = Maps.newConcurrentMap();
 
     FakedDataPusher dataPusher =
         new FakedDataPusher(
             event -> {
               assertEquals("taskId", event.getTaskId());
               shuffleBlockInfos.addAll(event.getShuffleDataInfoList());
-              Set<Long> blockIds =
-                  event
-                      .getShuffleDataInfoList()
-                      .parallelStream()
-                      .map(sdi -> sdi.getBlockId())
-                      .collect(Collectors.toSet());
-              successBlockIds.putIfAbsent(event.getTaskId(), Sets.newConcurrentHashSet());
-              successBlockIds.get(event.getTaskId()).addAll(blockIds);
+              successBlockIds.putIfAbsent(event.getTaskId(), Roaring64NavigableMap.bitmapOf());
+              event
+                  .getShuffleDataInfoList()
+                  .forEach(sdi -> successBlockIds.get(event.getTaskId()).addLong(sdi.getBlockId()));
               return new CompletableFuture<>();
             });
 
@@ -429,10 +424,11 @@ public class RssShuffleWriterTest {
         throw new Exception("Shouldn't be here");
       }
     }
-    Map<Integer, Set<Long>> partitionToBlockIds = rssShuffleWriterSpy.getPartitionToBlockIds();
-    assertEquals(2, partitionToBlockIds.get(1).size());
-    assertEquals(2, partitionToBlockIds.get(0).size());
-    assertEquals(2, partitionToBlockIds.get(2).size());
+    Map<Integer, Roaring64NavigableMap> partitionToBlockIds =
+        rssShuffleWriterSpy.getPartitionToBlockIds();
+    assertEquals(2, partitionToBlockIds.get(1).getLongCardinality());
+    assertEquals(2, partitionToBlockIds.get(0).getLongCardinality());
+    assertEquals(2, partitionToBlockIds.get(2).getLongCardinality());
     partitionToBlockIds.clear();
   }
 
@@ -67,6 +67,8 @@ public class ShuffleClientFactory {
     private int dataCommitPoolSize;
     private int unregisterThreadPoolSize;
     private int unregisterRequestTimeSec;
+    private long sendBatchSize;
+    private int sendBatchMaxInFlight = 2;
     private RssConf rssConf;
 
     public String getClientType() {
@@ -117,6 +119,14 @@ public class ShuffleClientFactory {
       return unregisterRequestTimeSec;
     }
 
+    public long getSendBatchSize() {
+      return sendBatchSize;
+    }
+
+    public int getSendBatchMaxInFlight() {
+      return sendBatchMaxInFlight;
+    }
+
     public RssConf getRssConf() {
       return rssConf;
     }
@@ -181,6 +191,16 @@ public class ShuffleClientFactory {
       return this;
     }
 
+    public WriteClientBuilder sendBatchSize(long sendBatchSize) {
+      this.sendBatchSize = sendBatchSize;
+      return this;
+    }
+
+    public WriteClientBuilder sendBatchMaxInFlight(int sendBatchMaxInFlight) {
+      this.sendBatchMaxInFlight = sendBatchMaxInFlight;
+      return this;
+    }
+
     public WriteClientBuilder rssConf(RssConf rssConf) {
       this.rssConf = rssConf;
       return this;
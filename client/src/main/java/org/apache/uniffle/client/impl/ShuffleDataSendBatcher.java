@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.client.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.uniffle.client.api.ShuffleServerClient;
+import org.apache.uniffle.client.request.RssSendShuffleDataRequest;
+import org.apache.uniffle.client.response.RssSendShuffleDataResponse;
+import org.apache.uniffle.common.ShuffleBlockInfo;
+import org.apache.uniffle.common.ShuffleServerInfo;
+import org.apache.uniffle.common.rpc.StatusCode;
+import org.apache.uniffle.common.util.JavaUtils;
+
+/**
+ * Merges the shuffle data sent to the same shuffle server by the concurrent tasks of the executor.
+ * At most {@code maxInFlight} requests are sent to a shuffle server at the same time, the data sent
+ * by the other tasks meanwhile is queued and sent together with the next request up to {@code
+ * batchSize}, so the tasks share the rpc instead of competing for the send threads and the server.
+ * The data which can't be merged with others for its size is sent directly. The sending of every
+ * task gets the response of the request its data is sent with. The data of a merged request which
+ * is rejected by the server is sent again by each task alone, so a task isn't failed by the data of
+ * the others, while the error of a merged request fails all its tasks at once.
+ */
+class ShuffleDataSendBatcher {
+  private static final Logger LOG = LoggerFactory.getLogger(ShuffleDataSendBatcher.class);
+
+  private final long batchSize;
+  private final int maxInFlight;
+  private final int retryMax;
+  private final long retryIntervalMax;
+  private final Executor executor;
+  // server id -> pending sendings
+  private final Map<String, PendingSends> serverToPendingSends = JavaUtils.newConcurrentMap();
+
+  ShuffleDataSendBatcher(
+      long batchSize, int maxInFlight, int retryMax, long retryIntervalMax, Executor executor) {
+    this.batchSize = batchSize;
+    this.maxInFlight = maxInFlight;
+    this.retryMax = retryMax;
+    this.retryIntervalMax = retryIntervalMax;
+    this.executor = executor;
+  }
+
+  CompletableFuture<RssSendShuffleDataResponse> send(
+      String appId,
+      ShuffleServerInfo server,
+      ShuffleServerClient client,
+      Map<Integer, Map<Integer, List<ShuffleBlockInfo>>> shuffleIdToBlocks) {
+    PendingSend send = new PendingSend(appId, client, shuffleIdToBlocks);
+    if (send.size >= batchSize) {
+      sendAlone(send);
+      return send.future;
+    }
+    PendingSends pendingSends =
+        serverToPendingSends.computeIfAbsent(server.getId(), k -> new PendingSends(maxInFlight));
+    if (pendingSends.add(send)) {
+      submit(pendingSends);
+    }
+    return send.future;
+  }
+
+  private void submit(PendingSends pendingSends) {
+    try {
+      executor.execute(() -> sendBatch(pendingSends));
+    } catch (RejectedExecutionException e) {
+      pendingSends.failAll(e);
+    }
+  }
+
+  private void sendBatch(PendingSends pendingSends) {
+    List<PendingSend> batch = pendingSends.poll(batchSize);
+    if (batch.isEmpty()) {
+      return;
+    }
+    if (batch.size() == 1) {
+      try {
+        send(batch.get(0));
+      } finally {
+        finishBatch(pendingSends);
+      }
+      return;
+    }
+    PendingSend first = batch.get(0);
+    RssSendShuffleDataResponse response = null;
+    Throwable error = null;
+    try {
+      response =
+          first.client.sendShuffleData(
+              new RssSendShuffleDataRequest(
+                  first.appId, retryMax, retryIntervalMax, merge(batch)));
+    } catch (Throwable e) {
+      error = e;
+    } finally {
+      finishBatch(pendingSends);
+    }
+    if (error != null) {
+      // the request has been retried already, sending the data alone would fail again after all
+      // the retries
+      LOG.warn("Failed to send the data of {} sendings in one request", batch.size(), error);
+      for (PendingSend send : batch) {
+        send.future.completeExceptionally(error);
+      }
+      return;
+    }
+    if (response.getStatusCode() == StatusCode.SUCCESS) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Sent the data of {} sendings in one request", batch.size());
+      }
+      for (PendingSend send : batch) {
+        send.future.complete(response);
+      }
+      return;
+    }
+    // the rejection may be caused by any of the merged data, so every sending is retried alone
+    LOG.warn(
+        "Failed to send the data of {} sendings in one request with status: {}, send them alone",
+        batch.size(),
+        response.getStatusCode());
+    batch.forEach(this::sendAlone);
+  }
+
+  private void finishBatch(PendingSends pendingSends) {
+    // hand over the thread to the other servers before sending the next batch
+    if (pendingSends.finishBatch()) {
+      submit(pendingSends);
+    }
+  }
+
+  private void sendAlone(PendingSend send) {
+    try {
+      executor.execute(() -> send(send));
+    } catch (RejectedExecutionException e) {
+      send.future.completeExceptionally(e);
+    }
+  }
+
+  private void send(PendingSend send) {
+    try {
+      send.future.complete(
+          send.client.sendShuffleData(
+              new RssSendShuffleDataRequest(
+                  send.appId, retryMax, retryIntervalMax, send.shuffleIdToBlocks)));
+    } catch (Throwable e) {
+      send.future.completeExceptionally(e);
+    }
+  }
+
+  private static Map<Integer, Map<Integer, List<ShuffleBlockInfo>>> merge(
+      List<PendingSend> batch) {
+    Map<Integer, Map<Integer, List<ShuffleBlockInfo>>> shuffleIdToBlocks = Maps.newHashMap();
+    for (PendingSend send : batch) {
+      for (Map.Entry<Integer, Map<Integer, List<ShuffleBlockInfo>>> shuffleEntry :
+          send.shuffleIdToBlocks.entrySet()) {
+        Map<Integer, List<ShuffleBlockInfo>> partitionToBlocks =
+            shuffleIdToBlocks.computeIfAbsent(shuffleEntry.getKey(), k -> Maps.newHashMap());
+        for (Map.Entry<Integer, List<ShuffleBlockInfo>> partitionEntry :
+            shuffleEntry.getValue().entrySet()) {
+          partitionToBlocks
+              .computeIfAbsent(partitionEntry.getKey(), k -> Lists.newArrayList())
+              .addAll(partitionEntry.getValue());
+        }
+      }
+    }
+    return shuffleIdToBlocks;
+  }
+
+  private static class PendingSends {
+    private final int maxInFlight;
+    private final Deque<PendingSend> sends = new ArrayDeque<>();
+    private int inFlight = 0;
+
+    PendingSends(int maxInFlight) {
+      this.maxInFlight = maxInFlight;
+    }
+
+    /** Returns true if fewer requests than the limit are in flight, then a batch should be sent. */
+    synchronized boolean add(PendingSend send) {
+      sends.addLast(send);
+      if (inFlight >= maxInFlight) {
+        return false;
+      }
+      inFlight++;
+      return true;
+    }
+
+    /** Poll the sendings of the same app from the head up to the batch size, at least one. */
+    synchronized List<PendingSend> poll(long batchSize) {
+      List<PendingSend> batch = new ArrayList<>();
+      PendingSend first = sends.pollFirst();
+      if (first == null) {
+        inFlight--;
+        return batch;
+      }
+      batch.add(first);
+      long size = first.size;
+      while (!sends.isEmpty()) {
+        PendingSend next = sends.peekFirst();
+        if (!next.appId.equals(first.appId) || size + next.size > batchSize) {
+          break;
+        }
+        batch.add(sends.pollFirst());
+        size += next.size;
+      }
+      return batch;
+    }
+
+    /** Returns true if there are more pending sendings to send with the finished request slot. */
+    synchronized boolean finishBatch() {
+      if (sends.isEmpty()) {
+        inFlight--;
+        return false;
+      }
+      return true;
+    }
+
+    void failAll(Throwable e) {
+      List<PendingSend> failed;
+      synchronized (this) {
+        failed = new ArrayList<>(sends);
+        sends.clear();
+        // the request slot of the rejected batch
+        inFlight--;
+      }
+      failed.forEach(send -> send.future.completeExceptionally(e));
+    }
+  }
+
+  private static class PendingSend {
+    private final String appId;
+    private final ShuffleServerClient client;
+    private final Map<Integer, Map<Integer, List<ShuffleBlockInfo>>> shuffleIdToBlocks;
+    private final long size;
+    private final CompletableFuture<RssSendShuffleDataResponse> future =
+        new CompletableFuture<>();
+
+    PendingSend(
+        String appId,
+        ShuffleServerClient client,
+        Map<Integer, Map<Integer, List<ShuffleBlockInfo>>> shuffleIdToBlocks) {
+      this.appId = appId;
+      this.client = client;
+      this.shuffleIdToBlocks = shuffleIdToBlocks;
+      long size = 0;
+      for (Map<Integer, List<ShuffleBlockInfo>> partitionToBlocks : shuffleIdToBlocks.values()) {
+        for (List<ShuffleBlockInfo> blocks : partitionToBlocks.values()) {
+          for (ShuffleBlockInfo block : blocks) {
+            size += block.getSize();
+          }
+        }
+      }
+      this.size = size;
+    }
+  }
+}
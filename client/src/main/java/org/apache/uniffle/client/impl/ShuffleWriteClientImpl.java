@@ -31,6 +31,7 @@ import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
@@ -115,6 +116,8 @@ public class ShuffleWriteClientImpl implements ShuffleWriteClient {
   private final int unregisterRequestTimeSec;
   private Set<ShuffleServerInfo> defectiveServers;
   private RssConf rssConf;
+  // merges the blocks sent to the same server, null if it's disabled
+  private final ShuffleDataSendBatcher sendBatcher;
 
   public ShuffleWriteClientImpl(ShuffleClientFactory.WriteClientBuilder builder) {
     // set default value
@@ -145,6 +148,15 @@ public class ShuffleWriteClientImpl implements ShuffleWriteClient {
       defectiveServers = Sets.newConcurrentHashSet();
     }
     this.rssConf = builder.getRssConf();
+    this.sendBatcher =
+        builder.getSendBatchSize() > 0
+            ? new ShuffleDataSendBatcher(
+                builder.getSendBatchSize(),
+                builder.getSendBatchMaxInFlight(),
+                retryMax,
+                retryIntervalMax,
+                dataTransferPool)
+            : null;
   }
 
   private boolean sendShuffleDataAsync(
@@ -164,84 +176,66 @@ public class ShuffleWriteClientImpl implements ShuffleWriteClient {
     List<CompletableFuture<Boolean>> futures = new ArrayList<>();
     for (Map.Entry<ShuffleServerInfo, Map<Integer, Map<Integer, List<ShuffleBlockInfo>>>> entry :
         serverToBlocks.entrySet()) {
-      CompletableFuture<Boolean> future =
-          CompletableFuture.supplyAsync(
-              () -> {
-                if (needCancelRequest.get()) {
-                  LOG.info("The upstream task has been failed. Abort this data send.");
-                  return true;
-                }
-                ShuffleServerInfo ssi = entry.getKey();
-                try {
-                  Map<Integer, Map<Integer, List<ShuffleBlockInfo>>> shuffleIdToBlocks =
-                      entry.getValue();
-                  // todo: compact unnecessary blocks that reach replicaWrite
-                  RssSendShuffleDataRequest request =
-                      new RssSendShuffleDataRequest(
-                          appId, retryMax, retryIntervalMax, shuffleIdToBlocks);
-                  long s = System.currentTimeMillis();
-                  RssSendShuffleDataResponse response =
-                      getShuffleServerClient(ssi).sendShuffleData(request);
-
-                  String logMsg =
-                      String.format(
-                          "ShuffleWriteClientImpl sendShuffleData with %s blocks to %s cost: %s(ms)",
-                          serverToBlockIds.get(ssi).size(),
-                          ssi.getId(),
-                          System.currentTimeMillis() - s);
-
-                  if (response.getStatusCode() == StatusCode.SUCCESS) {
-                    // mark a replica of block that has been sent
-                    serverToBlockIds
-                        .get(ssi)
-                        .forEach(
-                            blockId ->
-                                blockIdsSendSuccessTracker
-                                    .computeIfAbsent(blockId, id -> Lists.newArrayList())
-                                    .add(ssi));
-                    if (defectiveServers != null) {
-                      defectiveServers.remove(ssi);
-                    }
-                    if (LOG.isDebugEnabled()) {
-                      LOG.debug("{} successfully.", logMsg);
-                    }
-                  } else {
-                    serverToBlockIds
-                        .get(ssi)
-                        .forEach(
-                            blockId ->
-                                blockIdsSendFailTracker
-                                    .computeIfAbsent(blockId, id -> Lists.newArrayList())
-                                    .add(ssi));
-                    if (defectiveServers != null) {
-                      defectiveServers.add(ssi);
-                    }
-                    LOG.warn("{}, it failed wth statusCode[{}]", logMsg, response.getStatusCode());
-                    return false;
+      ShuffleServerInfo ssi = entry.getKey();
+      CompletableFuture<Boolean> future;
+      if (sendBatcher != null) {
+        if (needCancelRequest.get()) {
+          LOG.info("The upstream task has been failed. Abort this data send.");
+          future = CompletableFuture.completedFuture(true);
+        } else {
+          long s = System.currentTimeMillis();
+          retainBlocks(entry.getValue());
+          // the blocks may be sent together with the blocks of the other tasks
+          future =
+              sendBatcher
+                  .send(appId, ssi, getShuffleServerClient(ssi), entry.getValue())
+                  .whenComplete((response, e) -> releaseBlocks(entry.getValue()))
+                  .handle(
+                      (response, e) ->
+                          processSendResult(
+                              ssi,
+                              serverToBlockIds.get(ssi),
+                              response,
+                              e,
+                              s,
+                              blockIdsSendSuccessTracker,
+                              blockIdsSendFailTracker));
+        }
+      } else {
+        retainBlocks(entry.getValue());
+        future =
+            CompletableFuture.supplyAsync(
+                () -> {
+                  if (needCancelRequest.get()) {
+                    LOG.info("The upstream task has been failed. Abort this data send.");
+                    releaseBlocks(entry.getValue());
+                    return true;
                   }
-                } catch (Exception e) {
-                  serverToBlockIds
-                      .get(ssi)
-                      .forEach(
-                          blockId ->
-                              blockIdsSendFailTracker
-                                  .computeIfAbsent(blockId, id -> Lists.newArrayList())
-                                  .add(ssi));
-                  if (defectiveServers != null) {
-                    defectiveServers.add(ssi);
+                  RssSendShuffleDataResponse response = null;
+                  Exception error = null;
+                  long s = System.currentTimeMillis();
+                  try {
+                    // todo: compact unnecessary blocks that reach replicaWrite
+                    RssSendShuffleDataRequest request =
+                        new RssSendShuffleDataRequest(
+                            appId, retryMax, retryIntervalMax, entry.getValue());
+                    response = getShuffleServerClient(ssi).sendShuffleData(request);
+                  } catch (Exception e) {
+                    error = e;
+                  } finally {
+                    releaseBlocks(entry.getValue());
                   }
-                  LOG.warn(
-                      "Send: "
-                          + serverToBlockIds.get(ssi).size()
-                          + " blocks to ["
-                          + ssi.getId()
-                          + "] failed.",
-                      e);
-                  return false;
-                }
-                return true;
-              },
-              dataTransferPool);
+                  return processSendResult(
+                      ssi,
+                      serverToBlockIds.get(ssi),
+                      response,
+                      error,
+                      s,
+                      blockIdsSendSuccessTracker,
+                      blockIdsSendFailTracker);
+                },
+                dataTransferPool);
+      }
       futures.add(future);
     }
 
@@ -255,6 +249,78 @@ public class ShuffleWriteClientImpl implements ShuffleWriteClient {
     return result;
   }
 
+  /**
+   * Every sending to a server holds the data of its blocks until it's finished, because the caller
+   * may stop waiting for it and release the blocks when any other server fails.
+   */
+  private static void retainBlocks(
+      Map<Integer, Map<Integer, List<ShuffleBlockInfo>>> shuffleIdToBlocks) {
+    forEachBlock(shuffleIdToBlocks, block -> block.getData().retain());
+  }
+
+  private static void releaseBlocks(
+      Map<Integer, Map<Integer, List<ShuffleBlockInfo>>> shuffleIdToBlocks) {
+    forEachBlock(shuffleIdToBlocks, block -> block.getData().release());
+  }
+
+  private static void forEachBlock(
+      Map<Integer, Map<Integer, List<ShuffleBlockInfo>>> shuffleIdToBlocks,
+      Consumer<ShuffleBlockInfo> action) {
+    for (Map<Integer, List<ShuffleBlockInfo>> partitionToBlocks : shuffleIdToBlocks.values()) {
+      for (List<ShuffleBlockInfo> blocks : partitionToBlocks.values()) {
+        blocks.forEach(action);
+      }
+    }
+  }
+
+  private boolean processSendResult(
+      ShuffleServerInfo ssi,
+      List<Long> blockIds,
+      RssSendShuffleDataResponse response,
+      Throwable error,
+      long startTime,
+      Map<Long, List<ShuffleServerInfo>> blockIdsSendSuccessTracker,
+      Map<Long, List<ShuffleServerInfo>> blockIdsSendFailTracker) {
+    if (error == null && response.getStatusCode() == StatusCode.SUCCESS) {
+      // mark a replica of block that has been sent
+      blockIds.forEach(
+          blockId ->
+              blockIdsSendSuccessTracker
+                  .computeIfAbsent(blockId, id -> Lists.newArrayList())
+                  .add(ssi));
+      if (defectiveServers != null) {
+        defectiveServers.remove(ssi);
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(
+            "ShuffleWriteClientImpl sendShuffleData with {} blocks to {} cost: {}(ms) "
+                + "successfully.",
+            blockIds.size(),
+            ssi.getId(),
+            System.currentTimeMillis() - startTime);
+      }
+      return true;
+    }
+    blockIds.forEach(
+        blockId ->
+            blockIdsSendFailTracker.computeIfAbsent(blockId, id -> Lists.newArrayList()).add(ssi));
+    if (defectiveServers != null) {
+      defectiveServers.add(ssi);
+    }
+    if (error == null) {
+      LOG.warn(
+          "ShuffleWriteClientImpl sendShuffleData with {} blocks to {} cost: {}(ms), "
+              + "it failed wth statusCode[{}]",
+          blockIds.size(),
+          ssi.getId(),
+          System.currentTimeMillis() - startTime,
+          response.getStatusCode());
+    } else {
+      LOG.warn("Send: " + blockIds.size() + " blocks to [" + ssi.getId() + "] failed.", error);
+    }
+    return false;
+  }
+
   void genServerToBlocks(
       ShuffleBlockInfo sbi,
       List<ShuffleServerInfo> serverList,
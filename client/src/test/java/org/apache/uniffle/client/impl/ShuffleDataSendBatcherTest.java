@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.client.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.Test;
+
+import org.apache.uniffle.client.api.ShuffleServerClient;
+import org.apache.uniffle.client.request.RssSendShuffleDataRequest;
+import org.apache.uniffle.client.response.RssSendShuffleDataResponse;
+import org.apache.uniffle.common.ShuffleBlockInfo;
+import org.apache.uniffle.common.ShuffleServerInfo;
+import org.apache.uniffle.common.exception.RssException;
+import org.apache.uniffle.common.rpc.StatusCode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ShuffleDataSendBatcherTest {
+
+  private final ShuffleServerInfo server = new ShuffleServerInfo("id", "host", 0);
+  private final List<Runnable> tasks = new ArrayList<>();
+  private final List<RssSendShuffleDataRequest> requests = new ArrayList<>();
+
+  @Test
+  public void sendTest() throws Exception {
+    ShuffleServerClient client = mock(ShuffleServerClient.class);
+    when(client.sendShuffleData(any()))
+        .thenAnswer(
+            invocation -> {
+              RssSendShuffleDataRequest request = invocation.getArgument(0);
+              requests.add(request);
+              if (request.getAppId().equals("app2")) {
+                throw new RssException("send failed");
+              }
+              // the request with the 3rd block is rejected by the server
+              return new RssSendShuffleDataResponse(
+                  getBlockIds(request).contains(3L) ? StatusCode.NO_BUFFER : StatusCode.SUCCESS);
+            });
+    // the size of every block is 42 bytes with the metadata
+    ShuffleDataSendBatcher batcher = new ShuffleDataSendBatcher(100, 1, 1, 0, tasks::add);
+
+    CompletableFuture<RssSendShuffleDataResponse> f1 =
+        batcher.send("app1", server, client, createBlocks(1, 1));
+    assertEquals(1, tasks.size());
+    // the following sendings wait until the server is free
+    CompletableFuture<RssSendShuffleDataResponse> f2 =
+        batcher.send("app1", server, client, createBlocks(2, 2));
+    CompletableFuture<RssSendShuffleDataResponse> f3 =
+        batcher.send("app1", server, client, createBlocks(1, 3));
+    CompletableFuture<RssSendShuffleDataResponse> f4 =
+        batcher.send("app2", server, client, createBlocks(1, 4));
+    assertEquals(1, tasks.size());
+    while (!tasks.isEmpty()) {
+      tasks.remove(0).run();
+    }
+
+    // the 1st and 2nd blocks are sent together, the 3rd one exceeds the batch size
+    assertEquals(3, requests.size());
+    assertEquals(Arrays.asList(1L, 2L), getBlockIds(requests.get(0)));
+    assertEquals(2, requests.get(0).getShuffleIdToBlocks().get(0).size());
+    assertEquals(Arrays.asList(3L), getBlockIds(requests.get(1)));
+    assertEquals(Arrays.asList(4L), getBlockIds(requests.get(2)));
+
+    // every sending gets the result of its own request
+    assertEquals(StatusCode.SUCCESS, f1.get().getStatusCode());
+    assertEquals(StatusCode.SUCCESS, f2.get().getStatusCode());
+    assertEquals(StatusCode.NO_BUFFER, f3.get().getStatusCode());
+    assertTrue(f4.isCompletedExceptionally());
+    assertThrows(ExecutionException.class, f4::get);
+
+    // the server is free again, so the next sending is sent at once
+    CompletableFuture<RssSendShuffleDataResponse> f5 =
+        batcher.send("app1", server, client, createBlocks(1, 5));
+    assertEquals(1, tasks.size());
+    assertFalse(f5.isDone());
+    tasks.remove(0).run();
+    assertEquals(StatusCode.SUCCESS, f5.get().getStatusCode());
+    assertTrue(tasks.isEmpty());
+  }
+
+  @Test
+  public void maxInFlightTest() throws Exception {
+    ShuffleServerClient client = mock(ShuffleServerClient.class);
+    when(client.sendShuffleData(any()))
+        .thenAnswer(
+            invocation -> {
+              requests.add(invocation.getArgument(0));
+              return new RssSendShuffleDataResponse(StatusCode.SUCCESS);
+            });
+    ShuffleDataSendBatcher batcher = new ShuffleDataSendBatcher(100, 2, 1, 0, tasks::add);
+
+    // 2 requests are sent to the server at the same time
+    batcher.send("app1", server, client, createBlocks(1, 1));
+    batcher.send("app1", server, client, createBlocks(1, 2));
+    assertEquals(2, tasks.size());
+    CompletableFuture<RssSendShuffleDataResponse> f3 =
+        batcher.send("app1", server, client, createBlocks(1, 3));
+    assertEquals(2, tasks.size());
+    // the data which is too large to be merged is sent directly
+    CompletableFuture<RssSendShuffleDataResponse> f4 =
+        batcher.send("app1", server, client, createBlocks(1, 4, 100));
+    assertEquals(3, tasks.size());
+    tasks.remove(2).run();
+    assertEquals(Arrays.asList(4L), getBlockIds(requests.get(0)));
+    assertEquals(StatusCode.SUCCESS, f4.get().getStatusCode());
+    assertFalse(f3.isDone());
+
+    // the 1st and 2nd blocks are merged by the 1st request slot
+    while (!tasks.isEmpty()) {
+      tasks.remove(0).run();
+    }
+    assertEquals(3, requests.size());
+    assertEquals(Arrays.asList(1L, 2L), getBlockIds(requests.get(1)));
+    assertEquals(Arrays.asList(3L), getBlockIds(requests.get(2)));
+    assertEquals(StatusCode.SUCCESS, f3.get().getStatusCode());
+  }
+
+  @Test
+  public void mergedRequestFailedTest() throws Exception {
+    ShuffleServerClient client = mock(ShuffleServerClient.class);
+    when(client.sendShuffleData(any()))
+        .thenAnswer(
+            invocation -> {
+              RssSendShuffleDataRequest request = invocation.getArgument(0);
+              requests.add(request);
+              List<Long> blockIds = getBlockIds(request);
+              if (blockIds.contains(5L)) {
+                throw new RssException("send failed");
+              }
+              return new RssSendShuffleDataResponse(
+                  blockIds.contains(2L) ? StatusCode.NO_BUFFER : StatusCode.SUCCESS);
+            });
+    ShuffleDataSendBatcher batcher = new ShuffleDataSendBatcher(130, 1, 1, 0, tasks::add);
+
+    CompletableFuture<RssSendShuffleDataResponse> f1 =
+        batcher.send("app1", server, client, createBlocks(1, 1));
+    tasks.remove(0).run();
+    assertEquals(Arrays.asList(1L), getBlockIds(requests.get(0)));
+    CompletableFuture<RssSendShuffleDataResponse> f2 =
+        batcher.send("app1", server, client, createBlocks(1, 2));
+    CompletableFuture<RssSendShuffleDataResponse> f3 =
+        batcher.send("app1", server, client, createBlocks(1, 3));
+    CompletableFuture<RssSendShuffleDataResponse> f4 =
+        batcher.send("app1", server, client, createBlocks(1, 4));
+    assertEquals(1, tasks.size());
+    // the merged request is rejected for the 2nd block
+    tasks.remove(0).run();
+    assertEquals(Arrays.asList(2L, 3L, 4L), getBlockIds(requests.get(1)));
+    assertFalse(f2.isDone());
+    assertFalse(f3.isDone());
+    assertFalse(f4.isDone());
+    // every sending of the rejected request is sent again alone
+    assertEquals(3, tasks.size());
+    while (!tasks.isEmpty()) {
+      tasks.remove(0).run();
+    }
+    assertEquals(5, requests.size());
+    assertEquals(StatusCode.SUCCESS, f1.get().getStatusCode());
+    assertEquals(StatusCode.NO_BUFFER, f2.get().getStatusCode());
+    assertEquals(StatusCode.SUCCESS, f3.get().getStatusCode());
+    assertEquals(StatusCode.SUCCESS, f4.get().getStatusCode());
+
+    // the error of the merged request fails all its sendings without sending them again
+    CompletableFuture<RssSendShuffleDataResponse> f5 =
+        batcher.send("app1", server, client, createBlocks(1, 5));
+    CompletableFuture<RssSendShuffleDataResponse> f6 =
+        batcher.send("app1", server, client, createBlocks(1, 6));
+    assertEquals(1, tasks.size());
+    tasks.remove(0).run();
+    assertEquals(6, requests.size());
+    assertEquals(Arrays.asList(5L, 6L), getBlockIds(requests.get(5)));
+    assertTrue(tasks.isEmpty());
+    assertThrows(ExecutionException.class, f5::get);
+    assertThrows(ExecutionException.class, f6::get);
+  }
+
+  private Map<Integer, Map<Integer, List<ShuffleBlockInfo>>> createBlocks(
+      int partitionId, long blockId) {
+    return createBlocks(partitionId, blockId, 10);
+  }
+
+  private Map<Integer, Map<Integer, List<ShuffleBlockInfo>>> createBlocks(
+      int partitionId, long blockId, int length) {
+    ShuffleBlockInfo block =
+        new ShuffleBlockInfo(
+            0,
+            partitionId,
+            blockId,
+            length,
+            10,
+            new byte[length],
+            Lists.newArrayList(server),
+            length,
+            10,
+            0);
+    return ImmutableMap.of(0, ImmutableMap.of(partitionId, Lists.newArrayList(block)));
+  }
+
+  private static List<Long> getBlockIds(RssSendShuffleDataRequest request) {
+    return request.getShuffleIdToBlocks().values().stream()
+        .flatMap(partitionToBlocks -> partitionToBlocks.values().stream())
+        .flatMap(List::stream)
+        .map(ShuffleBlockInfo::getBlockId)
+        .sorted()
+        .collect(Collectors.toList());
+  }
+}
@@ -65,20 +65,19 @@ public class ShuffleDataResult {
     if (buffer == null) {
       return null;
     }
-    if (buffer.nioByteBuffer().hasArray()) {
-      return buffer.nioByteBuffer().array();
+    // the file backed buffer reads the file every time, so only get it once
+    ByteBuffer data = buffer.nioByteBuffer();
+    if (data.hasArray()) {
+      return data.array();
     }
-    return ByteBufUtils.readBytes(buffer.byteBuf());
+    return ByteBufUtils.readBytes(Unpooled.wrappedBuffer(data));
   }
 
   public int getDataLength() {
     if (buffer == null) {
       return 0;
     }
-    if (buffer.nioByteBuffer().hasArray()) {
-      return buffer.nioByteBuffer().array().length;
-    }
-    return buffer.nioByteBuffer().remaining();
+    return buffer.size();
   }
 
   public ByteBuf getDataBuf() {
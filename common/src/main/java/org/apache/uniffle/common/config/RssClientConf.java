@@ -121,6 +121,34 @@ public class RssClientConf {
           .defaultValue(false)
           .withDescription("Client can use off heap memory");
 
+  public static final ConfigOption<Boolean> RSS_CLIENT_SEND_SINGLE_ROUND_TRIP_ENABLED =
+      ConfigOptions.key("rss.client.send.singleRoundTrip.enabled")
+          .booleanType()
+          .defaultValue(false)
+          .withDescription(
+              "Whether to send shuffle data without requiring the buffer in advance, the buffer "
+                  + "is reserved by the shuffle server when the data is received");
+
+  public static final ConfigOption<Long> RSS_CLIENT_SEND_BATCH_SIZE =
+      ConfigOptions.key("rss.client.send.batch.size")
+          .longType()
+          .checkValue(value -> value >= 0, "The send batch size must be non-negative")
+          .defaultValue(0L)
+          .withDescription(
+              "The max size in bytes of the blocks sent to a shuffle server in one request by "
+                  + "the concurrent tasks of the executor. While the max in-flight requests are "
+                  + "being sent to the server, the blocks sent by the other tasks are merged into "
+                  + "the next request. 0 means the blocks of every task are sent alone");
+
+  public static final ConfigOption<Integer> RSS_CLIENT_SEND_BATCH_MAX_IN_FLIGHT =
+      ConfigOptions.key("rss.client.send.batch.maxInFlight")
+          .intType()
+          .checkValue(value -> value > 0, "The max in-flight batches must be positive")
+          .defaultValue(2)
+          .withDescription(
+              "The max number of the merged requests sent to a shuffle server at the same time, "
+                  + "it's only valid when rss.client.send.batch.size is positive");
+
   public static final ConfigOption<Integer> RSS_INDEX_READ_LIMIT =
       ConfigOptions.key("rss.index.read.limit").intType().defaultValue(500);
 
@@ -19,12 +19,12 @@ package org.apache.uniffle.common.netty.buffer;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.StandardOpenOption;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.DefaultFileRegion;
 import org.slf4j.Logger;
@@ -60,37 +60,69 @@ public class FileSegmentManagedBuffer extends ManagedBuffer {
   public ByteBuffer nioByteBuffer() {
     FileChannel channel = null;
     try {
-      channel = new RandomAccessFile(file, "r").getChannel();
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
       ByteBuffer buf = ByteBuffer.allocate(length);
-      channel.position(offset);
+      long position = offset;
       while (buf.remaining() != 0) {
-        if (channel.read(buf) == -1) {
+        int read = channel.read(buf, position);
+        if (read == -1) {
           throw new IOException(
               String.format(
                   "Reached EOF before filling buffer.offset=%s,file=%s,buf.remaining=%s",
                   offset, file.getAbsoluteFile(), buf.remaining()));
         }
+        position += read;
       }
       buf.flip();
       return buf;
     } catch (IOException e) {
-      String errorMessage = "Error in reading " + this;
-      try {
-        if (channel != null) {
-          long size = channel.size();
-          errorMessage = "Error in reading " + this + " (actual file length " + size + ")";
+      logReadError(channel, e);
+      return ByteBuffer.allocate(0);
+    } finally {
+      JavaUtils.closeQuietly(channel);
+    }
+  }
+
+  @Override
+  public ByteBuf retainedByteBuf(ByteBufAllocator allocator) {
+    FileChannel channel = null;
+    ByteBuf buf = allocator.directBuffer(length);
+    try {
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      while (buf.readableBytes() < length) {
+        int remaining = length - buf.readableBytes();
+        // read into the direct buffer at the position without copying through the heap
+        if (buf.writeBytes(channel, offset + buf.readableBytes(), remaining) == -1) {
+          throw new IOException(
+              String.format(
+                  "Reached EOF before filling buffer.offset=%s,file=%s,buf.remaining=%s",
+                  offset, file.getAbsoluteFile(), remaining));
         }
-      } catch (IOException ignored) {
-        // ignore
       }
-
-      LOG.error(errorMessage, e);
-      return ByteBuffer.allocate(0);
+      return buf;
+    } catch (IOException e) {
+      buf.release();
+      logReadError(channel, e);
+      return Unpooled.EMPTY_BUFFER;
     } finally {
       JavaUtils.closeQuietly(channel);
     }
   }
 
+  private void logReadError(FileChannel channel, IOException e) {
+    String errorMessage = "Error in reading " + this;
+    try {
+      if (channel != null) {
+        long size = channel.size();
+        errorMessage = "Error in reading " + this + " (actual file length " + size + ")";
+      }
+    } catch (IOException ignored) {
+      // ignore
+    }
+
+    LOG.error(errorMessage, e);
+  }
+
   @Override
   public ManagedBuffer release() {
     return this;
@@ -20,6 +20,7 @@ package org.apache.uniffle.common.netty.buffer;
 import java.nio.ByteBuffer;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 
 public abstract class ManagedBuffer {
 
@@ -31,6 +32,14 @@ public abstract class ManagedBuffer {
 
   public abstract ManagedBuffer release();
 
+  /**
+   * Get the data as a buffer which must be released by the caller. The buffers backed by files read
+   * the data into a direct buffer of the allocator, so the data isn't copied through the heap.
+   */
+  public ByteBuf retainedByteBuf(ByteBufAllocator allocator) {
+    return byteBuf();
+  }
+
   /**
    * Convert the buffer into an Netty object, used to write the data out. The return value is either
    * a {@link io.netty.buffer.ByteBuf} or a {@link io.netty.channel.FileRegion}.
@@ -20,6 +20,7 @@ package org.apache.uniffle.common.netty.buffer;
 import java.nio.ByteBuffer;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 
 public class NettyManagedBuffer extends ManagedBuffer {
@@ -51,6 +52,11 @@ public class NettyManagedBuffer extends ManagedBuffer {
     return this;
   }
 
+  @Override
+  public ByteBuf retainedByteBuf(ByteBufAllocator allocator) {
+    return buf.retainedDuplicate();
+  }
+
   @Override
   public Object convertToNetty() {
     return buf.duplicate().retain();
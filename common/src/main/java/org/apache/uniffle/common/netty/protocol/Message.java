@@ -45,7 +45,8 @@ public abstract class Message implements Encodable {
     SHUFFLE_COMMIT_RESPONSE(17),
     GET_SHUFFLE_RESULT_RESPONSE(18),
     GET_SHUFFLE_RESULT_FOR_MULTI_PART_RESPONSE(19),
-    REQUIRE_BUFFER_RESPONSE(20);
+    REQUIRE_BUFFER_RESPONSE(20),
+    SEND_SHUFFLE_DATA_RESPONSE(21);
 
     private final byte id;
 
@@ -113,6 +114,8 @@ public abstract class Message implements Encodable {
           return GET_SHUFFLE_RESULT_FOR_MULTI_PART_RESPONSE;
         case 20:
           return REQUIRE_BUFFER_RESPONSE;
+        case 21:
+          return SEND_SHUFFLE_DATA_RESPONSE;
         case -1:
           throw new IllegalArgumentException("User type messages cannot be decoded.");
         default:
@@ -127,6 +130,8 @@ public abstract class Message implements Encodable {
         return RpcResponse.decode(in);
       case SEND_SHUFFLE_DATA_REQUEST:
         return SendShuffleDataRequest.decode(in);
+      case SEND_SHUFFLE_DATA_RESPONSE:
+        return SendShuffleDataResponse.decode(in);
       default:
         throw new IllegalArgumentException("Unexpected message type: " + msgType);
     }
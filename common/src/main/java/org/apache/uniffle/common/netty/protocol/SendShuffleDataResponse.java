@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.common.netty.protocol;
+
+import io.netty.buffer.ByteBuf;
+
+import org.apache.uniffle.common.rpc.StatusCode;
+import org.apache.uniffle.common.util.ByteBufUtils;
+
+/**
+ * The response of SendShuffleDataRequest which carries the byte credits granted by the shuffle
+ * server, the client keeps its in-flight data within the credits.
+ */
+public class SendShuffleDataResponse extends RpcResponse {
+  private long credit;
+
+  public SendShuffleDataResponse(
+      long requestId, StatusCode statusCode, String retMessage, long credit) {
+    super(requestId, statusCode, retMessage);
+    this.credit = credit;
+  }
+
+  public long getCredit() {
+    return credit;
+  }
+
+  @Override
+  public int encodedLength() {
+    return super.encodedLength() + Long.BYTES;
+  }
+
+  @Override
+  public void encode(ByteBuf buf) {
+    super.encode(buf);
+    buf.writeLong(credit);
+  }
+
+  public static SendShuffleDataResponse decode(ByteBuf byteBuf) {
+    long requestId = byteBuf.readLong();
+    StatusCode statusCode = StatusCode.fromCode(byteBuf.readInt());
+    String retMessage = ByteBufUtils.readLengthAndString(byteBuf);
+    long credit = byteBuf.readLong();
+    return new SendShuffleDataResponse(requestId, statusCode, retMessage, credit);
+  }
+
+  @Override
+  public Type type() {
+    return Type.SEND_SHUFFLE_DATA_RESPONSE;
+  }
+}
@@ -37,6 +37,9 @@ public final class Constants {
   public static final long MAX_PARTITION_ID = (1 << Constants.PARTITION_ID_MAX_LENGTH) - 1;
   public static final long MAX_TASK_ATTEMPT_ID = (1 << Constants.TASK_ATTEMPT_ID_MAX_LENGTH) - 1;
   public static final long INVALID_BLOCK_ID = -1L;
+  // the requireBufferId of the data sent without pre-allocation, the buffer is reserved by the
+  // server when the data is received, so that only one round trip is needed
+  public static final long RESERVE_BUFFER_ON_SEND_ID = -2L;
   public static final String KEY_SPLIT_CHAR = "/";
   public static final String COMMA_SPLIT_CHAR = ",";
   public static final String EQUAL_SPLIT_CHAR = "=";
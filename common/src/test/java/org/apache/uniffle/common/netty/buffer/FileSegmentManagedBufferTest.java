@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.common.netty.buffer;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.apache.uniffle.common.util.ByteBufUtils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileSegmentManagedBufferTest {
+
+  @Test
+  public void retainedByteBufTest(@TempDir File tmpDir) throws Exception {
+    File file = new File(tmpDir, "test.data");
+    byte[] data = new byte[1024];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    Files.write(file.toPath(), data);
+    byte[] expected = new byte[100];
+    System.arraycopy(data, 10, expected, 0, expected.length);
+
+    FileSegmentManagedBuffer buffer = new FileSegmentManagedBuffer(file, 10, 100);
+    ByteBuffer nioBuffer = buffer.nioByteBuffer();
+    assertEquals(100, nioBuffer.remaining());
+    assertArrayEquals(expected, nioBuffer.array());
+
+    ByteBuf buf = buffer.retainedByteBuf(PooledByteBufAllocator.DEFAULT);
+    assertTrue(buf.isDirect());
+    assertArrayEquals(expected, ByteBufUtils.readBytes(buf));
+    assertEquals(1, buf.refCnt());
+    buf.release();
+
+    // the data after the end of the file can't be read
+    buffer = new FileSegmentManagedBuffer(file, 1000, 100);
+    assertEquals(0, buffer.retainedByteBuf(PooledByteBufAllocator.DEFAULT).readableBytes());
+    assertEquals(0, buffer.nioByteBuffer().remaining());
+  }
+}
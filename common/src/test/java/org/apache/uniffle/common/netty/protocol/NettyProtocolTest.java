@@ -134,6 +134,23 @@ public class NettyProtocolTest {
     byteBuf.release();
   }
 
+  @Test
+  public void testSendShuffleDataResponse() {
+    SendShuffleDataResponse response =
+        new SendShuffleDataResponse(1, StatusCode.NO_BUFFER, "test_message", 1024L);
+    int encodeLength = response.encodedLength();
+    ByteBuf byteBuf = Unpooled.buffer(encodeLength);
+    response.encode(byteBuf);
+    assertEquals(byteBuf.readableBytes(), encodeLength);
+    SendShuffleDataResponse response1 = SendShuffleDataResponse.decode(byteBuf);
+    assertEquals(response.getRequestId(), response1.getRequestId());
+    assertEquals(response.getRetMessage(), response1.getRetMessage());
+    assertEquals(response.getStatusCode(), response1.getStatusCode());
+    assertEquals(response.getCredit(), response1.getCredit());
+    assertEquals(response.encodedLength(), response1.encodedLength());
+    byteBuf.release();
+  }
+
   @Test
   public void testGetLocalShuffleDataRequest() {
     GetLocalShuffleDataRequest getLocalShuffleDataRequest =
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.client.impl.grpc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * The byte credits granted by a shuffle server to this client. The senders wait until their data
+ * fits in the credits together with the in-flight data, and the credits are refreshed by the
+ * responses of the server. A request is always allowed when nothing is in flight, so the client
+ * can learn the latest credits even if the server granted few of them.
+ */
+class SendCredit {
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  // 0 means the server doesn't grant credits, then the sending isn't limited
+  private long credit = 0L;
+  private long inFlight = 0L;
+
+  /**
+   * Wait until the data can be sent within the credits. The data is sent anyway after the timeout
+   * or interruption, and the server rejects it if it's still full.
+   */
+  void acquire(long size, long timeoutMs) {
+    lock.lock();
+    try {
+      long remainingNs = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+      while (credit > 0 && inFlight > 0 && inFlight + size > credit && remainingNs > 0) {
+        remainingNs = changed.awaitNanos(remainingNs);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      inFlight += size;
+      lock.unlock();
+    }
+  }
+
+  void release(long size) {
+    lock.lock();
+    try {
+      inFlight = Math.max(0L, inFlight - size);
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void update(long newCredit) {
+    lock.lock();
+    try {
+      credit = newCredit;
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @VisibleForTesting
+  long getInFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
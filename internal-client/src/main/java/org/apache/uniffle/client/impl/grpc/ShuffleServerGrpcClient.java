@@ -24,6 +24,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
@@ -61,10 +63,13 @@ import org.apache.uniffle.common.PartitionRange;
 import org.apache.uniffle.common.RemoteStorageInfo;
 import org.apache.uniffle.common.ShuffleBlockInfo;
 import org.apache.uniffle.common.ShuffleDataDistributionType;
+import org.apache.uniffle.common.config.RssClientConf;
+import org.apache.uniffle.common.config.RssConf;
 import org.apache.uniffle.common.exception.NotRetryException;
 import org.apache.uniffle.common.exception.RssException;
 import org.apache.uniffle.common.exception.RssFetchFailedException;
 import org.apache.uniffle.common.rpc.StatusCode;
+import org.apache.uniffle.common.util.Constants;
 import org.apache.uniffle.common.util.RetryUtils;
 import org.apache.uniffle.common.util.RssUtils;
 import org.apache.uniffle.proto.RssProtos;
@@ -107,8 +112,13 @@ public class ShuffleServerGrpcClient extends GrpcClient implements ShuffleServer
   private static final Logger LOG = LoggerFactory.getLogger(ShuffleServerGrpcClient.class);
   protected static final long FAILED_REQUIRE_ID = -1;
   protected static final long RPC_TIMEOUT_DEFAULT_MS = 60000;
+  private static final int BACK_OFF_BASE = 2000;
   private long rpcTimeout = RPC_TIMEOUT_DEFAULT_MS;
   private ShuffleServerBlockingStub blockingStub;
+  // send the data without requiring the buffer in advance, the server reserves it on receiving
+  protected boolean singleRoundTripEnabled;
+  // the byte credits granted by the shuffle server, they're shared by the concurrent senders
+  protected final SendCredit sendCredit = new SendCredit();
 
   public ShuffleServerGrpcClient(String host, int port) {
     this(host, port, 3);
@@ -124,6 +134,16 @@ public class ShuffleServerGrpcClient extends GrpcClient implements ShuffleServer
     blockingStub = ShuffleServerGrpc.newBlockingStub(channel);
   }
 
+  public ShuffleServerGrpcClient(RssConf rssConf, String host, int port) {
+    this(rssConf, host, port, 3);
+  }
+
+  public ShuffleServerGrpcClient(RssConf rssConf, String host, int port, int maxRetryAttempts) {
+    this(host, port, maxRetryAttempts);
+    this.singleRoundTripEnabled =
+        rssConf.get(RssClientConf.RSS_CLIENT_SEND_SINGLE_ROUND_TRIP_ENABLED);
+  }
+
   public ShuffleServerBlockingStub getBlockingStub() {
     return blockingStub.withDeadlineAfter(rpcTimeout, TimeUnit.MILLISECONDS);
   }
@@ -220,7 +240,6 @@ public class ShuffleServerGrpcClient extends GrpcClient implements ShuffleServer
     int retry = 0;
     long result = FAILED_REQUIRE_ID;
     Random random = new Random();
-    final int backOffBase = 2000;
     while (rpcResponse.getStatus() == RssProtos.StatusCode.NO_BUFFER) {
       LOG.info(
           "Can't require "
@@ -246,11 +265,7 @@ public class ShuffleServerGrpcClient extends GrpcClient implements ShuffleServer
         return result;
       }
       try {
-        long backoffTime =
-            Math.min(
-                retryIntervalMax,
-                backOffBase * (1L << Math.min(retry, 16)) + random.nextInt(backOffBase));
-        Thread.sleep(backoffTime);
+        Thread.sleep(backoffTime(retry, retryIntervalMax, random));
       } catch (Exception e) {
         LOG.warn("Exception happened when require pre allocation from " + host + ":" + port, e);
       }
@@ -284,6 +299,47 @@ public class ShuffleServerGrpcClient extends GrpcClient implements ShuffleServer
     return result;
   }
 
+  /**
+   * Send the data whose buffer is reserved by the server on receiving, it's resent with the same
+   * backoff as requirePreAllocation while the server has no buffer for it.
+   */
+  protected <T> T sendWithReservation(
+      Supplier<T> sender,
+      Predicate<T> isNoBuffer,
+      int requireSize,
+      int retryMax,
+      long retryIntervalMax) {
+    T response = sender.get();
+    int retry = 0;
+    Random random = new Random();
+    while (isNoBuffer.test(response) && retry < retryMax) {
+      LOG.info(
+          "Can't reserve "
+              + requireSize
+              + " bytes from "
+              + host
+              + ":"
+              + port
+              + ", sleep and try["
+              + retry
+              + "] again");
+      try {
+        Thread.sleep(backoffTime(retry, retryIntervalMax, random));
+      } catch (Exception e) {
+        LOG.warn("Exception happened when reserve buffer from " + host + ":" + port, e);
+      }
+      response = sender.get();
+      retry++;
+    }
+    return response;
+  }
+
+  private static long backoffTime(int retry, long retryIntervalMax, Random random) {
+    return Math.min(
+        retryIntervalMax,
+        BACK_OFF_BASE * (1L << Math.min(retry, 16)) + random.nextInt(BACK_OFF_BASE));
+  }
+
   private RssProtos.ShuffleUnregisterResponse doUnregisterShuffle(String appId, int shuffleId) {
     RssProtos.ShuffleUnregisterRequest request =
         RssProtos.ShuffleUnregisterRequest.newBuilder()
@@ -396,21 +452,25 @@ public class ShuffleServerGrpcClient extends GrpcClient implements ShuffleServer
       final int allocateSize = size;
       final int finalBlockNum = blockNum;
       try {
+        sendCredit.acquire(allocateSize, rpcTimeout);
         RetryUtils.retry(
             () -> {
-              long requireId =
-                  requirePreAllocation(
-                      appId,
-                      shuffleId,
-                      partitionIds,
-                      allocateSize,
-                      request.getRetryMax() / maxRetryAttempts,
-                      request.getRetryIntervalMax());
-              if (requireId == FAILED_REQUIRE_ID) {
-                throw new RssException(
-                    String.format(
-                        "requirePreAllocation failed! size[%s], host[%s], port[%s]",
-                        allocateSize, host, port));
+              long requireId = Constants.RESERVE_BUFFER_ON_SEND_ID;
+              if (!singleRoundTripEnabled) {
+                requireId =
+                    requirePreAllocation(
+                        appId,
+                        shuffleId,
+                        partitionIds,
+                        allocateSize,
+                        request.getRetryMax() / maxRetryAttempts,
+                        request.getRetryIntervalMax());
+                if (requireId == FAILED_REQUIRE_ID) {
+                  throw new RssException(
+                      String.format(
+                          "requirePreAllocation failed! size[%s], host[%s], port[%s]",
+                          allocateSize, host, port));
+                }
               }
               long start = System.currentTimeMillis();
               SendShuffleDataRequest rpcRequest =
@@ -421,7 +481,16 @@ public class ShuffleServerGrpcClient extends GrpcClient implements ShuffleServer
                       .addAllShuffleData(shuffleData)
                       .setTimestamp(start)
                       .build();
-              SendShuffleDataResponse response = getBlockingStub().sendShuffleData(rpcRequest);
+              SendShuffleDataResponse response =
+                  singleRoundTripEnabled
+                      ? sendWithReservation(
+                          () -> getBlockingStub().sendShuffleData(rpcRequest),
+                          r -> r.getStatus() == RssProtos.StatusCode.NO_BUFFER,
+                          allocateSize,
+                          request.getRetryMax() / maxRetryAttempts,
+                          request.getRetryIntervalMax())
+                      : getBlockingStub().sendShuffleData(rpcRequest);
+              sendCredit.update(response.getCredit());
               if (LOG.isDebugEnabled()) {
                 LOG.debug(
                     "Do sendShuffleData to {}:{} rpc cost:"
@@ -460,6 +529,8 @@ public class ShuffleServerGrpcClient extends GrpcClient implements ShuffleServer
         LOG.warn(throwable.getMessage());
         isSuccessful = false;
         break;
+      } finally {
+        sendCredit.release(allocateSize);
       }
     }
 
@@ -49,7 +49,9 @@ import org.apache.uniffle.common.netty.protocol.GetMemoryShuffleDataRequest;
 import org.apache.uniffle.common.netty.protocol.GetMemoryShuffleDataResponse;
 import org.apache.uniffle.common.netty.protocol.RpcResponse;
 import org.apache.uniffle.common.netty.protocol.SendShuffleDataRequest;
+import org.apache.uniffle.common.netty.protocol.SendShuffleDataResponse;
 import org.apache.uniffle.common.rpc.StatusCode;
+import org.apache.uniffle.common.util.Constants;
 import org.apache.uniffle.common.util.RetryUtils;
 
 public class ShuffleServerGrpcNettyClient extends ShuffleServerGrpcClient {
@@ -63,7 +65,7 @@ public class ShuffleServerGrpcNettyClient extends ShuffleServerGrpcClient {
 
   public ShuffleServerGrpcNettyClient(
       RssConf rssConf, String host, int grpcPort, int nettyPort, int maxRetryAttempts) {
-    super(host, grpcPort, maxRetryAttempts);
+    super(rssConf, host, grpcPort, maxRetryAttempts);
     this.nettyPort = nettyPort;
     TransportContext transportContext = new TransportContext(new TransportConf(rssConf));
     this.clientFactory = new TransportClientFactory(transportContext);
@@ -90,44 +92,54 @@ public class ShuffleServerGrpcNettyClient extends ShuffleServerGrpcClient {
       int allocateSize = size;
       int finalBlockNum = blockNum;
       try {
+        sendCredit.acquire(allocateSize, RPC_TIMEOUT_DEFAULT_MS);
         RetryUtils.retry(
             () -> {
               TransportClient transportClient = getTransportClient();
-              long requireId =
-                  requirePreAllocation(
-                      request.getAppId(),
-                      allocateSize,
-                      request.getRetryMax(),
-                      request.getRetryIntervalMax());
-              if (requireId == FAILED_REQUIRE_ID) {
-                throw new RssException(
-                    String.format(
-                        "requirePreAllocation failed! size[%s], host[%s], port[%s]",
-                        allocateSize, host, port));
+              RpcResponse rpcResponse;
+              if (singleRoundTripEnabled) {
+                // there is no pre-allocation round trip, the concurrent sends are pipelined in
+                // the connection and matched with their responses by the request id
+                rpcResponse =
+                    sendWithReservation(
+                        () ->
+                            sendShuffleDataRpc(
+                                transportClient,
+                                request.getAppId(),
+                                shuffleId,
+                                Constants.RESERVE_BUFFER_ON_SEND_ID,
+                                stb.getValue(),
+                                allocateSize,
+                                finalBlockNum),
+                        r -> r.getStatusCode() == StatusCode.NO_BUFFER,
+                        allocateSize,
+                        request.getRetryMax(),
+                        request.getRetryIntervalMax());
+              } else {
+                long requireId =
+                    requirePreAllocation(
+                        request.getAppId(),
+                        allocateSize,
+                        request.getRetryMax(),
+                        request.getRetryIntervalMax());
+                if (requireId == FAILED_REQUIRE_ID) {
+                  throw new RssException(
+                      String.format(
+                          "requirePreAllocation failed! size[%s], host[%s], port[%s]",
+                          allocateSize, host, port));
+                }
+                rpcResponse =
+                    sendShuffleDataRpc(
+                        transportClient,
+                        request.getAppId(),
+                        shuffleId,
+                        requireId,
+                        stb.getValue(),
+                        allocateSize,
+                        finalBlockNum);
               }
-
-              SendShuffleDataRequest sendShuffleDataRequest =
-                  new SendShuffleDataRequest(
-                      requestId(),
-                      request.getAppId(),
-                      shuffleId,
-                      requireId,
-                      stb.getValue(),
-                      System.currentTimeMillis());
-              long start = System.currentTimeMillis();
-              RpcResponse rpcResponse =
-                  transportClient.sendRpcSync(sendShuffleDataRequest, RPC_TIMEOUT_DEFAULT_MS);
-              if (LOG.isDebugEnabled()) {
-                LOG.debug(
-                    "Do sendShuffleData to {}:{} rpc cost:"
-                        + (System.currentTimeMillis() - start)
-                        + " ms for "
-                        + allocateSize
-                        + " bytes with "
-                        + finalBlockNum
-                        + " blocks",
-                    host,
-                    port);
+              if (rpcResponse instanceof SendShuffleDataResponse) {
+                sendCredit.update(((SendShuffleDataResponse) rpcResponse).getCredit());
               }
               if (rpcResponse.getStatusCode() != StatusCode.SUCCESS) {
                 String msg =
@@ -155,6 +167,8 @@ public class ShuffleServerGrpcNettyClient extends ShuffleServerGrpcClient {
         LOG.warn(throwable.getMessage());
         isSuccessful = false;
         break;
+      } finally {
+        sendCredit.release(allocateSize);
       }
     }
 
@@ -167,6 +181,40 @@ public class ShuffleServerGrpcNettyClient extends ShuffleServerGrpcClient {
     return response;
   }
 
+  private RpcResponse sendShuffleDataRpc(
+      TransportClient transportClient,
+      String appId,
+      int shuffleId,
+      long requireId,
+      Map<Integer, List<ShuffleBlockInfo>> partitionToBlocks,
+      int allocateSize,
+      int blockNum) {
+    SendShuffleDataRequest sendShuffleDataRequest =
+        new SendShuffleDataRequest(
+            requestId(),
+            appId,
+            shuffleId,
+            requireId,
+            partitionToBlocks,
+            System.currentTimeMillis());
+    long start = System.currentTimeMillis();
+    RpcResponse rpcResponse =
+        transportClient.sendRpcSync(sendShuffleDataRequest, RPC_TIMEOUT_DEFAULT_MS);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(
+          "Do sendShuffleData to {}:{} rpc cost:"
+              + (System.currentTimeMillis() - start)
+              + " ms for "
+              + allocateSize
+              + " bytes with "
+              + blockNum
+              + " blocks",
+          host,
+          port);
+    }
+    return rpcResponse;
+  }
+
   @Override
   public RssGetInMemoryShuffleDataResponse getInMemoryShuffleData(
       RssGetInMemoryShuffleDataRequest request) {
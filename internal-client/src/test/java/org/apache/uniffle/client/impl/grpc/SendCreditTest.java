@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.client.impl.grpc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SendCreditTest {
+
+  @Test
+  void sendWithoutCredit() {
+    SendCredit sendCredit = new SendCredit();
+    // the sending isn't limited until the server grants credits
+    sendCredit.acquire(100, 1000);
+    sendCredit.acquire(100, 1000);
+    assertEquals(200, sendCredit.getInFlight());
+    sendCredit.release(100);
+    sendCredit.release(100);
+    assertEquals(0, sendCredit.getInFlight());
+  }
+
+  @Test
+  void sendWithinCredit() throws Exception {
+    SendCredit sendCredit = new SendCredit();
+    sendCredit.update(150);
+    sendCredit.acquire(100, 1000);
+    CompletableFuture<Void> blocked =
+        CompletableFuture.runAsync(() -> sendCredit.acquire(100, 10000));
+    Thread.sleep(200);
+    assertFalse(blocked.isDone());
+    // the credits are replenished by the response
+    sendCredit.update(200);
+    blocked.get(5, TimeUnit.SECONDS);
+    assertEquals(200, sendCredit.getInFlight());
+
+    // one request is always allowed when nothing is in flight
+    sendCredit.release(200);
+    sendCredit.update(1);
+    sendCredit.acquire(100, 1000);
+    assertEquals(100, sendCredit.getInFlight());
+
+    // the data is sent anyway after the timeout
+    long start = System.currentTimeMillis();
+    sendCredit.acquire(100, 200);
+    assertTrue(System.currentTimeMillis() - start >= 200);
+    assertEquals(200, sendCredit.getInFlight());
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.roaringbitmap.longlong.LongConsumer;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import org.apache.uniffle.common.util.RssUtils;
+
+/**
+ * A set of block ids which can be updated concurrently without blocking. The added block ids are
+ * queued as batches and merged into a bitmap lazily, either by the reader or by the writer which
+ * finds too many pending batches and the bitmap isn't being merged by others.
+ */
+public class BlockIdSet {
+  // the pending batches are merged by the writer after this number
+  private static final int MERGE_THRESHOLD = 64;
+
+  private final Queue<long[]> pendingBlockIds = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pendingNum = new AtomicInteger(0);
+  private final ReentrantLock mergeLock = new ReentrantLock();
+  private final Roaring64NavigableMap bitmap = Roaring64NavigableMap.bitmapOf();
+
+  public void add(long[] blockIds) {
+    if (blockIds == null || blockIds.length == 0) {
+      return;
+    }
+    pendingBlockIds.offer(blockIds);
+    if (pendingNum.incrementAndGet() >= MERGE_THRESHOLD && mergeLock.tryLock()) {
+      try {
+        merge();
+      } finally {
+        mergeLock.unlock();
+      }
+    }
+  }
+
+  /** Return a copy of the block ids which won't be changed by the later updates. */
+  public Roaring64NavigableMap snapshot() {
+    mergeLock.lock();
+    try {
+      merge();
+      return RssUtils.cloneBitMap(bitmap);
+    } finally {
+      mergeLock.unlock();
+    }
+  }
+
+  /**
+   * Iterate the block ids without copying the bitmap. The writers aren't blocked meanwhile, their
+   * block ids are queued and merged later.
+   */
+  public void forEach(LongConsumer consumer) {
+    mergeLock.lock();
+    try {
+      merge();
+      bitmap.forEach(consumer);
+    } finally {
+      mergeLock.unlock();
+    }
+  }
+
+  public long getLongCardinality() {
+    mergeLock.lock();
+    try {
+      merge();
+      return bitmap.getLongCardinality();
+    } finally {
+      mergeLock.unlock();
+    }
+  }
+
+  public long getSizeInBytes() {
+    mergeLock.lock();
+    try {
+      merge();
+      return bitmap.getLongSizeInBytes();
+    } finally {
+      mergeLock.unlock();
+    }
+  }
+
+  private void merge() {
+    long[] blockIds;
+    while ((blockIds = pendingBlockIds.poll()) != null) {
+      pendingNum.decrementAndGet();
+      for (long blockId : blockIds) {
+        bitmap.addLong(blockId);
+      }
+    }
+  }
+}
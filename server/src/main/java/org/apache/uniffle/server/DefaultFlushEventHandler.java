@@ -17,6 +17,7 @@
 
 package org.apache.uniffle.server;
 
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -24,6 +25,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Queues;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +44,11 @@ public class DefaultFlushEventHandler implements FlushEventHandler {
   private final ShuffleServerConf shuffleServerConf;
   private final StorageManager storageManager;
   private Executor localFileThreadPoolExecutor;
+  private int localFileDiskConcurrency;
+  private long localFileCoalesceSize;
+  // the flush events of every local disk are scheduled separately
+  private final Map<LocalStorage, LocalStorageFlushScheduler> localStorageSchedulers =
+      Maps.newConcurrentMap();
   private Executor hadoopThreadPoolExecutor;
   private Executor fallbackThreadPoolExecutor;
   private final StorageType storageType;
@@ -89,6 +96,11 @@ public class DefaultFlushEventHandler implements FlushEventHandler {
           shuffleServerConf.getInteger(ShuffleServerConf.SERVER_FLUSH_LOCALFILE_THREAD_POOL_SIZE);
       localFileThreadPoolExecutor =
           createFlushEventExecutor(poolSize, "LocalFileFlushEventThreadPool");
+      int diskConcurrency =
+          shuffleServerConf.getInteger(ShuffleServerConf.SERVER_FLUSH_LOCALFILE_DISK_CONCURRENCY);
+      localFileDiskConcurrency = diskConcurrency > 0 ? diskConcurrency : poolSize;
+      localFileCoalesceSize =
+          shuffleServerConf.getLong(ShuffleServerConf.SERVER_FLUSH_LOCALFILE_COALESCE_SIZE);
     }
     if (StorageType.withHadoop(storageType)) {
       int poolSize =
@@ -120,7 +132,7 @@ public class DefaultFlushEventHandler implements FlushEventHandler {
       if (storage instanceof HadoopStorage) {
         hadoopThreadPoolExecutor.execute(() -> handleEventAndUpdateMetrics(event, false));
       } else if (storage instanceof LocalStorage) {
-        localFileThreadPoolExecutor.execute(() -> handleEventAndUpdateMetrics(event, true));
+        getLocalStorageScheduler((LocalStorage) storage).add(event);
       } else {
         // When we did not select storage for this event, we will ignore this event.
         // Then we must doCleanup, or will result to resource leak.
@@ -132,6 +144,26 @@ public class DefaultFlushEventHandler implements FlushEventHandler {
     }
   }
 
+  private LocalStorageFlushScheduler getLocalStorageScheduler(LocalStorage storage) {
+    return localStorageSchedulers.computeIfAbsent(
+        storage,
+        s ->
+            new LocalStorageFlushScheduler(
+                s.getBasePath(),
+                localFileDiskConcurrency,
+                localFileCoalesceSize,
+                localFileThreadPoolExecutor,
+                event -> handleEventAndUpdateMetrics(event, true),
+                this::dispatchLocalFileEvents));
+  }
+
+  private void dispatchLocalFileEvents() {
+    // the events delayed by the full thread pool of any disk can be submitted now
+    for (LocalStorageFlushScheduler scheduler : localStorageSchedulers.values()) {
+      scheduler.dispatch();
+    }
+  }
+
   protected Executor createFlushEventExecutor(int poolSize, String threadFactoryName) {
     int waitQueueSize =
         shuffleServerConf.getInteger(ShuffleServerConf.SERVER_FLUSH_THREAD_POOL_QUEUE_SIZE);
@@ -160,4 +192,9 @@ public class DefaultFlushEventHandler implements FlushEventHandler {
   public Executor getFallbackThreadPoolExecutor() {
     return fallbackThreadPoolExecutor;
   }
+
+  @VisibleForTesting
+  LocalStorageFlushScheduler getLocalStorageFlushScheduler(LocalStorage storage) {
+    return localStorageSchedulers.get(storage);
+  }
 }
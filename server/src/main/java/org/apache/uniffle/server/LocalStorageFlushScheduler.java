@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules the flush events of one local disk. At most {@code concurrency} events are written to
+ * the disk at the same time, so a slow disk can't occupy all the flush threads. The events of the
+ * huge partitions and the ones triggered by the memory pressure are flushed first, and the others
+ * are picked from the apps in turn, so an app with lots of events can't starve the other apps. The
+ * small events of the same partition waiting in the queue are coalesced into one write up to
+ * {@code coalesceSize}.
+ */
+class LocalStorageFlushScheduler {
+  private static final Logger LOG = LoggerFactory.getLogger(LocalStorageFlushScheduler.class);
+  // the max number of pending events checked for coalescing every time
+  private static final int MAX_COALESCE_CHECKED_EVENTS = 128;
+
+  private final String diskPath;
+  private final int concurrency;
+  private final long coalesceSize;
+  private final Executor executor;
+  private final Consumer<ShuffleDataFlushEvent> eventConsumer;
+  private final Runnable afterFlush;
+
+  private final Deque<PendingEvent> urgentEvents = new ArrayDeque<>();
+  // appId -> pending events, the app served just now is moved to the tail
+  private final Map<String, Deque<PendingEvent>> appEvents = new LinkedHashMap<>();
+  private int pendingNum = 0;
+  private int runningNum = 0;
+
+  LocalStorageFlushScheduler(
+      String diskPath,
+      int concurrency,
+      long coalesceSize,
+      Executor executor,
+      Consumer<ShuffleDataFlushEvent> eventConsumer,
+      Runnable afterFlush) {
+    this.diskPath = diskPath;
+    this.concurrency = concurrency;
+    this.coalesceSize = coalesceSize;
+    this.executor = executor;
+    this.eventConsumer = eventConsumer;
+    this.afterFlush = afterFlush;
+  }
+
+  synchronized void add(ShuffleDataFlushEvent event) {
+    PendingEvent pendingEvent = new PendingEvent(event);
+    if (event.isOwnedByHugePartition() || event.isTriggeredByMemoryPressure()) {
+      urgentEvents.addLast(pendingEvent);
+    } else {
+      appEvents.computeIfAbsent(event.getAppId(), k -> new ArrayDeque<>()).addLast(pendingEvent);
+    }
+    pendingNum++;
+    updatePendingNum();
+    dispatch();
+  }
+
+  /** Submit the pending events to the executor until the concurrency of the disk is reached. */
+  synchronized void dispatch() {
+    while (runningNum < concurrency) {
+      PendingEvent pendingEvent = poll();
+      if (pendingEvent == null) {
+        return;
+      }
+      runningNum++;
+      try {
+        executor.execute(() -> flush(pendingEvent));
+      } catch (RejectedExecutionException e) {
+        // try again when any running event is finished
+        runningNum--;
+        urgentEvents.addFirst(pendingEvent);
+        pendingNum++;
+        updatePendingNum();
+        LOG.warn("Flush thread pool is full, delay the event: {}", pendingEvent.event);
+        return;
+      }
+    }
+  }
+
+  private PendingEvent poll() {
+    PendingEvent pendingEvent;
+    if (!urgentEvents.isEmpty()) {
+      pendingEvent = pollAndCoalesce(urgentEvents);
+    } else {
+      Iterator<Map.Entry<String, Deque<PendingEvent>>> iterator = appEvents.entrySet().iterator();
+      if (!iterator.hasNext()) {
+        return null;
+      }
+      Map.Entry<String, Deque<PendingEvent>> entry = iterator.next();
+      iterator.remove();
+      Deque<PendingEvent> events = entry.getValue();
+      pendingEvent = pollAndCoalesce(events);
+      if (!events.isEmpty()) {
+        appEvents.put(entry.getKey(), events);
+      }
+    }
+    updatePendingNum();
+    return pendingEvent;
+  }
+
+  private PendingEvent pollAndCoalesce(Deque<PendingEvent> events) {
+    PendingEvent first = events.pollFirst();
+    pendingNum--;
+    if (coalesceSize <= 0 || !canCoalesce(first.event)) {
+      return first;
+    }
+    List<ShuffleDataFlushEvent> coalescedEvents = null;
+    long size = first.event.getSize();
+    int checkedNum = 0;
+    Iterator<PendingEvent> iterator = events.iterator();
+    while (iterator.hasNext()
+        && size < coalesceSize
+        && checkedNum++ < MAX_COALESCE_CHECKED_EVENTS) {
+      ShuffleDataFlushEvent event = iterator.next().event;
+      if (size + event.getSize() > coalesceSize
+          || !canCoalesce(event)
+          || !isSamePartition(first.event, event)) {
+        continue;
+      }
+      iterator.remove();
+      pendingNum--;
+      size += event.getSize();
+      if (coalescedEvents == null) {
+        coalescedEvents = new ArrayList<>();
+        coalescedEvents.add(first.event);
+      }
+      coalescedEvents.add(event);
+    }
+    if (coalescedEvents == null) {
+      return first;
+    }
+    // the coalesced event is counted as one event in the flush queue
+    ShuffleServerMetrics.gaugeEventQueueSize.dec(coalescedEvents.size() - 1);
+    ShuffleServerMetrics.counterTotalLocalFileCoalescedEventNum.inc(coalescedEvents.size());
+    return new PendingEvent(ShuffleDataFlushEvent.coalesce(coalescedEvents), first.addTime);
+  }
+
+  private static boolean canCoalesce(ShuffleDataFlushEvent event) {
+    // the events being retried and the coalesced ones are written alone
+    return !event.isPended()
+        && event.getShuffleBlocks() != null
+        && event.getOriginalEvents().size() == 1;
+  }
+
+  private static boolean isSamePartition(ShuffleDataFlushEvent e1, ShuffleDataFlushEvent e2) {
+    return e1.getAppId().equals(e2.getAppId())
+        && e1.getShuffleId() == e2.getShuffleId()
+        && e1.getStartPartition() == e2.getStartPartition()
+        && e1.getEndPartition() == e2.getEndPartition()
+        && e1.getUnderStorage() == e2.getUnderStorage();
+  }
+
+  private void flush(PendingEvent pendingEvent) {
+    try {
+      ShuffleServerMetrics.histogramLocalFileFlushWaitTime
+          .labels(diskPath)
+          .observe(System.currentTimeMillis() - pendingEvent.addTime);
+      eventConsumer.accept(pendingEvent.event);
+    } finally {
+      synchronized (this) {
+        runningNum--;
+      }
+      afterFlush.run();
+    }
+  }
+
+  private void updatePendingNum() {
+    ShuffleServerMetrics.gaugeLocalFileFlushQueueSize.labels(diskPath).set(pendingNum);
+  }
+
+  synchronized int getPendingNum() {
+    return pendingNum;
+  }
+
+  synchronized int getRunningNum() {
+    return runningNum;
+  }
+
+  private static class PendingEvent {
+    private final ShuffleDataFlushEvent event;
+    private final long addTime;
+
+    PendingEvent(ShuffleDataFlushEvent event) {
+      this(event, System.currentTimeMillis());
+    }
+
+    PendingEvent(ShuffleDataFlushEvent event, long addTime) {
+      this.event = event;
+      this.addTime = addTime;
+    }
+  }
+}
@@ -18,6 +18,7 @@
 package org.apache.uniffle.server;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
@@ -48,6 +49,9 @@ public class ShuffleDataFlushEvent {
   private final List<Runnable> cleanupCallbackChains;
 
   private boolean ownedByHugePartition = false;
+  private boolean triggeredByMemoryPressure = false;
+  // the events which are coalesced into this event
+  private List<ShuffleDataFlushEvent> coalescedEvents = Collections.emptyList();
   private long startPendingTime;
 
   public ShuffleDataFlushEvent(
@@ -72,6 +76,45 @@ public class ShuffleDataFlushEvent {
     this.cleanupCallbackChains = new ArrayList<>();
   }
 
+  /**
+   * Coalesce the events of the same partition into one event, so they are written to the storage
+   * at once. The cleanup callbacks of the original events are called when the coalesced event is
+   * cleaned up.
+   */
+  public static ShuffleDataFlushEvent coalesce(List<ShuffleDataFlushEvent> events) {
+    ShuffleDataFlushEvent first = events.get(0);
+    long size = 0;
+    List<ShufflePartitionedBlock> blocks = new ArrayList<>();
+    for (ShuffleDataFlushEvent event : events) {
+      size += event.getSize();
+      blocks.addAll(event.getShuffleBlocks());
+    }
+    ShuffleDataFlushEvent coalescedEvent =
+        new ShuffleDataFlushEvent(
+            first.eventId,
+            first.appId,
+            first.shuffleId,
+            first.startPartition,
+            first.endPartition,
+            size,
+            blocks,
+            first.valid,
+            first.shuffleBuffer);
+    coalescedEvent.underStorage = first.underStorage;
+    for (ShuffleDataFlushEvent event : events) {
+      coalescedEvent.ownedByHugePartition |= event.ownedByHugePartition;
+      coalescedEvent.triggeredByMemoryPressure |= event.triggeredByMemoryPressure;
+      coalescedEvent.addCleanupCallback(event::doCleanup);
+    }
+    coalescedEvent.coalescedEvents = events;
+    return coalescedEvent;
+  }
+
+  /** Get the original events of the coalesced event, or the event itself if it's not coalesced. */
+  public List<ShuffleDataFlushEvent> getOriginalEvents() {
+    return coalescedEvents.isEmpty() ? Collections.singletonList(this) : coalescedEvents;
+  }
+
   public List<ShufflePartitionedBlock> getShuffleBlocks() {
     return shuffleBlocks;
   }
@@ -183,6 +226,14 @@ public class ShuffleDataFlushEvent {
     this.ownedByHugePartition = true;
   }
 
+  public boolean isTriggeredByMemoryPressure() {
+    return triggeredByMemoryPressure;
+  }
+
+  public void markTriggeredByMemoryPressure() {
+    this.triggeredByMemoryPressure = true;
+  }
+
   public long getStartPendingTime() {
     return startPendingTime;
   }
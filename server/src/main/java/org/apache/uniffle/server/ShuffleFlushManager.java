@@ -21,7 +21,11 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang3.StringUtils;
@@ -33,6 +37,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.uniffle.common.ShuffleDataDistributionType;
 import org.apache.uniffle.common.ShufflePartitionedBlock;
 import org.apache.uniffle.common.config.RssBaseConf;
+import org.apache.uniffle.common.exception.RssException;
 import org.apache.uniffle.common.util.JavaUtils;
 import org.apache.uniffle.common.util.RssUtils;
 import org.apache.uniffle.server.storage.StorageManager;
@@ -53,7 +58,9 @@ public class ShuffleFlushManager {
   private final ShuffleServerConf shuffleServerConf;
   private Configuration hadoopConf;
   // appId -> shuffleId -> committed shuffle blockIds
-  private Map<String, Map<Integer, Roaring64NavigableMap>> committedBlockIds =
+  private Map<String, Map<Integer, BlockIdSet>> committedBlockIds = JavaUtils.newConcurrentMap();
+  // appId -> shuffleId -> the commits waiting for the blockIds to be committed
+  private final Map<String, Map<Integer, Set<CommitWaiter>>> commitWaiters =
       JavaUtils.newConcurrentMap();
   private final int retryMax;
 
@@ -196,7 +203,12 @@ public class ShuffleFlushManager {
       ShuffleWriteHandler handler = storage.getOrCreateWriteHandler(request);
       writeSuccess = storageManager.write(storage, handler, event);
       if (writeSuccess) {
-        updateCommittedBlockIds(event.getAppId(), event.getShuffleId(), blocks);
+        for (ShuffleDataFlushEvent originalEvent : event.getOriginalEvents()) {
+          updateCommittedBlockIds(
+              originalEvent.getAppId(),
+              originalEvent.getShuffleId(),
+              originalEvent.getShuffleBlocks());
+        }
         ShuffleServerMetrics.incStorageSuccessCounter(storage.getStorageHost());
       } else if (event.getRetryTimes() <= retryMax) {
         if (event.isPended()) {
@@ -237,24 +249,51 @@ public class ShuffleFlushManager {
     if (blocks == null || blocks.size() == 0) {
       return;
     }
-    committedBlockIds.computeIfAbsent(appId, key -> JavaUtils.newConcurrentMap());
-    Map<Integer, Roaring64NavigableMap> shuffleToBlockIds = committedBlockIds.get(appId);
-    shuffleToBlockIds.computeIfAbsent(shuffleId, key -> Roaring64NavigableMap.bitmapOf());
-    Roaring64NavigableMap bitmap = shuffleToBlockIds.get(shuffleId);
-    synchronized (bitmap) {
-      for (ShufflePartitionedBlock spb : blocks) {
-        bitmap.addLong(spb.getBlockId());
+    long[] blockIds = new long[blocks.size()];
+    int i = 0;
+    for (ShufflePartitionedBlock spb : blocks) {
+      blockIds[i++] = spb.getBlockId();
+    }
+    committedBlockIds
+        .computeIfAbsent(appId, key -> JavaUtils.newConcurrentMap())
+        .computeIfAbsent(shuffleId, key -> new BlockIdSet())
+        .add(blockIds);
+    // the waiters must be checked after the blockIds are added, see waitForCommitted
+    Map<Integer, Set<CommitWaiter>> shuffleToWaiters = commitWaiters.get(appId);
+    if (shuffleToWaiters != null) {
+      Set<CommitWaiter> waiters = shuffleToWaiters.get(shuffleId);
+      if (waiters != null) {
+        waiters.forEach(waiter -> waiter.committed(blockIds));
       }
     }
   }
 
+  /**
+   * Return a future which is completed once all the expected blockIds of the shuffle are
+   * committed, or failed once the shuffle is removed. The future is never completed if some of
+   * them are lost, so the caller should fail it after a timeout.
+   */
+  public CompletableFuture<Void> waitForCommitted(
+      String appId, int shuffleId, Roaring64NavigableMap expectedBlockIds) {
+    CommitWaiter waiter = new CommitWaiter(expectedBlockIds);
+    Set<CommitWaiter> waiters =
+        commitWaiters
+            .computeIfAbsent(appId, key -> JavaUtils.newConcurrentMap())
+            .computeIfAbsent(shuffleId, key -> ConcurrentHashMap.newKeySet());
+    waiters.add(waiter);
+    // the blockIds committed before the waiter is registered
+    waiter.committed(getCommittedBlockIds(appId, shuffleId));
+    waiter.future.whenComplete((v, e) -> waiters.remove(waiter));
+    return waiter.future;
+  }
+
   public Roaring64NavigableMap getCommittedBlockIds(String appId, Integer shuffleId) {
-    Map<Integer, Roaring64NavigableMap> shuffleIdToBlockIds = committedBlockIds.get(appId);
+    Map<Integer, BlockIdSet> shuffleIdToBlockIds = committedBlockIds.get(appId);
     if (shuffleIdToBlockIds == null) {
       LOG.warn("Unexpected value when getCommittedBlockIds for appId[" + appId + "]");
       return Roaring64NavigableMap.bitmapOf();
     }
-    Roaring64NavigableMap blockIds = shuffleIdToBlockIds.get(shuffleId);
+    BlockIdSet blockIds = shuffleIdToBlockIds.get(shuffleId);
     if (blockIds == null) {
       LOG.warn(
           "Unexpected value when getCommittedBlockIds for appId["
@@ -264,11 +303,27 @@ public class ShuffleFlushManager {
               + "]");
       return Roaring64NavigableMap.bitmapOf();
     }
-    return blockIds;
+    return blockIds.snapshot();
   }
 
   public void removeResources(String appId) {
     committedBlockIds.remove(appId);
+    Map<Integer, Set<CommitWaiter>> shuffleToWaiters = commitWaiters.remove(appId);
+    if (shuffleToWaiters != null) {
+      shuffleToWaiters.forEach((shuffleId, waiters) -> failWaiters(appId, shuffleId, waiters));
+    }
+  }
+
+  // the blockIds of the removed shuffle will never be committed, so its commits fail at once
+  private void failWaiters(String appId, int shuffleId, Set<CommitWaiter> waiters) {
+    RssException e =
+        new RssException(
+            "Shuffle data of appId[" + appId + "], shuffleId[" + shuffleId + "] is removed");
+    waiters.forEach(waiter -> waiter.future.completeExceptionally(e));
+  }
+
+  public void forEachCommittedBlockIds(Consumer<BlockIdSet> action) {
+    committedBlockIds.values().forEach(blockIds -> blockIds.values().forEach(action));
   }
 
   protected void initHadoopConf() {
@@ -294,14 +349,65 @@ public class ShuffleFlushManager {
   public void removeResourcesOfShuffleId(String appId, Collection<Integer> shuffleIds) {
     Optional.ofNullable(committedBlockIds.get(appId))
         .ifPresent(shuffleIdToBlockIds -> shuffleIds.forEach(shuffleIdToBlockIds::remove));
+    Optional.ofNullable(commitWaiters.get(appId))
+        .ifPresent(
+            shuffleIdToWaiters ->
+                shuffleIds.forEach(
+                    shuffleId ->
+                        Optional.ofNullable(shuffleIdToWaiters.remove(shuffleId))
+                            .ifPresent(waiters -> failWaiters(appId, shuffleId, waiters))));
   }
 
   public ShuffleDataDistributionType getDataDistributionType(String appId) {
     return shuffleServer.getShuffleTaskManager().getDataDistributionType(appId);
   }
 
+  @VisibleForTesting
+  int getCommitWaiterNum(String appId, int shuffleId) {
+    Map<Integer, Set<CommitWaiter>> shuffleToWaiters = commitWaiters.get(appId);
+    if (shuffleToWaiters == null) {
+      return 0;
+    }
+    Set<CommitWaiter> waiters = shuffleToWaiters.get(shuffleId);
+    return waiters == null ? 0 : waiters.size();
+  }
+
   @VisibleForTesting
   public FlushEventHandler getEventHandler() {
     return eventHandler;
   }
+
+  private static class CommitWaiter {
+    private final Roaring64NavigableMap remainingBlockIds;
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    CommitWaiter(Roaring64NavigableMap expectedBlockIds) {
+      this.remainingBlockIds = expectedBlockIds;
+      if (expectedBlockIds.isEmpty()) {
+        future.complete(null);
+      }
+    }
+
+    void committed(long[] blockIds) {
+      synchronized (this) {
+        for (long blockId : blockIds) {
+          remainingBlockIds.removeLong(blockId);
+        }
+        if (!remainingBlockIds.isEmpty()) {
+          return;
+        }
+      }
+      future.complete(null);
+    }
+
+    void committed(Roaring64NavigableMap blockIds) {
+      synchronized (this) {
+        remainingBlockIds.andNot(blockIds);
+        if (!remainingBlockIds.isEmpty()) {
+          return;
+        }
+      }
+      future.complete(null);
+    }
+  }
 }
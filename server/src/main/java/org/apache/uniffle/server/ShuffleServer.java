@@ -27,6 +27,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import io.netty.util.ResourceLeakDetector;
 import io.prometheus.client.CollectorRegistry;
 import org.apache.commons.collections.CollectionUtils;
 import org.slf4j.Logger;
@@ -184,6 +185,10 @@ public class ShuffleServer {
     if (nettyServerEnabled && streamServer != null) {
       streamServer.stop();
     }
+    if (shuffleBufferManager != null) {
+      shuffleBufferManager.close();
+      LOG.info("Buffer Manager Stopped!");
+    }
     if (executorService != null) {
       executorService.shutdownNow();
     }
@@ -255,6 +260,7 @@ public class ShuffleServer {
       healthCheck.start();
     }
 
+    initLeakDetection();
     registerHeartBeat = new RegisterHeartBeat(this);
     shuffleFlushManager = new ShuffleFlushManager(shuffleServerConf, this, storageManager);
     shuffleBufferManager = new ShuffleBufferManager(shuffleServerConf, shuffleFlushManager);
@@ -271,6 +277,16 @@ public class ShuffleServer {
     initServerTags();
   }
 
+  private void initLeakDetection() {
+    String leakDetectionLevel =
+        shuffleServerConf.get(ShuffleServerConf.SERVER_BUFFER_OFF_HEAP_LEAK_DETECTION_LEVEL);
+    if (shuffleServerConf.get(ShuffleServerConf.SERVER_BUFFER_OFF_HEAP_ENABLED)
+        && leakDetectionLevel != null) {
+      // the level is global in the JVM, so it's set once when the server starts
+      ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.parseLevel(leakDetectionLevel));
+    }
+  }
+
   private void initServerTags() {
     // it's the system tag for server's version
     tags.add(Constants.SHUFFLE_SERVER_VERSION);
@@ -25,6 +25,8 @@ import org.apache.uniffle.common.config.ConfigOption;
 import org.apache.uniffle.common.config.ConfigOptions;
 import org.apache.uniffle.common.config.ConfigUtils;
 import org.apache.uniffle.common.config.RssBaseConf;
+import org.apache.uniffle.storage.util.FileSyncPolicy;
+import org.apache.uniffle.storage.util.LocalFileLayout;
 
 public class ShuffleServerConf extends RssBaseConf {
 
@@ -43,7 +45,27 @@ public class ShuffleServerConf extends RssBaseConf {
           .defaultValue(0.6)
           .withDescription(
               "JVM heap size * ratio for the maximum memory of buffer manager for shuffle server, this "
-                  + "is only effective when `rss.server.buffer.capacity` is not explicitly set");
+                  + "is only effective when `rss.server.buffer.capacity` is not explicitly set. "
+                  + "When `rss.server.buffer.offHeap.enabled` is true, the max direct memory "
+                  + "is used instead of the JVM heap size");
+
+  public static final ConfigOption<Boolean> SERVER_BUFFER_OFF_HEAP_ENABLED =
+      ConfigOptions.key("rss.server.buffer.offHeap.enabled")
+          .booleanType()
+          .defaultValue(false)
+          .withDescription(
+              "Whether to keep the shuffle data of buffer manager in a dedicated pooled direct "
+                  + "memory arena. The buffer capacity is then sized against the max direct memory "
+                  + "(-XX:MaxDirectMemorySize) instead of the JVM heap size");
+
+  public static final ConfigOption<String> SERVER_BUFFER_OFF_HEAP_LEAK_DETECTION_LEVEL =
+      ConfigOptions.key("rss.server.buffer.offHeap.leakDetectionLevel")
+          .stringType()
+          .noDefaultValue()
+          .withDescription(
+              "The netty leak detection level(DISABLED, SIMPLE, ADVANCED, PARANOID) set when "
+                  + "the server starts with the off-heap buffer arena, it applies to all the netty "
+                  + "buffers of the server. The netty default is used if it's not set");
 
   public static final ConfigOption<Long> SERVER_READ_BUFFER_CAPACITY =
       ConfigOptions.key("rss.server.read.buffer.capacity")
@@ -56,9 +78,42 @@ public class ShuffleServerConf extends RssBaseConf {
           .doubleType()
           .defaultValue(0.2)
           .withDescription(
-              "JVM heap size * ratio for read buffer size, this is only effective when "
+              "JVM heap size * ratio for read buffer size, or the max direct memory * ratio "
+                  + "if rss.server.buffer.offHeap.enabled is true, this is only effective when "
                   + "`rss.server.reader.buffer.capacity.ratio` is not explicitly set");
 
+  public static final ConfigOption<Long> SERVER_READ_MEMORY_REQUIRE_TIMEOUT =
+      ConfigOptions.key("rss.server.read.memory.require.timeout")
+          .longType()
+          .noDefaultValue()
+          .withDescription(
+              "Max time (ms) a read request waits in the queue for read buffer, "
+                  + "rss.server.memory.request.retry.max seconds is used if it's not set");
+
+  public static final ConfigOption<Boolean> SERVER_SEND_CREDIT_ENABLED =
+      ConfigOptions.key("rss.server.send.credit.enabled")
+          .booleanType()
+          .defaultValue(false)
+          .withDescription(
+              "Whether to grant byte credits to the clients in the responses of sending "
+                  + "shuffle data, the clients keep their in-flight data within the credits");
+
+  public static final ConfigOption<Long> SERVER_SEND_CREDIT_MAX =
+      ConfigOptions.key("rss.server.send.credit.max")
+          .longType()
+          .defaultValue(64 * 1024 * 1024L)
+          .withDescription("Max byte credits granted to a client in one response");
+
+  public static final ConfigOption<Long> SERVER_SEND_CREDIT_EXPIRED =
+      ConfigOptions.key("rss.server.send.credit.expired")
+          .longType()
+          .checkValue(value -> value > 0, "The send credit expiration must be positive")
+          .defaultValue(1000L)
+          .withDescription(
+              "The milliseconds the latest credit granted to an app is reserved until it's used "
+                  + "by the cached data of the app, the credits reserved for the concurrent apps "
+                  + "never exceed the free buffer in total");
+
   public static final ConfigOption<Long> SERVER_HEARTBEAT_DELAY =
       ConfigOptions.key("rss.server.heartbeat.delay")
           .longType()
@@ -83,6 +138,24 @@ public class ShuffleServerConf extends RssBaseConf {
           .defaultValue(10)
           .withDescription("thread pool for flush data to file");
 
+  public static final ConfigOption<Integer> SERVER_FLUSH_LOCALFILE_DISK_CONCURRENCY =
+      ConfigOptions.key("rss.server.flush.localfile.disk.concurrency")
+          .intType()
+          .checkValue(value -> value >= 0, "disk concurrency must be non-negative")
+          .defaultValue(0)
+          .withDescription(
+              "The max number of flush events written to one local disk at the same time, "
+                  + "0 means it's only limited by rss.server.flush.localfile.threadPool.size");
+
+  public static final ConfigOption<Long> SERVER_FLUSH_LOCALFILE_COALESCE_SIZE =
+      ConfigOptions.key("rss.server.flush.localfile.coalesce.size")
+          .longType()
+          .checkValue(ConfigUtils.NON_NEGATIVE_LONG_VALIDATOR, "coalesce size must be non-negative")
+          .defaultValue(32 * 1024L * 1024L)
+          .withDescription(
+              "The pending flush events of the same partition are coalesced into one write of "
+                  + "the local disk up to this size, 0 means the events are never coalesced");
+
   public static final ConfigOption<Integer> SERVER_FLUSH_HADOOP_THREAD_POOL_SIZE =
       ConfigOptions.key("rss.server.flush.hadoop.threadPool.size")
           .intType()
@@ -132,12 +205,6 @@ public class ShuffleServerConf extends RssBaseConf {
           .defaultValue(20 * 1000L)
           .withDescription("Expired time (ms) for pre allocated buffer");
 
-  public static final ConfigOption<Long> SERVER_COMMIT_CHECK_INTERVAL_MAX =
-      ConfigOptions.key("rss.server.commit.check.interval.max.ms")
-          .longType()
-          .defaultValue(10000L)
-          .withDescription("Max interval(ms) for check commit status");
-
   public static final ConfigOption<Long> SERVER_WRITE_SLOW_THRESHOLD =
       ConfigOptions.key("rss.server.write.slow.threshold")
           .longType()
@@ -302,6 +369,18 @@ public class ShuffleServerConf extends RssBaseConf {
           .defaultValue(75.0)
           .withDescription("HighWaterMark of memory in percentage style");
 
+  public static final ConfigOption<Double> SERVER_MEMORY_SHUFFLE_URGENT_FLUSH_PERCENTAGE =
+      ConfigOptions.key("rss.server.memory.shuffle.urgentFlush.percentage")
+          .doubleType()
+          .checkValue(
+              ConfigUtils.PERCENTAGE_DOUBLE_VALIDATOR,
+              "The urgent flush memory percentage must be between 0.0 and 100.0")
+          .defaultValue(90.0)
+          .withDescription(
+              "The buffers flushed when the used memory, including the data in flush, is above "
+                  + "this percentage of rss.server.buffer.capacity are written before the other "
+                  + "pending flush events of the disk");
+
   public static final ConfigOption<Long> FLUSH_COLD_STORAGE_THRESHOLD_SIZE =
       ConfigOptions.key("rss.server.flush.cold.storage.threshold.size")
           .longType()
@@ -351,6 +430,69 @@ public class ShuffleServerConf extends RssBaseConf {
           .withDescription(
               "For localstorage, it will exit when the failed initialized local storage exceed the number");
 
+  public static final ConfigOption<Long> LOCAL_FILE_WRITER_CACHE_SIZE =
+      ConfigOptions.key("rss.server.localfile.writer.cache.size")
+          .longType()
+          .checkValue(
+              ConfigUtils.NON_NEGATIVE_LONG_VALIDATOR, "writer cache size must be non-negative")
+          .defaultValue(1024L)
+          .withDescription(
+              "The max number of local shuffle files kept open for writing of every disk, "
+                  + "the files are opened and closed for every flush if it's 0");
+
+  public static final ConfigOption<Long> LOCAL_FILE_WRITER_IDLE_TIMEOUT =
+      ConfigOptions.key("rss.server.localfile.writer.idle.timeout")
+          .longType()
+          .defaultValue(60 * 1000L)
+          .withDescription(
+              "The open local shuffle file is closed after being idle for this time(ms)");
+
+  public static final ConfigOption<FileSyncPolicy> LOCAL_FILE_WRITER_SYNC_POLICY =
+      ConfigOptions.key("rss.server.localfile.writer.sync.policy")
+          .enumType(FileSyncPolicy.class)
+          .defaultValue(FileSyncPolicy.NONE)
+          .withDescription(
+              "When the local shuffle files are synced to the disk, NONE leaves it to the OS, "
+                  + "WRITE syncs after every flush and CLOSE syncs when the file is closed");
+
+  public static final ConfigOption<Long> LOCAL_FILE_INDEX_CACHE_CAPACITY =
+      ConfigOptions.key("rss.server.localfile.index.cache.capacity")
+          .longType()
+          .checkValue(
+              ConfigUtils.NON_NEGATIVE_LONG_VALIDATOR, "index cache capacity must be non-negative")
+          .defaultValue(128 * 1024L * 1024L)
+          .withDescription(
+              "The max size of the local index files cached in the heap for reading of every "
+                  + "disk, the index is read from the file for every request if it's 0");
+
+  public static final ConfigOption<Long> LOCAL_FILE_READ_AHEAD_CACHE_CAPACITY =
+      ConfigOptions.key("rss.server.localfile.readahead.cache.capacity")
+          .longType()
+          .checkValue(
+              ConfigUtils.NON_NEGATIVE_LONG_VALIDATOR,
+              "read ahead cache capacity must be non-negative")
+          .defaultValue(0L)
+          .withDescription(
+              "The max size of the local shuffle data read ahead of the sequential readers of "
+                  + "every disk, which is kept in the heap, the read ahead is disabled if it's 0");
+
+  public static final ConfigOption<Integer> LOCAL_FILE_READ_AHEAD_CHUNK_SIZE =
+      ConfigOptions.key("rss.server.localfile.readahead.chunk.size")
+          .intType()
+          .checkValue(
+              ConfigUtils.POSITIVE_INTEGER_VALIDATOR_2, "read ahead chunk size must be positive")
+          .defaultValue(1024 * 1024)
+          .withDescription("The size of the chunks which the local shuffle data is read ahead by");
+
+  public static final ConfigOption<LocalFileLayout> LOCAL_FILE_LAYOUT =
+      ConfigOptions.key("rss.server.localfile.layout")
+          .enumType(LocalFileLayout.class)
+          .defaultValue(LocalFileLayout.PARTITION)
+          .withDescription(
+              "How the shuffle data is laid out in the local files, PARTITION writes a pair of "
+                  + "files for every partition range and MERGED appends all the partitions of a "
+                  + "shuffle to a pair of files of every disk");
+
   public static final ConfigOption<Boolean> SINGLE_BUFFER_FLUSH_ENABLED =
       ConfigOptions.key("rss.server.single.buffer.flush.enabled")
           .booleanType()
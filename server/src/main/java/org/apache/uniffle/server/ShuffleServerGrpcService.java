@@ -21,6 +21,7 @@ import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import com.google.common.collect.Lists;
@@ -32,6 +33,7 @@ import io.grpc.Context;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import org.apache.commons.lang3.StringUtils;
 import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.slf4j.Logger;
@@ -49,6 +51,7 @@ import org.apache.uniffle.common.config.RssBaseConf;
 import org.apache.uniffle.common.exception.FileNotFoundException;
 import org.apache.uniffle.common.rpc.StatusCode;
 import org.apache.uniffle.common.util.ByteBufUtils;
+import org.apache.uniffle.common.util.Constants;
 import org.apache.uniffle.common.util.RssUtils;
 import org.apache.uniffle.proto.RssProtos;
 import org.apache.uniffle.proto.RssProtos.AppHeartBeatRequest;
@@ -198,14 +201,39 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
             .recordTransportTime(ShuffleServerGrpcMetrics.SEND_SHUFFLE_DATA_METHOD, transportTime);
       }
     }
-    int requireSize = shuffleServer.getShuffleTaskManager().getRequireBufferSize(requireBufferId);
+    ShuffleTaskManager manager = shuffleServer.getShuffleTaskManager();
+    boolean isReserveOnSend = requireBufferId == Constants.RESERVE_BUFFER_ON_SEND_ID;
+    List<ShufflePartitionedData> shufflePartitionedData = toPartitionedData(req);
+    int requireSize =
+        isReserveOnSend
+            ? (int) getTotalBlockSize(shufflePartitionedData)
+            : manager.getRequireBufferSize(requireBufferId);
 
     StatusCode ret = StatusCode.SUCCESS;
     String responseMessage = "OK";
     if (req.getShuffleDataCount() > 0) {
       ShuffleServerMetrics.counterTotalReceivedDataSize.inc(requireSize);
-      ShuffleTaskManager manager = shuffleServer.getShuffleTaskManager();
-      PreAllocatedBufferInfo info = manager.getAndRemovePreAllocatedBuffer(requireBufferId);
+      PreAllocatedBufferInfo info;
+      if (isReserveOnSend) {
+        // the buffer is reserved for the received data directly, no pre-allocation is needed
+        StatusCode reserveStatus =
+            manager.reserveBufferOnSend(
+                appId, shuffleId, toPartitionIds(shufflePartitionedData), requireSize);
+        if (reserveStatus != StatusCode.SUCCESS) {
+          reply =
+              SendShuffleDataResponse.newBuilder()
+                  .setStatus(reserveStatus.toProto())
+                  .setRetMsg("Can't reserve " + requireSize + " bytes for appId[" + appId + "]")
+                  .setCredit(shuffleServer.getShuffleBufferManager().grantSendCredit(appId))
+                  .build();
+          responseObserver.onNext(reply);
+          responseObserver.onCompleted();
+          return;
+        }
+        info = new PreAllocatedBufferInfo(requireBufferId, System.currentTimeMillis(), requireSize);
+      } else {
+        info = manager.getAndRemovePreAllocatedBuffer(requireBufferId);
+      }
       boolean isPreAllocated = info != null;
       if (!isPreAllocated) {
         String errorMsg =
@@ -222,13 +250,13 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
             SendShuffleDataResponse.newBuilder()
                 .setStatus(StatusCode.INTERNAL_ERROR.toProto())
                 .setRetMsg(responseMessage)
+                .setCredit(shuffleServer.getShuffleBufferManager().grantSendCredit(appId))
                 .build();
         responseObserver.onNext(reply);
         responseObserver.onCompleted();
         return;
       }
       final long start = System.currentTimeMillis();
-      List<ShufflePartitionedData> shufflePartitionedData = toPartitionedData(req);
       long alreadyReleasedSize = 0;
       for (ShufflePartitionedData spd : shufflePartitionedData) {
         String shuffleDataInfo =
@@ -282,6 +310,7 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
           SendShuffleDataResponse.newBuilder()
               .setStatus(ret.toProto())
               .setRetMsg(responseMessage)
+              .setCredit(shuffleServer.getShuffleBufferManager().grantSendCredit(appId))
               .build();
       long costTime = System.currentTimeMillis() - start;
       shuffleServer
@@ -306,6 +335,7 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
           SendShuffleDataResponse.newBuilder()
               .setStatus(StatusCode.INTERNAL_ERROR.toProto())
               .setRetMsg("No data in request")
+              .setCredit(shuffleServer.getShuffleBufferManager().grantSendCredit(appId))
               .build();
     }
 
@@ -361,31 +391,38 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
       FinishShuffleRequest req, StreamObserver<FinishShuffleResponse> responseObserver) {
     String appId = req.getAppId();
     int shuffleId = req.getShuffleId();
-    StatusCode status;
-    String msg = "OK";
     String errorMsg =
         "Fail to finish shuffle for appId["
             + appId
             + "], shuffleId["
             + shuffleId
             + "], data may be lost";
+    CompletableFuture<StatusCode> future;
     try {
       LOG.info("Get finishShuffle request for appId[" + appId + "], shuffleId[" + shuffleId + "]");
-      status = shuffleServer.getShuffleTaskManager().commitShuffle(appId, shuffleId);
-      if (status != StatusCode.SUCCESS) {
-        status = StatusCode.INTERNAL_ERROR;
-        msg = errorMsg;
-      }
+      future = shuffleServer.getShuffleTaskManager().commitShuffleAsync(appId, shuffleId);
     } catch (Exception e) {
-      status = StatusCode.INTERNAL_ERROR;
-      msg = errorMsg;
-      LOG.error(errorMsg, e);
+      future = new CompletableFuture<>();
+      future.completeExceptionally(e);
     }
-
-    FinishShuffleResponse response =
-        FinishShuffleResponse.newBuilder().setStatus(status.toProto()).setRetMsg(msg).build();
-    responseObserver.onNext(response);
-    responseObserver.onCompleted();
+    // reply once the data is committed without holding the rpc thread
+    future.whenComplete(
+        (commitStatus, e) -> {
+          StatusCode status = commitStatus;
+          String msg = "OK";
+          if (e != null) {
+            status = StatusCode.INTERNAL_ERROR;
+            msg = errorMsg;
+            LOG.error(errorMsg, e);
+          } else if (status != StatusCode.SUCCESS) {
+            status = StatusCode.INTERNAL_ERROR;
+            msg = errorMsg;
+          }
+          FinishShuffleResponse response =
+              FinishShuffleResponse.newBuilder().setStatus(status.toProto()).setRetMsg(msg).build();
+          responseObserver.onNext(response);
+          responseObserver.onCompleted();
+        });
   }
 
   @Override
@@ -597,6 +634,7 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
     String msg = "OK";
     GetLocalShuffleDataResponse reply = null;
     ShuffleDataResult sdr = null;
+    ByteBuf data = null;
     String requestInfo =
         "appId["
             + appId
@@ -637,10 +675,14 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
                     storageType,
                     offset,
                     length);
+        // read the file into a direct buffer which is wrapped by the response without copying,
+        // it's only copied once when the response is serialized
+        data = sdr.getManagedBuffer().retainedByteBuf(PooledByteBufAllocator.DEFAULT);
         long readTime = System.currentTimeMillis() - start;
         ShuffleServerMetrics.counterTotalReadTime.inc(readTime);
-        ShuffleServerMetrics.counterTotalReadDataSize.inc(sdr.getDataLength());
-        ShuffleServerMetrics.counterTotalReadLocalDataFileSize.inc(sdr.getDataLength());
+        ShuffleServerMetrics.counterTotalReadDataSize.inc(data.readableBytes());
+        ShuffleServerMetrics.counterTotalReadLocalDataFileSize.inc(data.readableBytes());
+        ShuffleServerMetrics.counterTotalCopiedLocalDataFileSize.inc(data.readableBytes());
         shuffleServer
             .getGrpcMetrics()
             .recordProcessTime(ShuffleServerGrpcMetrics.GET_SHUFFLE_DATA_METHOD, readTime);
@@ -652,7 +694,7 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
             GetLocalShuffleDataResponse.newBuilder()
                 .setStatus(status.toProto())
                 .setRetMsg(msg)
-                .setData(UnsafeByteOperations.unsafeWrap(sdr.getData()))
+                .setData(UnsafeByteOperations.unsafeWrap(data.nioBuffer()))
                 .build();
       } catch (Exception e) {
         status = StatusCode.INTERNAL_ERROR;
@@ -679,8 +721,15 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
               .setRetMsg(msg)
               .build();
     }
-    responseObserver.onNext(reply);
-    responseObserver.onCompleted();
+    try {
+      responseObserver.onNext(reply);
+      responseObserver.onCompleted();
+    } finally {
+      // the response is serialized in onNext, then the wrapped data can be released
+      if (data != null) {
+        data.release();
+      }
+    }
   }
 
   @Override
@@ -891,6 +940,18 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
     return ret;
   }
 
+  private long getTotalBlockSize(List<ShufflePartitionedData> shufflePartitionedData) {
+    return shufflePartitionedData.stream()
+        .mapToLong(ShufflePartitionedData::getTotalBlockSize)
+        .sum();
+  }
+
+  private List<Integer> toPartitionIds(List<ShufflePartitionedData> shufflePartitionedData) {
+    return shufflePartitionedData.stream()
+        .map(ShufflePartitionedData::getPartitionId)
+        .collect(Collectors.toList());
+  }
+
   private ShufflePartitionedBlock[] toPartitionedBlock(List<ShuffleBlock> blocks) {
     if (blocks == null || blocks.size() == 0) {
       return new ShufflePartitionedBlock[] {};
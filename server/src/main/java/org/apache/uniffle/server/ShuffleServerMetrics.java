@@ -24,6 +24,8 @@ import com.google.common.collect.Maps;
 import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.Counter;
 import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import io.prometheus.client.Summary;
 import org.apache.commons.lang3.StringUtils;
 
 import org.apache.uniffle.common.metrics.MetricsManager;
@@ -50,6 +52,7 @@ public class ShuffleServerMetrics {
   private static final String TOTAL_READ_DATA = "total_read_data";
   private static final String TOTAL_READ_LOCAL_DATA_FILE = "total_read_local_data_file";
   private static final String TOTAL_READ_LOCAL_INDEX_FILE = "total_read_local_index_file";
+  private static final String TOTAL_COPIED_LOCAL_DATA_FILE = "total_copied_local_data_file";
   private static final String TOTAL_READ_MEMORY_DATA = "total_read_memory_data";
   private static final String TOTAL_READ_TIME = "total_read_time";
   private static final String TOTAL_REQUIRE_READ_MEMORY = "total_require_read_memory_num";
@@ -57,6 +60,8 @@ public class ShuffleServerMetrics {
       "total_require_read_memory_retry_num";
   private static final String TOTAL_REQUIRE_READ_MEMORY_FAILED =
       "total_require_read_memory_failed_num";
+  private static final String REQUIRE_READ_MEMORY_WAIT_TIME = "require_read_memory_wait_time";
+  private static final String READ_MEMORY_WAITER_NUM = "read_memory_waiter_num";
 
   private static final String LOCAL_STORAGE_TOTAL_DIRS_NUM = "local_storage_total_dirs_num";
   private static final String LOCAL_STORAGE_CORRUPTED_DIRS_NUM = "local_storage_corrupted_dirs_num";
@@ -71,6 +76,8 @@ public class ShuffleServerMetrics {
   private static final String IN_FLUSH_BUFFER_SIZE = "in_flush_buffer_size";
   private static final String USED_BUFFER_SIZE = "used_buffer_size";
   private static final String READ_USED_BUFFER_SIZE = "read_used_buffer_size";
+  private static final String OFF_HEAP_ARENA_USED_SIZE = "off_heap_arena_used_size";
+  private static final String USED_DIRECT_MEMORY_SIZE = "used_direct_memory_size";
   private static final String TOTAL_FAILED_WRITTEN_EVENT_NUM = "total_failed_written_event_num";
   private static final String TOTAL_DROPPED_EVENT_NUM = "total_dropped_event_num";
   private static final String TOTAL_HADOOP_WRITE_DATA = "total_hadoop_write_data";
@@ -97,6 +104,8 @@ public class ShuffleServerMetrics {
   private static final String TOTAL_APP_WITH_HUGE_PARTITION_NUM =
       "total_app_with_huge_partition_num";
   private static final String TOTAL_PARTITION_NUM = "total_partition_num";
+  private static final String BLOCK_IDS_MEMORY = "block_ids_memory";
+  private static final String BLOCK_IDS_MEMORY_PER_MILLION = "block_ids_memory_per_million";
   private static final String TOTAL_HUGE_PARTITION_NUM = "total_huge_partition_num";
 
   private static final String HUGE_PARTITION_NUM = "huge_partition_num";
@@ -104,6 +113,11 @@ public class ShuffleServerMetrics {
 
   private static final String LOCAL_FILE_EVENT_FLUSH_NUM = "local_file_event_flush_num";
   private static final String HADOOP_EVENT_FLUSH_NUM = "hadoop_event_flush_num";
+  private static final String LOCAL_FILE_FLUSH_QUEUE_SIZE = "local_file_flush_queue_size";
+  private static final String LOCAL_FILE_FLUSH_WAIT_TIME = "local_file_flush_wait_time";
+  private static final String TOTAL_LOCAL_FILE_COALESCED_EVENT_NUM =
+      "total_local_file_coalesced_event_num";
+  private static final double[] FLUSH_WAIT_TIME_BUCKETS = {1, 10, 100, 1000, 10000, 60000, 300000};
 
   public static Counter.Child counterTotalAppNum;
   public static Counter.Child counterTotalAppWithHugePartitionNum;
@@ -124,6 +138,8 @@ public class ShuffleServerMetrics {
   public static Counter.Child counterTotalReadDataSize;
   public static Counter.Child counterTotalReadLocalDataFileSize;
   public static Counter.Child counterTotalReadLocalIndexFileSize;
+  // the bytes of local data copied in user space when being served, to compare with the read ones
+  public static Counter.Child counterTotalCopiedLocalDataFileSize;
   public static Counter.Child counterTotalReadMemoryDataSize;
   public static Counter.Child counterTotalReadTime;
   public static Counter.Child counterTotalFailedWrittenEventNum;
@@ -139,6 +155,7 @@ public class ShuffleServerMetrics {
   public static Counter.Child counterTotalRequireReadMemoryNum;
   public static Counter.Child counterTotalRequireReadMemoryRetryNum;
   public static Counter.Child counterTotalRequireReadMemoryFailedNum;
+  public static Summary.Child summaryRequireReadMemoryWaitTime;
 
   public static Gauge.Child gaugeHugePartitionNum;
   public static Gauge.Child gaugeAppWithHugePartitionNum;
@@ -155,10 +172,15 @@ public class ShuffleServerMetrics {
   public static Gauge.Child gaugeInFlushBufferSize;
   public static Gauge.Child gaugeUsedBufferSize;
   public static Gauge.Child gaugeReadBufferUsedSize;
+  public static Gauge.Child gaugeReadMemoryWaiterNum;
+  public static Gauge.Child gaugeOffHeapArenaUsedSize;
+  public static Gauge.Child gaugeUsedDirectMemorySize;
   public static Gauge.Child gaugeWriteHandler;
   public static Gauge.Child gaugeEventQueueSize;
   public static Gauge.Child gaugeAppNum;
   public static Gauge.Child gaugeTotalPartitionNum;
+  public static Gauge.Child gaugeBlockIdsMemory;
+  public static Gauge.Child gaugeBlockIdsMemoryPerMillion;
 
   public static Counter counterRemoteStorageTotalWrite;
   public static Counter counterRemoteStorageRetryWrite;
@@ -170,6 +192,9 @@ public class ShuffleServerMetrics {
   private static String tags;
   public static Counter counterLocalFileEventFlush;
   public static Counter counterHadoopEventFlush;
+  public static Gauge gaugeLocalFileFlushQueueSize;
+  public static Histogram histogramLocalFileFlushWaitTime;
+  public static Counter.Child counterTotalLocalFileCoalescedEventNum;
 
   private static MetricsManager metricsManager;
   private static boolean isRegister = false;
@@ -261,6 +286,8 @@ public class ShuffleServerMetrics {
         metricsManager.addLabeledCounter(TOTAL_READ_LOCAL_DATA_FILE);
     counterTotalReadLocalIndexFileSize =
         metricsManager.addLabeledCounter(TOTAL_READ_LOCAL_INDEX_FILE);
+    counterTotalCopiedLocalDataFileSize =
+        metricsManager.addLabeledCounter(TOTAL_COPIED_LOCAL_DATA_FILE);
     counterTotalReadMemoryDataSize = metricsManager.addLabeledCounter(TOTAL_READ_MEMORY_DATA);
     counterTotalReadTime = metricsManager.addLabeledCounter(TOTAL_READ_TIME);
     counterTotalDroppedEventNum = metricsManager.addLabeledCounter(TOTAL_DROPPED_EVENT_NUM);
@@ -297,6 +324,8 @@ public class ShuffleServerMetrics {
         metricsManager.addLabeledCounter(TOTAL_REQUIRE_READ_MEMORY_RETRY);
     counterTotalRequireReadMemoryFailedNum =
         metricsManager.addLabeledCounter(TOTAL_REQUIRE_READ_MEMORY_FAILED);
+    summaryRequireReadMemoryWaitTime =
+        metricsManager.addLabeledSummary(REQUIRE_READ_MEMORY_WAIT_TIME);
 
     counterTotalAppNum = metricsManager.addLabeledCounter(TOTAL_APP_NUM);
     counterTotalAppWithHugePartitionNum =
@@ -320,15 +349,27 @@ public class ShuffleServerMetrics {
     gaugeInFlushBufferSize = metricsManager.addLabeledGauge(IN_FLUSH_BUFFER_SIZE);
     gaugeUsedBufferSize = metricsManager.addLabeledGauge(USED_BUFFER_SIZE);
     gaugeReadBufferUsedSize = metricsManager.addLabeledGauge(READ_USED_BUFFER_SIZE);
+    gaugeReadMemoryWaiterNum = metricsManager.addLabeledGauge(READ_MEMORY_WAITER_NUM);
+    gaugeOffHeapArenaUsedSize = metricsManager.addLabeledGauge(OFF_HEAP_ARENA_USED_SIZE);
+    gaugeUsedDirectMemorySize = metricsManager.addLabeledGauge(USED_DIRECT_MEMORY_SIZE);
     gaugeWriteHandler = metricsManager.addLabeledGauge(TOTAL_WRITE_HANDLER);
     gaugeEventQueueSize = metricsManager.addLabeledGauge(EVENT_QUEUE_SIZE);
     gaugeAppNum = metricsManager.addLabeledGauge(APP_NUM_WITH_NODE);
     gaugeTotalPartitionNum = metricsManager.addLabeledGauge(PARTITION_NUM_WITH_NODE);
+    gaugeBlockIdsMemory = metricsManager.addLabeledGauge(BLOCK_IDS_MEMORY);
+    gaugeBlockIdsMemoryPerMillion = metricsManager.addLabeledGauge(BLOCK_IDS_MEMORY_PER_MILLION);
 
     gaugeHugePartitionNum = metricsManager.addLabeledGauge(HUGE_PARTITION_NUM);
     gaugeAppWithHugePartitionNum = metricsManager.addLabeledGauge(APP_WITH_HUGE_PARTITION_NUM);
 
     counterLocalFileEventFlush = metricsManager.addCounter(LOCAL_FILE_EVENT_FLUSH_NUM);
     counterHadoopEventFlush = metricsManager.addCounter(HADOOP_EVENT_FLUSH_NUM);
+    gaugeLocalFileFlushQueueSize =
+        metricsManager.addGauge(LOCAL_FILE_FLUSH_QUEUE_SIZE, LOCAL_DISK_PATH_LABEL);
+    histogramLocalFileFlushWaitTime =
+        metricsManager.addHistogram(
+            LOCAL_FILE_FLUSH_WAIT_TIME, FLUSH_WAIT_TIME_BUCKETS, LOCAL_DISK_PATH_LABEL);
+    counterTotalLocalFileCoalescedEventNum =
+        metricsManager.addLabeledCounter(TOTAL_LOCAL_FILE_COALESCED_EVENT_NUM);
   }
 }
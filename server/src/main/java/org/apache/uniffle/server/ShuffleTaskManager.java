@@ -26,13 +26,16 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.Cache;
@@ -43,6 +46,7 @@ import com.google.common.collect.Queues;
 import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
 import org.apache.commons.collections.CollectionUtils;
+import org.roaringbitmap.longlong.LongConsumer;
 import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -91,7 +95,6 @@ public class ShuffleTaskManager {
   private ShuffleServerConf conf;
   private long appExpiredWithoutHB;
   private long preAllocationExpired;
-  private long commitCheckIntervalMax;
   private long leakShuffleDataCheckInterval;
   private long triggerFlushInterval;
   // appId -> shuffleId -> blockIds to avoid too many appId
@@ -100,7 +103,7 @@ public class ShuffleTaskManager {
   // merge different blockId of partition to one bitmap can reduce memory cost,
   // but when get blockId, performance will degrade a little which can be optimized by client
   // configuration
-  private Map<String, Map<Integer, Roaring64NavigableMap[]>> partitionsToBlockIds;
+  private Map<String, Map<Integer, BlockIdSet[]>> partitionsToBlockIds;
   private final ShuffleBufferManager shuffleBufferManager;
   private Map<String, ShuffleTaskInfo> shuffleTaskInfos = JavaUtils.newConcurrentMap();
   private Map<Long, PreAllocatedBufferInfo> requireBufferIds = JavaUtils.newConcurrentMap();
@@ -119,7 +122,6 @@ public class ShuffleTaskManager {
     this.shuffleBufferManager = shuffleBufferManager;
     this.storageManager = storageManager;
     this.appExpiredWithoutHB = conf.getLong(ShuffleServerConf.SERVER_APP_EXPIRED_WITHOUT_HEARTBEAT);
-    this.commitCheckIntervalMax = conf.getLong(ShuffleServerConf.SERVER_COMMIT_CHECK_INTERVAL_MAX);
     this.preAllocationExpired = conf.getLong(ShuffleServerConf.SERVER_PRE_ALLOCATION_EXPIRED);
     this.leakShuffleDataCheckInterval =
         conf.getLong(ShuffleServerConf.SERVER_LEAK_SHUFFLE_DATA_CHECK_INTERVAL);
@@ -285,90 +287,82 @@ public class ShuffleTaskManager {
   }
 
   public StatusCode commitShuffle(String appId, int shuffleId) throws Exception {
+    try {
+      return commitShuffleAsync(appId, shuffleId).get();
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+  }
+
+  /**
+   * Flush the cached data of the shuffle, the returned future is completed once all the blockIds
+   * cached before are committed, or completed exceptionally after the commit timeout.
+   */
+  public CompletableFuture<StatusCode> commitShuffleAsync(String appId, int shuffleId) {
     long start = System.currentTimeMillis();
     refreshAppId(appId);
-    Roaring64NavigableMap cachedBlockIds = getCachedBlockIds(appId, shuffleId);
-    Roaring64NavigableMap cloneBlockIds;
     ShuffleTaskInfo shuffleTaskInfo =
         shuffleTaskInfos.computeIfAbsent(appId, x -> new ShuffleTaskInfo(appId));
     Object lock = shuffleTaskInfo.getCommitLocks().computeIfAbsent(shuffleId, x -> new Object());
+    long commitTimeout = conf.get(ShuffleServerConf.SERVER_COMMIT_TIMEOUT);
+    long expectedCommitted;
+    CompletableFuture<Void> committed;
     synchronized (lock) {
-      long commitTimeout = conf.get(ShuffleServerConf.SERVER_COMMIT_TIMEOUT);
       if (System.currentTimeMillis() - start > commitTimeout) {
-        throw new RssException("Shuffle data commit timeout for " + commitTimeout + " ms");
+        CompletableFuture<StatusCode> result = new CompletableFuture<>();
+        result.completeExceptionally(
+            new RssException("Shuffle data commit timeout for " + commitTimeout + " ms"));
+        return result;
       }
-      synchronized (cachedBlockIds) {
-        cloneBlockIds = RssUtils.cloneBitMap(cachedBlockIds);
-      }
-      long expectedCommitted = cloneBlockIds.getLongCardinality();
+      Roaring64NavigableMap expectedBlockIds = getCachedBlockIds(appId, shuffleId);
+      expectedCommitted = expectedBlockIds.getLongCardinality();
       shuffleBufferManager.commitShuffleTask(appId, shuffleId);
-      Roaring64NavigableMap committedBlockIds;
-      Roaring64NavigableMap cloneCommittedBlockIds;
-      long checkInterval = 1000L;
-      while (true) {
-        committedBlockIds = shuffleFlushManager.getCommittedBlockIds(appId, shuffleId);
-        synchronized (committedBlockIds) {
-          cloneCommittedBlockIds = RssUtils.cloneBitMap(committedBlockIds);
-        }
-        cloneBlockIds.andNot(cloneCommittedBlockIds);
-        if (cloneBlockIds.isEmpty()) {
-          break;
-        }
-        Thread.sleep(checkInterval);
-        if (System.currentTimeMillis() - start > commitTimeout) {
-          throw new RssException("Shuffle data commit timeout for " + commitTimeout + " ms");
-        }
-        LOG.info(
-            "Checking commit result for appId["
-                + appId
-                + "], shuffleId["
-                + shuffleId
-                + "], expect committed["
-                + expectedCommitted
-                + "], remain["
-                + cloneBlockIds.getLongCardinality()
-                + "]");
-        checkInterval = Math.min(checkInterval * 2, commitCheckIntervalMax);
-      }
-      LOG.info(
-          "Finish commit for appId["
-              + appId
-              + "], shuffleId["
-              + shuffleId
-              + "] with expectedCommitted["
-              + expectedCommitted
-              + "], cost "
-              + (System.currentTimeMillis() - start)
-              + " ms to check");
-    }
-    return StatusCode.SUCCESS;
+      committed = shuffleFlushManager.waitForCommitted(appId, shuffleId, expectedBlockIds);
+    }
+    ScheduledFuture<?> timeout =
+        scheduledExecutorService.schedule(
+            () ->
+                committed.completeExceptionally(
+                    new RssException("Shuffle data commit timeout for " + commitTimeout + " ms")),
+            commitTimeout - (System.currentTimeMillis() - start),
+            TimeUnit.MILLISECONDS);
+    return committed.thenApply(
+        v -> {
+          timeout.cancel(false);
+          LOG.info(
+              "Finish commit for appId["
+                  + appId
+                  + "], shuffleId["
+                  + shuffleId
+                  + "] with expectedCommitted["
+                  + expectedCommitted
+                  + "], cost "
+                  + (System.currentTimeMillis() - start)
+                  + " ms to check");
+          return StatusCode.SUCCESS;
+        });
   }
 
   public void addFinishedBlockIds(
       String appId, Integer shuffleId, Map<Integer, long[]> partitionToBlockIds, int bitmapNum) {
     refreshAppId(appId);
-    Map<Integer, Roaring64NavigableMap[]> shuffleIdToPartitions = partitionsToBlockIds.get(appId);
+    Map<Integer, BlockIdSet[]> shuffleIdToPartitions = partitionsToBlockIds.get(appId);
     if (shuffleIdToPartitions == null) {
       throw new RssException("appId[" + appId + "] is expired!");
     }
     shuffleIdToPartitions.computeIfAbsent(
         shuffleId,
         key -> {
-          Roaring64NavigableMap[] blockIds = new Roaring64NavigableMap[bitmapNum];
+          BlockIdSet[] blockIds = new BlockIdSet[bitmapNum];
           for (int i = 0; i < bitmapNum; i++) {
-            blockIds[i] = Roaring64NavigableMap.bitmapOf();
+            blockIds[i] = new BlockIdSet();
           }
           return blockIds;
         });
-    Roaring64NavigableMap[] blockIds = shuffleIdToPartitions.get(shuffleId);
+    BlockIdSet[] blockIds = shuffleIdToPartitions.get(shuffleId);
     for (Map.Entry<Integer, long[]> entry : partitionToBlockIds.entrySet()) {
       Integer partitionId = entry.getKey();
-      Roaring64NavigableMap bitmap = blockIds[partitionId % bitmapNum];
-      synchronized (bitmap) {
-        for (long blockId : entry.getValue()) {
-          bitmap.addLong(blockId);
-        }
-      }
+      blockIds[partitionId % bitmapNum].add(entry.getValue());
     }
   }
 
@@ -392,18 +386,16 @@ public class ShuffleTaskManager {
     }
     ShuffleTaskInfo shuffleTaskInfo =
         shuffleTaskInfos.computeIfAbsent(appId, x -> new ShuffleTaskInfo(appId));
-    Roaring64NavigableMap bitmap =
-        shuffleTaskInfo
-            .getCachedBlockIds()
-            .computeIfAbsent(shuffleId, x -> Roaring64NavigableMap.bitmapOf());
+    BlockIdSet blockIdSet =
+        shuffleTaskInfo.getCachedBlockIds().computeIfAbsent(shuffleId, x -> new BlockIdSet());
 
     long size = 0L;
-    synchronized (bitmap) {
-      for (ShufflePartitionedBlock spb : spbs) {
-        bitmap.addLong(spb.getBlockId());
-        size += spb.getSize();
-      }
+    long[] blockIds = new long[spbs.length];
+    for (int i = 0; i < spbs.length; i++) {
+      blockIds[i] = spbs[i].getBlockId();
+      size += spbs[i].getSize();
     }
+    blockIdSet.add(blockIds);
     long partitionSize = shuffleTaskInfo.addPartitionDataSize(shuffleId, partitionId, size);
     if (shuffleBufferManager.isHugePartition(partitionSize)) {
       shuffleTaskInfo.markHugePartition(shuffleId, partitionId);
@@ -411,9 +403,9 @@ public class ShuffleTaskManager {
   }
 
   public Roaring64NavigableMap getCachedBlockIds(String appId, int shuffleId) {
-    Map<Integer, Roaring64NavigableMap> shuffleIdToBlockIds =
+    Map<Integer, BlockIdSet> shuffleIdToBlockIds =
         shuffleTaskInfos.getOrDefault(appId, new ShuffleTaskInfo(appId)).getCachedBlockIds();
-    Roaring64NavigableMap blockIds = shuffleIdToBlockIds.get(shuffleId);
+    BlockIdSet blockIds = shuffleIdToBlockIds.get(shuffleId);
     if (blockIds == null) {
       LOG.warn(
           "Unexpected value when getCachedBlockIds for appId["
@@ -423,7 +415,7 @@ public class ShuffleTaskManager {
               + "]");
       return Roaring64NavigableMap.bitmapOf();
     }
-    return blockIds;
+    return blockIds.snapshot();
   }
 
   public long getPartitionDataSize(String appId, int shuffleId, int partitionId) {
@@ -440,15 +432,42 @@ public class ShuffleTaskManager {
     if (null == shuffleTaskInfo) {
       return RequireBufferStatusCode.NO_REGISTER.statusCode();
     }
+    if (isHugePartitionLimited(appId, shuffleId, partitionIds)) {
+      return RequireBufferStatusCode.NO_BUFFER.statusCode();
+    }
+    return requireBuffer(requireSize);
+  }
+
+  /**
+   * Reserve the buffer for the data which is sent with {@link
+   * Constants#RESERVE_BUFFER_ON_SEND_ID}. Different from requireBuffer, the reservation is
+   * consumed by the data at once, so it isn't tracked as a pre-allocated buffer.
+   */
+  public StatusCode reserveBufferOnSend(
+      String appId, int shuffleId, List<Integer> partitionIds, int requireSize) {
+    if (!shuffleTaskInfos.containsKey(appId)) {
+      return StatusCode.NO_REGISTER;
+    }
+    if (isHugePartitionLimited(appId, shuffleId, partitionIds)) {
+      return StatusCode.NO_BUFFER;
+    }
+    if (!shuffleBufferManager.requireMemory(requireSize, true)) {
+      ShuffleServerMetrics.counterTotalRequireBufferFailedForRegularPartition.inc();
+      return StatusCode.NO_BUFFER;
+    }
+    return StatusCode.SUCCESS;
+  }
+
+  private boolean isHugePartitionLimited(String appId, int shuffleId, List<Integer> partitionIds) {
     for (int partitionId : partitionIds) {
       long partitionUsedDataSize = getPartitionDataSize(appId, shuffleId, partitionId);
       if (shuffleBufferManager.limitHugePartition(
           appId, shuffleId, partitionId, partitionUsedDataSize)) {
         ShuffleServerMetrics.counterTotalRequireBufferFailedForHugePartition.inc();
-        return RequireBufferStatusCode.NO_BUFFER.statusCode();
+        return true;
       }
     }
-    return requireBuffer(requireSize);
+    return false;
   }
 
   public long requireBuffer(int requireSize) {
@@ -488,12 +507,12 @@ public class ShuffleTaskManager {
         storage.updateReadMetrics(new StorageReadMetrics(appId, shuffleId));
       }
     }
-    Map<Integer, Roaring64NavigableMap[]> shuffleIdToPartitions = partitionsToBlockIds.get(appId);
+    Map<Integer, BlockIdSet[]> shuffleIdToPartitions = partitionsToBlockIds.get(appId);
     if (shuffleIdToPartitions == null) {
       return null;
     }
 
-    Roaring64NavigableMap[] blockIds = shuffleIdToPartitions.get(shuffleId);
+    BlockIdSet[] blockIds = shuffleIdToPartitions.get(shuffleId);
     if (blockIds == null) {
       return new byte[] {};
     }
@@ -511,8 +530,7 @@ public class ShuffleTaskManager {
     Roaring64NavigableMap res = Roaring64NavigableMap.bitmapOf();
     for (Map.Entry<Integer, Set<Integer>> entry : bitmapIndexToPartitions.entrySet()) {
       Set<Integer> requestPartitions = entry.getValue();
-      Roaring64NavigableMap bitmap = blockIds[entry.getKey()];
-      getBlockIdsByPartitionId(requestPartitions, bitmap, res);
+      blockIds[entry.getKey()].forEach(partitionFilter(requestPartitions, res));
     }
     return RssUtils.serializeBitMap(res);
   }
@@ -522,18 +540,21 @@ public class ShuffleTaskManager {
       Set<Integer> requestPartitions,
       Roaring64NavigableMap bitmap,
       Roaring64NavigableMap resultBitmap) {
-    final long mask = (1L << Constants.PARTITION_ID_MAX_LENGTH) - 1;
-    bitmap.forEach(
-        blockId -> {
-          int partitionId =
-              Math.toIntExact((blockId >> Constants.TASK_ATTEMPT_ID_MAX_LENGTH) & mask);
-          if (requestPartitions.contains(partitionId)) {
-            resultBitmap.addLong(blockId);
-          }
-        });
+    bitmap.forEach(partitionFilter(requestPartitions, resultBitmap));
     return resultBitmap;
   }
 
+  private static LongConsumer partitionFilter(
+      Set<Integer> requestPartitions, Roaring64NavigableMap resultBitmap) {
+    final long mask = (1L << Constants.PARTITION_ID_MAX_LENGTH) - 1;
+    return blockId -> {
+      int partitionId = Math.toIntExact((blockId >> Constants.TASK_ATTEMPT_ID_MAX_LENGTH) & mask);
+      if (requestPartitions.contains(partitionId)) {
+        resultBitmap.addLong(blockId);
+      }
+    };
+  }
+
   public ShuffleDataResult getInMemoryShuffleData(
       String appId,
       Integer shuffleId,
@@ -619,11 +640,31 @@ public class ShuffleTaskManager {
         }
       }
       ShuffleServerMetrics.gaugeAppNum.set(shuffleTaskInfos.size());
+      updateBlockIdsMetrics();
     } catch (Exception e) {
       LOG.warn("Error happened in checkResourceStatus", e);
     }
   }
 
+  private void updateBlockIdsMetrics() {
+    long[] sizeAndNum = new long[2];
+    Consumer<BlockIdSet> accumulator =
+        blockIds -> {
+          sizeAndNum[0] += blockIds.getSizeInBytes();
+          sizeAndNum[1] += blockIds.getLongCardinality();
+        };
+    shuffleTaskInfos.values().forEach(x -> x.getCachedBlockIds().values().forEach(accumulator));
+    partitionsToBlockIds
+        .values()
+        .forEach(x -> x.values().forEach(blockIds -> Arrays.stream(blockIds).forEach(accumulator)));
+    if (shuffleFlushManager != null) {
+      shuffleFlushManager.forEachCommittedBlockIds(accumulator);
+    }
+    ShuffleServerMetrics.gaugeBlockIdsMemory.set(sizeAndNum[0]);
+    ShuffleServerMetrics.gaugeBlockIdsMemoryPerMillion.set(
+        sizeAndNum[1] == 0 ? 0 : sizeAndNum[0] * 1000000.0 / sizeAndNum[1]);
+  }
+
   private boolean isAppExpired(String appId) {
     if (shuffleTaskInfos.get(appId) == null) {
       return true;
@@ -701,7 +742,7 @@ public class ShuffleTaskManager {
         return;
       }
 
-      final Map<Integer, Roaring64NavigableMap> shuffleToCachedBlockIds =
+      final Map<Integer, BlockIdSet> shuffleToCachedBlockIds =
           shuffleTaskInfo.getCachedBlockIds();
       partitionsToBlockIds.remove(appId);
       shuffleBufferManager.removeBuffer(appId);
@@ -785,7 +826,7 @@ public class ShuffleTaskManager {
   }
 
   @VisibleForTesting
-  public Map<String, Map<Integer, Roaring64NavigableMap[]>> getPartitionsToBlockIds() {
+  public Map<String, Map<Integer, BlockIdSet[]>> getPartitionsToBlockIds() {
     return partitionsToBlockIds;
   }
 
@@ -809,8 +850,6 @@ public class ShuffleTaskManager {
   }
 
   private void triggerFlush() {
-    synchronized (this.shuffleBufferManager) {
-      this.shuffleBufferManager.flushIfNecessary();
-    }
+    this.shuffleBufferManager.flushIfNecessary();
   }
 }
@@ -17,10 +17,12 @@
 
 package org.apache.uniffle.server.buffer;
 
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.Supplier;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -37,7 +39,6 @@ import org.apache.uniffle.common.ShuffleDataResult;
 import org.apache.uniffle.common.ShufflePartitionedBlock;
 import org.apache.uniffle.common.ShufflePartitionedData;
 import org.apache.uniffle.common.util.Constants;
-import org.apache.uniffle.common.util.JavaUtils;
 import org.apache.uniffle.server.ShuffleDataFlushEvent;
 import org.apache.uniffle.server.ShuffleFlushManager;
 
@@ -50,14 +51,26 @@ public class ShuffleBuffer {
   // blocks will be added to inFlushBlockMap as <eventId, blocks> pair
   // it will be removed after flush to storage
   // the strategy ensure that shuffle is in memory or storage
+  // the cached blocks are kept in an array backed list which is append-only until it's handed
+  // over to a flush event, so it can be read by index and no copy is needed when flushing
   private List<ShufflePartitionedBlock> blocks;
+  // inFlushBlockMap is sorted by eventId, which is the order of data received
   private Map<Long, List<ShufflePartitionedBlock>> inFlushBlockMap;
+  // blockId -> position index of the cached blocks and the in-flush blocks, it's used to
+  // locate lastBlockId in O(1) instead of scanning all blocks for every memory read
+  private Map<Long, Integer> blockIdToIndex;
+  private Map<Long, Map<Long, Integer>> inFlushBlockIndexMap;
+  // they are used to pick the buffers to flush when the memory is not enough
+  private volatile long lastAppendTime;
+  private volatile boolean readStarted;
 
   public ShuffleBuffer(long capacity) {
     this.capacity = capacity;
     this.size = 0;
-    this.blocks = new LinkedList<>();
-    this.inFlushBlockMap = JavaUtils.newConcurrentMap();
+    this.blocks = new ArrayList<>();
+    this.inFlushBlockMap = new ConcurrentSkipListMap<>();
+    this.blockIdToIndex = new HashMap<>();
+    this.inFlushBlockIndexMap = new HashMap<>();
   }
 
   public long append(ShufflePartitionedData data) {
@@ -65,10 +78,13 @@ public class ShuffleBuffer {
 
     synchronized (this) {
       for (ShufflePartitionedBlock block : data.getBlockList()) {
+        // keep the first position if the same blockId is appended more than once
+        blockIdToIndex.putIfAbsent(block.getBlockId(), blocks.size());
         blocks.add(block);
         mSize += block.getSize();
       }
       size += mSize;
+      lastAppendTime = System.currentTimeMillis();
     }
 
     return mSize;
@@ -84,15 +100,16 @@ public class ShuffleBuffer {
     if (blocks.isEmpty()) {
       return null;
     }
-    // buffer will be cleared, and new list must be created for async flush
-    List<ShufflePartitionedBlock> spBlocks = new LinkedList<>(blocks);
+    // the cached blocks are handed over to the flush event without copying,
+    // and a new list is created for the following blocks
+    List<ShufflePartitionedBlock> spBlocks = blocks;
     List<ShufflePartitionedBlock> inFlushedQueueBlocks = spBlocks;
     if (dataDistributionType == ShuffleDataDistributionType.LOCAL_ORDER) {
       /**
        * When reordering the blocks, it will break down the original reads sequence to cause the
        * data lost in some cases. So we should create a reference copy to avoid this.
        */
-      inFlushedQueueBlocks = new LinkedList<>(spBlocks);
+      inFlushedQueueBlocks = new ArrayList<>(spBlocks);
       spBlocks.sort(Comparator.comparingLong(ShufflePartitionedBlock::getTaskAttemptId));
     }
     long eventId = ShuffleFlushManager.ATOMIC_EVENT_ID.getAndIncrement();
@@ -105,7 +122,9 @@ public class ShuffleBuffer {
           spBlocks.forEach(spb -> spb.getData().release());
         });
     inFlushBlockMap.put(eventId, inFlushedQueueBlocks);
-    blocks.clear();
+    inFlushBlockIndexMap.put(eventId, blockIdToIndex);
+    blocks = new ArrayList<>();
+    blockIdToIndex = new HashMap<>();
     size = 0;
     return event;
   }
@@ -138,8 +157,17 @@ public class ShuffleBuffer {
     return size > capacity;
   }
 
+  public long getLastAppendTime() {
+    return lastAppendTime;
+  }
+
+  public boolean isReadStarted() {
+    return readStarted;
+  }
+
   public synchronized void clearInFlushBuffer(long eventId) {
     inFlushBlockMap.remove(eventId);
+    inFlushBlockIndexMap.remove(eventId);
   }
 
   @VisibleForTesting
@@ -156,6 +184,7 @@ public class ShuffleBuffer {
   // todo: if block was flushed, it's possible to get duplicated data
   public synchronized ShuffleDataResult getShuffleData(
       long lastBlockId, int readBufferSize, Roaring64NavigableMap expectedTaskIds) {
+    readStarted = true;
     try {
       List<BufferSegment> bufferSegments = Lists.newArrayList();
       List<ShufflePartitionedBlock> readBlocks = Lists.newArrayList();
@@ -185,65 +214,68 @@ public class ShuffleBuffer {
       List<ShufflePartitionedBlock> resultBlocks,
       Roaring64NavigableMap expectedTaskIds) {
     long nextBlockId = lastBlockId;
-    List<Long> sortedEventId = sortFlushingEventId();
     int offset = 0;
     boolean hasLastBlockId = false;
     // read from inFlushBlockMap first to make sure the order of
     // data read is according to the order of data received
     // The number of events means how many batches are in flushing status,
     // it should be less than 5, or there has some problem with storage
-    if (!inFlushBlockMap.isEmpty()) {
-      for (Long eventId : sortedEventId) {
-        // update bufferSegments with different strategy according to lastBlockId
-        if (nextBlockId == Constants.INVALID_BLOCK_ID) {
-          updateSegmentsWithoutBlockId(
+    for (Map.Entry<Long, List<ShufflePartitionedBlock>> entry : inFlushBlockMap.entrySet()) {
+      // update bufferSegments with different strategy according to lastBlockId
+      if (nextBlockId == Constants.INVALID_BLOCK_ID) {
+        updateSegments(
+            offset,
+            entry.getValue(),
+            0,
+            readBufferSize,
+            bufferSegments,
+            resultBlocks,
+            expectedTaskIds);
+        hasLastBlockId = true;
+      } else {
+        int lastIndex =
+            indexOf(entry.getValue(), inFlushBlockIndexMap.get(entry.getKey()), nextBlockId);
+        hasLastBlockId = lastIndex >= 0;
+        // if last blockId is found, read from begin with next cached blocks
+        if (hasLastBlockId) {
+          updateSegments(
               offset,
-              inFlushBlockMap.get(eventId),
+              entry.getValue(),
+              lastIndex + 1,
               readBufferSize,
               bufferSegments,
               resultBlocks,
               expectedTaskIds);
-          hasLastBlockId = true;
-        } else {
-          hasLastBlockId =
-              updateSegmentsWithBlockId(
-                  offset,
-                  inFlushBlockMap.get(eventId),
-                  readBufferSize,
-                  nextBlockId,
-                  bufferSegments,
-                  resultBlocks,
-                  expectedTaskIds);
-          // if last blockId is found, read from begin with next cached blocks
-          if (hasLastBlockId) {
-            // reset blockId to read from begin in next cached blocks
-            nextBlockId = Constants.INVALID_BLOCK_ID;
-          }
-        }
-        if (!bufferSegments.isEmpty()) {
-          offset = calculateDataLength(bufferSegments);
-        }
-        if (offset >= readBufferSize) {
-          break;
+          // reset blockId to read from begin in next cached blocks
+          nextBlockId = Constants.INVALID_BLOCK_ID;
         }
       }
+      if (!bufferSegments.isEmpty()) {
+        offset = calculateDataLength(bufferSegments);
+      }
+      if (offset >= readBufferSize) {
+        break;
+      }
     }
     // try to read from cached blocks which is not in flush queue
     if (blocks.size() > 0 && offset < readBufferSize) {
       if (nextBlockId == Constants.INVALID_BLOCK_ID) {
-        updateSegmentsWithoutBlockId(
-            offset, blocks, readBufferSize, bufferSegments, resultBlocks, expectedTaskIds);
+        updateSegments(
+            offset, blocks, 0, readBufferSize, bufferSegments, resultBlocks, expectedTaskIds);
         hasLastBlockId = true;
       } else {
-        hasLastBlockId =
-            updateSegmentsWithBlockId(
-                offset,
-                blocks,
-                readBufferSize,
-                nextBlockId,
-                bufferSegments,
-                resultBlocks,
-                expectedTaskIds);
+        int lastIndex = indexOf(blocks, blockIdToIndex, nextBlockId);
+        hasLastBlockId = lastIndex >= 0;
+        if (hasLastBlockId) {
+          updateSegments(
+              offset,
+              blocks,
+              lastIndex + 1,
+              readBufferSize,
+              bufferSegments,
+              resultBlocks,
+              expectedTaskIds);
+        }
       }
     }
     if ((!inFlushBlockMap.isEmpty() || blocks.size() > 0) && offset == 0 && !hasLastBlockId) {
@@ -286,69 +318,34 @@ public class ShuffleBuffer {
     }
   }
 
-  private List<Long> sortFlushingEventId() {
-    List<Long> eventIdList = Lists.newArrayList(inFlushBlockMap.keySet());
-    eventIdList.sort(
-        (id1, id2) -> {
-          if (id1 > id2) {
-            return 1;
-          }
-          return -1;
-        });
-    return eventIdList;
-  }
-
-  private void updateSegmentsWithoutBlockId(
-      int offset,
-      List<ShufflePartitionedBlock> cachedBlocks,
-      long readBufferSize,
-      List<BufferSegment> bufferSegments,
-      List<ShufflePartitionedBlock> readBlocks,
-      Roaring64NavigableMap expectedTaskIds) {
-    int currentOffset = offset;
-    // read from first block
+  private int indexOf(
+      List<ShufflePartitionedBlock> cachedBlocks, Map<Long, Integer> blockIndex, long blockId) {
+    if (blockIndex != null) {
+      Integer index = blockIndex.get(blockId);
+      return index == null ? -1 : index;
+    }
+    int index = 0;
     for (ShufflePartitionedBlock block : cachedBlocks) {
-      if (expectedTaskIds != null && !expectedTaskIds.contains(block.getTaskAttemptId())) {
-        continue;
-      }
-      // add bufferSegment with block
-      bufferSegments.add(
-          new BufferSegment(
-              block.getBlockId(),
-              currentOffset,
-              block.getLength(),
-              block.getUncompressLength(),
-              block.getCrc(),
-              block.getTaskAttemptId()));
-      readBlocks.add(block);
-      // update offset
-      currentOffset += block.getLength();
-      // check if length >= request buffer size
-      if (currentOffset >= readBufferSize) {
-        break;
+      if (block.getBlockId() == blockId) {
+        return index;
       }
+      index++;
     }
+    return -1;
   }
 
-  private boolean updateSegmentsWithBlockId(
+  private void updateSegments(
       int offset,
       List<ShufflePartitionedBlock> cachedBlocks,
+      int startIndex,
       long readBufferSize,
-      long lastBlockId,
       List<BufferSegment> bufferSegments,
       List<ShufflePartitionedBlock> readBlocks,
       Roaring64NavigableMap expectedTaskIds) {
     int currentOffset = offset;
-    // find lastBlockId, then read from next block
-    boolean foundBlockId = false;
-    for (ShufflePartitionedBlock block : cachedBlocks) {
-      if (!foundBlockId) {
-        // find lastBlockId
-        if (block.getBlockId() == lastBlockId) {
-          foundBlockId = true;
-        }
-        continue;
-      }
+    // cachedBlocks is backed by ArrayList, so it can be read from startIndex directly
+    for (int i = startIndex; i < cachedBlocks.size(); i++) {
+      ShufflePartitionedBlock block = cachedBlocks.get(i);
       if (expectedTaskIds != null && !expectedTaskIds.contains(block.getTaskAttemptId())) {
         continue;
       }
@@ -364,10 +361,10 @@ public class ShuffleBuffer {
       readBlocks.add(block);
       // update offset
       currentOffset += block.getLength();
+      // check if length >= request buffer size
       if (currentOffset >= readBufferSize) {
         break;
       }
     }
-    return foundBlockId;
   }
 }
@@ -18,30 +18,43 @@
 package org.apache.uniffle.server.buffer;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeMap;
-import com.google.common.collect.Sets;
 import com.google.common.collect.TreeRangeMap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.internal.PlatformDependent;
 import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.uniffle.common.ShuffleDataResult;
+import org.apache.uniffle.common.ShufflePartitionedBlock;
 import org.apache.uniffle.common.ShufflePartitionedData;
 import org.apache.uniffle.common.rpc.StatusCode;
-import org.apache.uniffle.common.util.Constants;
 import org.apache.uniffle.common.util.JavaUtils;
-import org.apache.uniffle.common.util.RssUtils;
+import org.apache.uniffle.common.util.NettyUtils;
+import org.apache.uniffle.common.util.ThreadUtils;
 import org.apache.uniffle.server.ShuffleDataFlushEvent;
 import org.apache.uniffle.server.ShuffleFlushManager;
 import org.apache.uniffle.server.ShuffleServerConf;
@@ -59,6 +72,8 @@ public class ShuffleBufferManager {
   private int retryNum;
   private long highWaterMark;
   private long lowWaterMark;
+  // the flushes picked above it are urgent, as the previous flushes can't keep up with the writing
+  private long urgentFlushWaterMark;
   private boolean bufferFlushEnabled;
   private long bufferFlushThreshold;
   // when shuffle buffer manager flushes data, shuffles with data size < shuffleFlushThreshold is
@@ -68,36 +83,70 @@ public class ShuffleBufferManager {
   // Huge partition vars
   private long hugePartitionSizeThreshold;
   private long hugePartitionMemoryLimitSize;
+  // the dedicated direct memory arena which owns the shuffle data when off-heap is enabled,
+  // it's null when the shuffle data is kept in heap
+  private final PooledByteBufAllocator offHeapAllocator;
 
   protected long bufferSize = 0;
   protected AtomicLong preAllocatedSize = new AtomicLong(0L);
   protected AtomicLong inFlushSize = new AtomicLong(0L);
   protected AtomicLong usedMemory = new AtomicLong(0L);
   private AtomicLong readDataMemory = new AtomicLong(0L);
+  // the read requests waiting for read memory, they are admitted in FIFO order
+  private final Queue<ReadMemoryWaiter> readMemoryWaiters = new ConcurrentLinkedQueue<>();
+  private final ScheduledExecutorService readMemoryTimeoutExecutor =
+      ThreadUtils.getDaemonSingleThreadScheduledExecutor("readMemoryTimeoutChecker");
+  private long readMemoryRequireTimeoutMs;
+  private boolean sendCreditEnabled;
+  private long sendCreditMax;
+  private long sendCreditExpiredMs;
+  // appId -> {expire time, credit} of the credit granted to the app recently, which isn't used by
+  // the data cached after granting it yet
+  private final Map<String, long[]> reservedSendCredits = Maps.newHashMap();
+  private long reservedSendCreditSize = 0L;
+  private long nextSendCreditExpireTime = 0L;
+  // only the flush picking needs global coordination, the memory accounting is lock-free
+  private final ReentrantLock flushLock = new ReentrantLock();
   // appId -> shuffleId -> partitionId -> ShuffleBuffer to avoid too many appId
   protected Map<String, Map<Integer, RangeMap<Integer, ShuffleBuffer>>> bufferPool;
   // appId -> shuffleId -> shuffle size in buffer
   protected Map<String, Map<Integer, AtomicLong>> shuffleSizeMap = JavaUtils.newConcurrentMap();
 
   public ShuffleBufferManager(ShuffleServerConf conf, ShuffleFlushManager shuffleFlushManager) {
-    long heapSize = Runtime.getRuntime().maxMemory();
+    boolean isOffHeap = conf.get(ShuffleServerConf.SERVER_BUFFER_OFF_HEAP_ENABLED);
+    // the buffers are sized against the memory the shuffle data is kept in
+    long maxMemory =
+        isOffHeap ? PlatformDependent.maxDirectMemory() : Runtime.getRuntime().maxMemory();
     this.capacity = conf.getSizeAsBytes(ShuffleServerConf.SERVER_BUFFER_CAPACITY);
     if (this.capacity < 0) {
       this.capacity =
-          (long) (heapSize * conf.getDouble(ShuffleServerConf.SERVER_BUFFER_CAPACITY_RATIO));
+          (long) (maxMemory * conf.getDouble(ShuffleServerConf.SERVER_BUFFER_CAPACITY_RATIO));
+    }
+    if (isOffHeap) {
+      // thread local cache is disabled, otherwise the memory will be held by the rpc threads
+      this.offHeapAllocator = NettyUtils.createPooledByteBufAllocator(true, false, 0);
+    } else {
+      this.offHeapAllocator = null;
     }
     this.readCapacity = conf.getSizeAsBytes(ShuffleServerConf.SERVER_READ_BUFFER_CAPACITY);
     if (this.readCapacity < 0) {
       this.readCapacity =
-          (long) (heapSize * conf.getDouble(ShuffleServerConf.SERVER_READ_BUFFER_CAPACITY_RATIO));
+          (long) (maxMemory * conf.getDouble(ShuffleServerConf.SERVER_READ_BUFFER_CAPACITY_RATIO));
     }
     LOG.info(
-        "Init shuffle buffer manager with capacity: {}, read buffer capacity: {}.",
+        "Init shuffle buffer manager with capacity: {}, read buffer capacity: {}, off-heap: {}.",
         capacity,
-        readCapacity);
+        readCapacity,
+        isOffHeap);
     this.shuffleFlushManager = shuffleFlushManager;
     this.bufferPool = new ConcurrentHashMap<>();
     this.retryNum = conf.getInteger(ShuffleServerConf.SERVER_MEMORY_REQUEST_RETRY_MAX);
+    Long readMemoryRequireTimeout = conf.get(ShuffleServerConf.SERVER_READ_MEMORY_REQUIRE_TIMEOUT);
+    this.readMemoryRequireTimeoutMs =
+        readMemoryRequireTimeout != null ? readMemoryRequireTimeout : retryNum * 1000L;
+    this.sendCreditEnabled = conf.getBoolean(ShuffleServerConf.SERVER_SEND_CREDIT_ENABLED);
+    this.sendCreditMax = conf.getSizeAsBytes(ShuffleServerConf.SERVER_SEND_CREDIT_MAX);
+    this.sendCreditExpiredMs = conf.get(ShuffleServerConf.SERVER_SEND_CREDIT_EXPIRED);
     this.highWaterMark =
         (long)
             (capacity
@@ -108,6 +157,11 @@ public class ShuffleBufferManager {
             (capacity
                 / 100.0
                 * conf.get(ShuffleServerConf.SERVER_MEMORY_SHUFFLE_LOWWATERMARK_PERCENTAGE));
+    this.urgentFlushWaterMark =
+        (long)
+            (capacity
+                / 100.0
+                * conf.get(ShuffleServerConf.SERVER_MEMORY_SHUFFLE_URGENT_FLUSH_PERCENTAGE));
     this.bufferFlushEnabled = conf.getBoolean(ShuffleServerConf.SINGLE_BUFFER_FLUSH_ENABLED);
     this.bufferFlushThreshold =
         conf.getSizeAsBytes(ShuffleServerConf.SINGLE_BUFFER_FLUSH_THRESHOLD);
@@ -163,25 +217,51 @@ public class ShuffleBufferManager {
       return StatusCode.NO_REGISTER;
     }
 
+    if (offHeapAllocator != null) {
+      moveToOffHeap(spd);
+    }
     ShuffleBuffer buffer = entry.getValue();
     long size = buffer.append(spd);
     if (!isPreAllocated) {
       updateUsedMemory(size);
     }
     updateShuffleSize(appId, shuffleId, size);
-    synchronized (this) {
-      flushSingleBufferIfNecessary(
-          buffer,
-          appId,
-          shuffleId,
-          spd.getPartitionId(),
-          entry.getKey().lowerEndpoint(),
-          entry.getKey().upperEndpoint());
-      flushIfNecessary();
-    }
+    useSendCredit(appId, size);
+    // ShuffleBuffer.toFlushEvent is synchronized by the buffer itself, so different partitions
+    // won't block each other here
+    flushSingleBufferIfNecessary(
+        buffer,
+        appId,
+        shuffleId,
+        spd.getPartitionId(),
+        entry.getKey().lowerEndpoint(),
+        entry.getKey().upperEndpoint());
+    flushIfNecessary();
     return StatusCode.SUCCESS;
   }
 
+  // the data received by grpc is in heap, copy it to the off-heap arena.
+  // The data received by netty is already in direct memory, so it's kept as it is.
+  private void moveToOffHeap(ShufflePartitionedData spd) {
+    for (ShufflePartitionedBlock block : spd.getBlockList()) {
+      ByteBuf data = block.getData();
+      if (data.isDirect()) {
+        continue;
+      }
+      ByteBuf offHeapData = offHeapAllocator.directBuffer(data.readableBytes());
+      offHeapData.writeBytes(data, data.readerIndex(), data.readableBytes());
+      block.setData(offHeapData);
+      data.release();
+    }
+    updateOffHeapMetrics();
+  }
+
+  private void updateOffHeapMetrics() {
+    ShuffleServerMetrics.gaugeOffHeapArenaUsedSize.set(
+        offHeapAllocator.metric().usedDirectMemory());
+    ShuffleServerMetrics.gaugeUsedDirectMemorySize.set(PlatformDependent.usedDirectMemory());
+  }
+
   private void updateShuffleSize(String appId, int shuffleId, long size) {
     shuffleSizeMap.computeIfAbsent(appId, key -> JavaUtils.newConcurrentMap());
     Map<Integer, AtomicLong> shuffleIdToSize = shuffleSizeMap.get(appId);
@@ -249,20 +329,35 @@ public class ShuffleBufferManager {
   }
 
   public void flushIfNecessary() {
-    // if data size in buffer > highWaterMark, do the flush
-    if (usedMemory.get() - preAllocatedSize.get() - inFlushSize.get() > highWaterMark) {
-      // todo: add a metric here to track how many times flush occurs.
-      LOG.info(
-          "Start to flush with usedMemory[{}], preAllocatedSize[{}], inFlushSize[{}]",
-          usedMemory.get(),
-          preAllocatedSize.get(),
-          inFlushSize.get());
-      Map<String, Set<Integer>> pickedShuffle = pickFlushedShuffle();
-      flush(pickedShuffle);
+    // if data size in buffer > highWaterMark, do the flush.
+    // If another thread is already picking the shuffles to flush, skip here instead of waiting,
+    // the memory will be released by that flush.
+    if (needToFlush() && flushLock.tryLock()) {
+      try {
+        // check again, the memory may have been released by the previous flush
+        if (needToFlush()) {
+          // todo: add a metric here to track how many times flush occurs.
+          LOG.info(
+              "Start to flush with usedMemory[{}], preAllocatedSize[{}], inFlushSize[{}]",
+              usedMemory.get(),
+              preAllocatedSize.get(),
+              inFlushSize.get());
+          // the data in flush is counted, if it's still high the disks fall behind
+          boolean isMemoryPressure =
+              usedMemory.get() - preAllocatedSize.get() > urgentFlushWaterMark;
+          flushPickedBuffers(pickFlushedBuffers(), isMemoryPressure);
+        }
+      } finally {
+        flushLock.unlock();
+      }
     }
   }
 
-  public synchronized void commitShuffleTask(String appId, int shuffleId) {
+  private boolean needToFlush() {
+    return usedMemory.get() - preAllocatedSize.get() - inFlushSize.get() > highWaterMark;
+  }
+
+  public void commitShuffleTask(String appId, int shuffleId) {
     RangeMap<Integer, ShuffleBuffer> buffers = bufferPool.get(appId).get(shuffleId);
     for (Map.Entry<Range<Integer>, ShuffleBuffer> entry : buffers.asMapOfRanges().entrySet()) {
       ShuffleBuffer buffer = entry.getValue();
@@ -284,6 +379,17 @@ public class ShuffleBufferManager {
       int startPartition,
       int endPartition,
       boolean isHugePartition) {
+    flushBuffer(buffer, appId, shuffleId, startPartition, endPartition, isHugePartition, false);
+  }
+
+  protected void flushBuffer(
+      ShuffleBuffer buffer,
+      String appId,
+      int shuffleId,
+      int startPartition,
+      int endPartition,
+      boolean isHugePartition,
+      boolean isMemoryPressure) {
     ShuffleDataFlushEvent event =
         buffer.toFlushEvent(
             appId,
@@ -299,12 +405,16 @@ public class ShuffleBufferManager {
       if (isHugePartition) {
         event.markOwnedByHugePartition();
       }
+      if (isMemoryPressure) {
+        event.markTriggeredByMemoryPressure();
+      }
       ShuffleServerMetrics.gaugeInFlushBufferSize.set(inFlushSize.get());
       shuffleFlushManager.addToFlushQueue(event);
     }
   }
 
   public void removeBuffer(String appId) {
+    releaseSendCredit(appId);
     Map<Integer, RangeMap<Integer, ShuffleBuffer>> shuffleIdToBuffers = bufferPool.get(appId);
     if (shuffleIdToBuffers == null) {
       return;
@@ -314,14 +424,17 @@ public class ShuffleBufferManager {
     bufferPool.remove(appId);
   }
 
-  public synchronized boolean requireMemory(long size, boolean isPreAllocated) {
-    if (capacity - usedMemory.get() >= size) {
-      usedMemory.addAndGet(size);
-      ShuffleServerMetrics.gaugeUsedBufferSize.set(usedMemory.get());
-      if (isPreAllocated) {
-        requirePreAllocatedSize(size);
+  public boolean requireMemory(long size, boolean isPreAllocated) {
+    long current = usedMemory.get();
+    while (capacity - current >= size) {
+      if (usedMemory.compareAndSet(current, current + size)) {
+        ShuffleServerMetrics.gaugeUsedBufferSize.set(usedMemory.get());
+        if (isPreAllocated) {
+          requirePreAllocatedSize(size);
+        }
+        return true;
       }
-      return true;
+      current = usedMemory.get();
     }
     if (LOG.isDebugEnabled()) {
       LOG.debug(
@@ -353,6 +466,9 @@ public class ShuffleBufferManager {
     }
 
     ShuffleServerMetrics.gaugeUsedBufferSize.set(usedMemory.get());
+    if (offHeapAllocator != null) {
+      updateOffHeapMetrics();
+    }
 
     if (isReleaseFlushMemory) {
       releaseFlushMemory(size);
@@ -378,34 +494,211 @@ public class ShuffleBufferManager {
     ShuffleServerMetrics.gaugeInFlushBufferSize.set(inFlushSize.get());
   }
 
+  /**
+   * The byte credits granted to the app for sending shuffle data, it follows the free buffer below
+   * the high watermark, so the credits shrink as the buffer fills up and are replenished as the
+   * flushes release the memory. The latest credit of every app is reserved until it's used by the
+   * cached data of the app or expired, so the concurrent apps share the free buffer instead of
+   * each being granted all of it. At least 1 byte is granted, which still allows the client to
+   * send one request at a time. 0 is returned when the credit isn't enabled.
+   */
+  public long grantSendCredit(String appId) {
+    if (!sendCreditEnabled) {
+      return 0L;
+    }
+    long now = System.currentTimeMillis();
+    synchronized (reservedSendCredits) {
+      if (now >= nextSendCreditExpireTime) {
+        removeExpiredSendCredits(now);
+        nextSendCreditExpireTime = now + sendCreditExpiredMs;
+      }
+      // the new credit of the app replaces its previous one
+      releaseSendCredit(appId);
+      long credit =
+          Math.min(sendCreditMax, highWaterMark - usedMemory.get() - reservedSendCreditSize);
+      if (credit <= 0) {
+        return 1L;
+      }
+      reservedSendCredits.put(appId, new long[] {now + sendCreditExpiredMs, credit});
+      reservedSendCreditSize += credit;
+      return credit;
+    }
+  }
+
+  // the cached data is counted in the used memory, so it's not reserved by the credit anymore
+  private void useSendCredit(String appId, long size) {
+    if (!sendCreditEnabled) {
+      return;
+    }
+    synchronized (reservedSendCredits) {
+      long[] reserved = reservedSendCredits.get(appId);
+      if (reserved == null) {
+        return;
+      }
+      long used = Math.min(size, reserved[1]);
+      reserved[1] -= used;
+      reservedSendCreditSize -= used;
+      if (reserved[1] == 0) {
+        reservedSendCredits.remove(appId);
+      }
+    }
+  }
+
+  private void releaseSendCredit(String appId) {
+    if (!sendCreditEnabled) {
+      return;
+    }
+    synchronized (reservedSendCredits) {
+      long[] reserved = reservedSendCredits.remove(appId);
+      if (reserved != null) {
+        reservedSendCreditSize -= reserved[1];
+      }
+    }
+  }
+
+  private void removeExpiredSendCredits(long now) {
+    Iterator<long[]> iterator = reservedSendCredits.values().iterator();
+    while (iterator.hasNext()) {
+      long[] reserved = iterator.next();
+      if (reserved[0] <= now) {
+        reservedSendCreditSize -= reserved[1];
+        iterator.remove();
+      }
+    }
+  }
+
   public boolean requireReadMemoryWithRetry(long size) {
+    CompletableFuture<Boolean> future = requireReadMemoryAsync(size);
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Interrupted when require memory");
+    } catch (Exception e) {
+      LOG.warn("Error happened when require memory", e);
+    }
+    // the waiter may be admitted concurrently, give the memory back in that case
+    if (!future.complete(false) && !future.isCompletedExceptionally() && future.join()) {
+      releaseReadMemory(size);
+    }
+    return false;
+  }
+
+  /**
+   * Require the read memory without blocking the caller. The returned future is completed with
+   * true once the memory is granted, or with false if it can't be granted within the timeout. The
+   * waiters are admitted in FIFO order as soon as the read memory is released.
+   */
+  public CompletableFuture<Boolean> requireReadMemoryAsync(long size) {
     ShuffleServerMetrics.counterTotalRequireReadMemoryNum.inc();
-    for (int i = 0; i < retryNum; i++) {
-      synchronized (this) {
-        if (readDataMemory.get() + size < readCapacity) {
-          readDataMemory.addAndGet(size);
-          ShuffleServerMetrics.gaugeReadBufferUsedSize.inc(size);
-          return true;
-        }
-      }
-      LOG.info(
-          "Can't require["
-              + size
-              + "] for read data, current["
-              + readDataMemory.get()
-              + "], capacity["
-              + readCapacity
-              + "], re-try "
-              + i
-              + " times");
-      ShuffleServerMetrics.counterTotalRequireReadMemoryRetryNum.inc();
-      try {
-        Thread.sleep(1000);
-      } catch (Exception e) {
-        LOG.warn("Error happened when require memory", e);
+    if (readMemoryWaiters.isEmpty() && tryRequireReadMemory(size)) {
+      return CompletableFuture.completedFuture(true);
+    }
+    if (size >= readCapacity || readMemoryRequireTimeoutMs <= 0) {
+      LOG.info("Can't require[" + size + "] for read data, capacity[" + readCapacity + "]");
+      ShuffleServerMetrics.counterTotalRequireReadMemoryFailedNum.inc();
+      return CompletableFuture.completedFuture(false);
+    }
+    LOG.info(
+        "Can't require["
+            + size
+            + "] for read data, current["
+            + readDataMemory.get()
+            + "], capacity["
+            + readCapacity
+            + "], wait in queue with "
+            + readMemoryWaiters.size()
+            + " waiters");
+    ShuffleServerMetrics.counterTotalRequireReadMemoryRetryNum.inc();
+    ReadMemoryWaiter waiter = new ReadMemoryWaiter(size);
+    synchronized (readMemoryWaiters) {
+      readMemoryWaiters.add(waiter);
+      ShuffleServerMetrics.gaugeReadMemoryWaiterNum.inc();
+    }
+    try {
+      waiter.timeoutFuture =
+          readMemoryTimeoutExecutor.schedule(
+              () -> expireReadMemoryWaiter(waiter),
+              readMemoryRequireTimeoutMs,
+              TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // the manager is closed, no memory will be waited for
+      expireReadMemoryWaiter(waiter);
+      return waiter.future;
+    }
+    // the memory may be released before the waiter is queued
+    admitReadMemoryWaiters();
+    return waiter.future;
+  }
+
+  private void expireReadMemoryWaiter(ReadMemoryWaiter waiter) {
+    synchronized (readMemoryWaiters) {
+      if (!readMemoryWaiters.remove(waiter)) {
+        return;
       }
+      ShuffleServerMetrics.gaugeReadMemoryWaiterNum.dec();
     }
+    ShuffleServerMetrics.summaryRequireReadMemoryWaitTime.observe(
+        System.currentTimeMillis() - waiter.startTime);
     ShuffleServerMetrics.counterTotalRequireReadMemoryFailedNum.inc();
+    LOG.warn(
+        "Can't require["
+            + waiter.size
+            + "] for read data in "
+            + readMemoryRequireTimeoutMs
+            + " ms, current["
+            + readDataMemory.get()
+            + "], capacity["
+            + readCapacity
+            + "]");
+    waiter.future.complete(false);
+  }
+
+  private void admitReadMemoryWaiters() {
+    List<ReadMemoryWaiter> admitted = Lists.newArrayList();
+    synchronized (readMemoryWaiters) {
+      ReadMemoryWaiter waiter = readMemoryWaiters.peek();
+      while (waiter != null && tryRequireReadMemory(waiter.size)) {
+        readMemoryWaiters.poll();
+        ShuffleServerMetrics.gaugeReadMemoryWaiterNum.dec();
+        admitted.add(waiter);
+        waiter = readMemoryWaiters.peek();
+      }
+    }
+    // complete the futures out of the lock, the callbacks may run in the current thread
+    for (ReadMemoryWaiter waiter : admitted) {
+      if (waiter.timeoutFuture != null) {
+        waiter.timeoutFuture.cancel(false);
+      }
+      ShuffleServerMetrics.summaryRequireReadMemoryWaitTime.observe(
+          System.currentTimeMillis() - waiter.startTime);
+      if (!waiter.future.complete(true)) {
+        releaseReadMemory(waiter.size);
+      }
+    }
+  }
+
+  /** Stop the timeout checker and fail the read requests still waiting for read memory. */
+  public void close() {
+    readMemoryTimeoutExecutor.shutdownNow();
+    List<ReadMemoryWaiter> waiters;
+    synchronized (readMemoryWaiters) {
+      waiters = Lists.newArrayList(readMemoryWaiters);
+      readMemoryWaiters.clear();
+      ShuffleServerMetrics.gaugeReadMemoryWaiterNum.dec(waiters.size());
+    }
+    waiters.forEach(waiter -> waiter.future.complete(false));
+  }
+
+  private boolean tryRequireReadMemory(long size) {
+    long current = readDataMemory.get();
+    while (current + size < readCapacity) {
+      if (readDataMemory.compareAndSet(current, current + size)) {
+        ShuffleServerMetrics.gaugeReadBufferUsedSize.inc(size);
+        return true;
+      }
+      current = readDataMemory.get();
+    }
     return false;
   }
 
@@ -423,10 +716,22 @@ public class ShuffleBufferManager {
       readDataMemory.set(0L);
       ShuffleServerMetrics.gaugeReadBufferUsedSize.set(0);
     }
+    if (!readMemoryWaiters.isEmpty()) {
+      admitReadMemoryWaiters();
+    }
   }
 
   // flush the buffer with required map which is <appId -> shuffleId>
-  public synchronized void flush(Map<String, Set<Integer>> requiredFlush) {
+  public void flush(Map<String, Set<Integer>> requiredFlush) {
+    flushLock.lock();
+    try {
+      doFlush(requiredFlush);
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  private void doFlush(Map<String, Set<Integer>> requiredFlush) {
     for (Map.Entry<String, Map<Integer, RangeMap<Integer, ShuffleBuffer>>> appIdToBuffers :
         bufferPool.entrySet()) {
       String appId = appIdToBuffers.getKey();
@@ -495,6 +800,10 @@ public class ShuffleBufferManager {
     return capacity;
   }
 
+  public boolean isOffHeap() {
+    return offHeapAllocator != null;
+  }
+
   @VisibleForTesting
   public long getReadCapacity() {
     return readCapacity;
@@ -516,30 +825,35 @@ public class ShuffleBufferManager {
     return preAllocatedSize.get();
   }
 
-  // sort for shuffle according to data size, then pick properly data which will be flushed
-  private Map<String, Set<Integer>> pickFlushedShuffle() {
-    // create list for sort
-    List<Entry<String, AtomicLong>> sizeList = generateSizeList();
-    sizeList.sort(
-        (entry1, entry2) -> {
-          if (entry1 == null && entry2 == null) {
-            return 0;
-          }
-          if (entry1 == null) {
-            return 1;
-          }
-          if (entry2 == null) {
-            return -1;
-          }
-          if (entry1.getValue().get() > entry2.getValue().get()) {
-            return -1;
-          } else if (entry1.getValue().get() == entry2.getValue().get()) {
-            return 0;
+  // pick the partition buffers which will be flushed, the large buffers which haven't been read
+  // and haven't received data recently are preferred, so the small and hot buffers are kept in
+  // memory as much as possible
+  private List<FlushCandidate> pickFlushedBuffers() {
+    List<FlushCandidate> candidates = Lists.newArrayList();
+    for (Map.Entry<String, Map<Integer, RangeMap<Integer, ShuffleBuffer>>> appEntry :
+        bufferPool.entrySet()) {
+      String appId = appEntry.getKey();
+      for (Map.Entry<Integer, RangeMap<Integer, ShuffleBuffer>> shuffleEntry :
+          appEntry.getValue().entrySet()) {
+        int shuffleId = shuffleEntry.getKey();
+        long shuffleSize = getShuffleSize(appId, shuffleId);
+        for (Map.Entry<Range<Integer>, ShuffleBuffer> rangeEntry :
+            shuffleEntry.getValue().asMapOfRanges().entrySet()) {
+          ShuffleBuffer buffer = rangeEntry.getValue();
+          if (buffer.getSize() > 0) {
+            candidates.add(
+                new FlushCandidate(appId, shuffleId, rangeEntry.getKey(), buffer, shuffleSize));
           }
-          return 1;
-        });
+        }
+      }
+    }
+    // the queue is rebuilt for every pick rather than kept ordered on every cache, flush and
+    // remove: the sizes and read states are only snapshotted here, a pick only happens when the
+    // memory is above the high watermark, and heapify is O(n) like the scan above, while only the
+    // picked buffers are polled with O(log n) for each
+    PriorityQueue<FlushCandidate> queue = new PriorityQueue<>(candidates);
 
-    Map<String, Set<Integer>> pickedShuffle = Maps.newHashMap();
+    List<FlushCandidate> pickedBuffers = Lists.newArrayList();
     // The algorithm here is to flush data size > highWaterMark - lowWaterMark
     // the remaining data in buffer maybe more than lowWaterMark
     // because shuffle server is still receiving data, but it should be ok
@@ -549,15 +863,15 @@ public class ShuffleBufferManager {
     int printIndex = 0;
     int printIgnoreIndex = 0;
     int printMax = 10;
-    for (Map.Entry<String, AtomicLong> entry : sizeList) {
-      long size = entry.getValue().get();
-      String appIdShuffleIdKey = entry.getKey();
-      if (size > this.shuffleFlushThreshold || pickedFlushSize <= atLeastFlushSizeIgnoreThreshold) {
-        pickedFlushSize += size;
-        addPickedShuffle(appIdShuffleIdKey, pickedShuffle);
+    while (!queue.isEmpty()) {
+      FlushCandidate candidate = queue.poll();
+      if (candidate.shuffleSize > this.shuffleFlushThreshold
+          || pickedFlushSize <= atLeastFlushSizeIgnoreThreshold) {
+        pickedFlushSize += candidate.size;
+        pickedBuffers.add(candidate);
         // print detail picked info
         if (printIndex < printMax) {
-          LOG.info("Pick application_shuffleId[{}] with {} bytes", appIdShuffleIdKey, size);
+          LOG.info("Pick {} with {} bytes", candidate, candidate.size);
           printIndex++;
         }
         if (pickedFlushSize > expectedFlushSize) {
@@ -565,39 +879,37 @@ public class ShuffleBufferManager {
           break;
         }
       } else {
-        // since shuffle size is ordered by size desc, we can skip process more shuffle data once
-        // some shuffle's size
-        // is less than threshold
+        // the shuffle with size < shuffleFlushThreshold is kept in memory to reduce small I/Os,
+        // the candidates are ordered by partition, so the following ones are still checked
         if (printIgnoreIndex < printMax) {
-          LOG.info("Ignore application_shuffleId[{}] with {} bytes", appIdShuffleIdKey, size);
+          LOG.info("Ignore {} with {} bytes", candidate, candidate.size);
           printIgnoreIndex++;
-        } else {
-          break;
         }
       }
     }
-    return pickedShuffle;
+    return pickedBuffers;
   }
 
-  private List<Map.Entry<String, AtomicLong>> generateSizeList() {
-    Map<String, AtomicLong> sizeMap = Maps.newHashMap();
-    for (Map.Entry<String, Map<Integer, AtomicLong>> appEntry : shuffleSizeMap.entrySet()) {
-      String appId = appEntry.getKey();
-      for (Map.Entry<Integer, AtomicLong> shuffleEntry : appEntry.getValue().entrySet()) {
-        Integer shuffleId = shuffleEntry.getKey();
-        sizeMap.put(RssUtils.generateShuffleKey(appId, shuffleId), shuffleEntry.getValue());
-      }
+  private long getShuffleSize(String appId, int shuffleId) {
+    Map<Integer, AtomicLong> shuffleIdToSize = shuffleSizeMap.get(appId);
+    if (shuffleIdToSize == null) {
+      return 0L;
     }
-    return Lists.newArrayList(sizeMap.entrySet());
+    AtomicLong shuffleSize = shuffleIdToSize.get(shuffleId);
+    return shuffleSize == null ? 0L : shuffleSize.get();
   }
 
-  private void addPickedShuffle(String shuffleIdKey, Map<String, Set<Integer>> pickedShuffle) {
-    String[] splits = shuffleIdKey.split(Constants.KEY_SPLIT_CHAR);
-    String appId = splits[0];
-    Integer shuffleId = Integer.parseInt(splits[1]);
-    pickedShuffle.computeIfAbsent(appId, key -> Sets.newHashSet());
-    Set<Integer> shuffleIdSet = pickedShuffle.get(appId);
-    shuffleIdSet.add(shuffleId);
+  private void flushPickedBuffers(List<FlushCandidate> pickedBuffers, boolean isMemoryPressure) {
+    for (FlushCandidate candidate : pickedBuffers) {
+      flushBuffer(
+          candidate.buffer,
+          candidate.appId,
+          candidate.shuffleId,
+          candidate.range.lowerEndpoint(),
+          candidate.range.upperEndpoint(),
+          isHugePartition(candidate.appId, candidate.shuffleId, candidate.range.lowerEndpoint()),
+          isMemoryPressure);
+    }
   }
 
   public void removeBufferByShuffleId(String appId, Collection<Integer> shuffleIds) {
@@ -656,4 +968,55 @@ public class ShuffleBufferManager {
     }
     return false;
   }
+
+  private static class ReadMemoryWaiter {
+    private final long size;
+    private final long startTime = System.currentTimeMillis();
+    private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+    private volatile ScheduledFuture<?> timeoutFuture;
+
+    ReadMemoryWaiter(long size) {
+      this.size = size;
+    }
+  }
+
+  private static class FlushCandidate implements Comparable<FlushCandidate> {
+    private final String appId;
+    private final int shuffleId;
+    private final Range<Integer> range;
+    private final ShuffleBuffer buffer;
+    private final long shuffleSize;
+    private final long size;
+    // the buffer which is being read is more likely to be read from memory soon,
+    // so its size is discounted to flush it later than others
+    private final long score;
+    private final long lastAppendTime;
+
+    FlushCandidate(
+        String appId, int shuffleId, Range<Integer> range, ShuffleBuffer buffer, long shuffleSize) {
+      this.appId = appId;
+      this.shuffleId = shuffleId;
+      this.range = range;
+      this.buffer = buffer;
+      this.shuffleSize = shuffleSize;
+      this.size = buffer.getSize();
+      this.score = buffer.isReadStarted() ? size >>> 1 : size;
+      this.lastAppendTime = buffer.getLastAppendTime();
+    }
+
+    @Override
+    public int compareTo(FlushCandidate other) {
+      // larger score first, then the colder one first
+      int result = Long.compare(other.score, score);
+      if (result == 0) {
+        result = Long.compare(lastAppendTime, other.lastAppendTime);
+      }
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "appId[" + appId + "], shuffleId[" + shuffleId + "], partitionRange[" + range + "]";
+    }
+  }
 }
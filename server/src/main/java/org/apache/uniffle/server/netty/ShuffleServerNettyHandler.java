@@ -20,6 +20,10 @@ package org.apache.uniffle.server.netty;
 import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import com.google.common.collect.Lists;
 import io.netty.buffer.ByteBuf;
@@ -48,7 +52,9 @@ import org.apache.uniffle.common.netty.protocol.GetMemoryShuffleDataResponse;
 import org.apache.uniffle.common.netty.protocol.RequestMessage;
 import org.apache.uniffle.common.netty.protocol.RpcResponse;
 import org.apache.uniffle.common.netty.protocol.SendShuffleDataRequest;
+import org.apache.uniffle.common.netty.protocol.SendShuffleDataResponse;
 import org.apache.uniffle.common.rpc.StatusCode;
+import org.apache.uniffle.common.util.Constants;
 import org.apache.uniffle.server.ShuffleDataReadEvent;
 import org.apache.uniffle.server.ShuffleServer;
 import org.apache.uniffle.server.ShuffleServerConf;
@@ -112,14 +118,38 @@ public class ShuffleServerNettyHandler implements BaseMessageHandler {
             .recordTransportTime(SendShuffleDataRequest.class.getName(), transportTime);
       }
     }
-    int requireSize = shuffleServer.getShuffleTaskManager().getRequireBufferSize(requireBufferId);
+    ShuffleTaskManager manager = shuffleServer.getShuffleTaskManager();
+    boolean isReserveOnSend = requireBufferId == Constants.RESERVE_BUFFER_ON_SEND_ID;
+    List<ShufflePartitionedData> shufflePartitionedData = toPartitionedData(req);
+    int requireSize =
+        isReserveOnSend
+            ? (int) getTotalBlockSize(shufflePartitionedData)
+            : manager.getRequireBufferSize(requireBufferId);
 
     StatusCode ret = StatusCode.SUCCESS;
     String responseMessage = "OK";
     if (req.getPartitionToBlocks().size() > 0) {
       ShuffleServerMetrics.counterTotalReceivedDataSize.inc(requireSize);
-      ShuffleTaskManager manager = shuffleServer.getShuffleTaskManager();
-      PreAllocatedBufferInfo info = manager.getAndRemovePreAllocatedBuffer(requireBufferId);
+      PreAllocatedBufferInfo info;
+      if (isReserveOnSend) {
+        // the buffer is reserved for the received data directly, no pre-allocation is needed
+        StatusCode reserveStatus =
+            manager.reserveBufferOnSend(
+                appId, shuffleId, toPartitionIds(shufflePartitionedData), requireSize);
+        if (reserveStatus != StatusCode.SUCCESS) {
+          rpcResponse =
+              toSendShuffleDataResponse(
+                  appId,
+                  req.getRequestId(),
+                  reserveStatus,
+                  "Can't reserve " + requireSize + " bytes for appId[" + appId + "]");
+          client.getChannel().writeAndFlush(rpcResponse);
+          return;
+        }
+        info = new PreAllocatedBufferInfo(requireBufferId, System.currentTimeMillis(), requireSize);
+      } else {
+        info = manager.getAndRemovePreAllocatedBuffer(requireBufferId);
+      }
       boolean isPreAllocated = info != null;
       if (!isPreAllocated) {
         String errorMsg =
@@ -133,12 +163,12 @@ public class ShuffleServerNettyHandler implements BaseMessageHandler {
         LOG.warn(errorMsg);
         responseMessage = errorMsg;
         rpcResponse =
-            new RpcResponse(req.getRequestId(), StatusCode.INTERNAL_ERROR, responseMessage);
+            toSendShuffleDataResponse(
+                appId, req.getRequestId(), StatusCode.INTERNAL_ERROR, responseMessage);
         client.getChannel().writeAndFlush(rpcResponse);
         return;
       }
       final long start = System.currentTimeMillis();
-      List<ShufflePartitionedData> shufflePartitionedData = toPartitionedData(req);
       long alreadyReleasedSize = 0;
       for (ShufflePartitionedData spd : shufflePartitionedData) {
         String shuffleDataInfo =
@@ -188,7 +218,7 @@ public class ShuffleServerNettyHandler implements BaseMessageHandler {
       if (info.getRequireSize() > alreadyReleasedSize) {
         manager.releasePreAllocatedSize(info.getRequireSize() - alreadyReleasedSize);
       }
-      rpcResponse = new RpcResponse(req.getRequestId(), ret, responseMessage);
+      rpcResponse = toSendShuffleDataResponse(appId, req.getRequestId(), ret, responseMessage);
       long costTime = System.currentTimeMillis() - start;
       shuffleServer
           .getNettyMetrics()
@@ -209,7 +239,8 @@ public class ShuffleServerNettyHandler implements BaseMessageHandler {
       }
     } else {
       rpcResponse =
-          new RpcResponse(req.getRequestId(), StatusCode.INTERNAL_ERROR, "No data in request");
+          toSendShuffleDataResponse(
+              appId, req.getRequestId(), StatusCode.INTERNAL_ERROR, "No data in request");
     }
 
     client.getChannel().writeAndFlush(rpcResponse);
@@ -220,7 +251,6 @@ public class ShuffleServerNettyHandler implements BaseMessageHandler {
     String appId = req.getAppId();
     int shuffleId = req.getShuffleId();
     int partitionId = req.getPartitionId();
-    long blockId = req.getLastBlockId();
     int readBufferSize = req.getReadBufferSize();
     long timestamp = req.getTimestamp();
 
@@ -233,14 +263,113 @@ public class ShuffleServerNettyHandler implements BaseMessageHandler {
       }
     }
     long start = System.currentTimeMillis();
-    StatusCode status = StatusCode.SUCCESS;
-    String msg = "OK";
-    GetMemoryShuffleDataResponse response;
     String requestInfo =
         "appId[" + appId + "], shuffleId[" + shuffleId + "], partitionId[" + partitionId + "]";
 
     // todo: if can get the exact memory size?
-    if (shuffleServer.getShuffleBufferManager().requireReadMemoryWithRetry(readBufferSize)) {
+    whenReadMemoryRequired(
+        client,
+        readBufferSize,
+        required -> getMemoryShuffleData(client, req, requestInfo, start, required));
+  }
+
+  public void handleGetLocalShuffleIndexRequest(
+      TransportClient client, GetLocalShuffleIndexRequest req) {
+    String appId = req.getAppId();
+    int shuffleId = req.getShuffleId();
+    int partitionId = req.getPartitionId();
+    int partitionNumPerRange = req.getPartitionNumPerRange();
+    int partitionNum = req.getPartitionNum();
+    String requestInfo =
+        "appId[" + appId + "], shuffleId[" + shuffleId + "], partitionId[" + partitionId + "]";
+
+    int[] range =
+        ShuffleStorageUtils.getPartitionRange(partitionId, partitionNumPerRange, partitionNum);
+    Storage storage =
+        shuffleServer
+            .getStorageManager()
+            .selectStorage(new ShuffleDataReadEvent(appId, shuffleId, partitionId, range[0]));
+    if (storage != null) {
+      storage.updateReadMetrics(new StorageReadMetrics(appId, shuffleId));
+    }
+    // Index file is expected small size and won't cause oom problem with the assumed size. An index
+    // segment is 40B,
+    // with the default size - 2MB, it can support 50k blocks for shuffle data.
+    long assumedFileSize =
+        shuffleServer
+            .getShuffleServerConf()
+            .getLong(ShuffleServerConf.SERVER_SHUFFLE_INDEX_SIZE_HINT);
+    whenReadMemoryRequired(
+        client,
+        assumedFileSize,
+        required -> getLocalShuffleIndex(client, req, requestInfo, assumedFileSize, required));
+  }
+
+  public void handleGetLocalShuffleData(TransportClient client, GetLocalShuffleDataRequest req) {
+    String appId = req.getAppId();
+    int shuffleId = req.getShuffleId();
+    int partitionId = req.getPartitionId();
+    int partitionNumPerRange = req.getPartitionNumPerRange();
+    int partitionNum = req.getPartitionNum();
+    long offset = req.getOffset();
+    int length = req.getLength();
+    long timestamp = req.getTimestamp();
+    if (timestamp > 0) {
+      long transportTime = System.currentTimeMillis() - timestamp;
+      if (transportTime > 0) {
+        shuffleServer
+            .getNettyMetrics()
+            .recordTransportTime(GetLocalShuffleDataRequest.class.getName(), transportTime);
+      }
+    }
+    String storageType =
+        shuffleServer.getShuffleServerConf().get(RssBaseConf.RSS_STORAGE_TYPE).name();
+    String requestInfo =
+        "appId["
+            + appId
+            + "], shuffleId["
+            + shuffleId
+            + "], partitionId["
+            + partitionId
+            + "]"
+            + "offset["
+            + offset
+            + "]"
+            + "length["
+            + length
+            + "]";
+
+    int[] range =
+        ShuffleStorageUtils.getPartitionRange(partitionId, partitionNumPerRange, partitionNum);
+    Storage storage =
+        shuffleServer
+            .getStorageManager()
+            .selectStorage(new ShuffleDataReadEvent(appId, shuffleId, partitionId, range[0]));
+    if (storage != null) {
+      storage.updateReadMetrics(new StorageReadMetrics(appId, shuffleId));
+    }
+
+    whenReadMemoryRequired(
+        client,
+        length,
+        required -> getLocalShuffleData(client, req, requestInfo, storageType, required));
+  }
+
+  private void getMemoryShuffleData(
+      TransportClient client,
+      GetMemoryShuffleDataRequest req,
+      String requestInfo,
+      long start,
+      boolean required) {
+    String appId = req.getAppId();
+    int shuffleId = req.getShuffleId();
+    int partitionId = req.getPartitionId();
+    long blockId = req.getLastBlockId();
+    int readBufferSize = req.getReadBufferSize();
+    StatusCode status = StatusCode.SUCCESS;
+    String msg = "OK";
+    GetMemoryShuffleDataResponse response;
+    if (required) {
       try {
         ShuffleDataResult shuffleDataResult =
             shuffleServer
@@ -297,8 +426,12 @@ public class ShuffleServerNettyHandler implements BaseMessageHandler {
     client.getChannel().writeAndFlush(response);
   }
 
-  public void handleGetLocalShuffleIndexRequest(
-      TransportClient client, GetLocalShuffleIndexRequest req) {
+  private void getLocalShuffleIndex(
+      TransportClient client,
+      GetLocalShuffleIndexRequest req,
+      String requestInfo,
+      long assumedFileSize,
+      boolean required) {
     String appId = req.getAppId();
     int shuffleId = req.getShuffleId();
     int partitionId = req.getPartitionId();
@@ -307,26 +440,7 @@ public class ShuffleServerNettyHandler implements BaseMessageHandler {
     StatusCode status = StatusCode.SUCCESS;
     String msg = "OK";
     GetLocalShuffleIndexResponse response;
-    String requestInfo =
-        "appId[" + appId + "], shuffleId[" + shuffleId + "], partitionId[" + partitionId + "]";
-
-    int[] range =
-        ShuffleStorageUtils.getPartitionRange(partitionId, partitionNumPerRange, partitionNum);
-    Storage storage =
-        shuffleServer
-            .getStorageManager()
-            .selectStorage(new ShuffleDataReadEvent(appId, shuffleId, partitionId, range[0]));
-    if (storage != null) {
-      storage.updateReadMetrics(new StorageReadMetrics(appId, shuffleId));
-    }
-    // Index file is expected small size and won't cause oom problem with the assumed size. An index
-    // segment is 40B,
-    // with the default size - 2MB, it can support 50k blocks for shuffle data.
-    long assumedFileSize =
-        shuffleServer
-            .getShuffleServerConf()
-            .getLong(ShuffleServerConf.SERVER_SHUFFLE_INDEX_SIZE_HINT);
-    if (shuffleServer.getShuffleBufferManager().requireReadMemoryWithRetry(assumedFileSize)) {
+    if (required) {
       try {
         final long start = System.currentTimeMillis();
         ShuffleIndexResult shuffleIndexResult =
@@ -379,7 +493,12 @@ public class ShuffleServerNettyHandler implements BaseMessageHandler {
     client.getChannel().writeAndFlush(response);
   }
 
-  public void handleGetLocalShuffleData(TransportClient client, GetLocalShuffleDataRequest req) {
+  private void getLocalShuffleData(
+      TransportClient client,
+      GetLocalShuffleDataRequest req,
+      String requestInfo,
+      String storageType,
+      boolean required) {
     String appId = req.getAppId();
     int shuffleId = req.getShuffleId();
     int partitionId = req.getPartitionId();
@@ -387,47 +506,11 @@ public class ShuffleServerNettyHandler implements BaseMessageHandler {
     int partitionNum = req.getPartitionNum();
     long offset = req.getOffset();
     int length = req.getLength();
-    long timestamp = req.getTimestamp();
-    if (timestamp > 0) {
-      long transportTime = System.currentTimeMillis() - timestamp;
-      if (transportTime > 0) {
-        shuffleServer
-            .getNettyMetrics()
-            .recordTransportTime(GetLocalShuffleDataRequest.class.getName(), transportTime);
-      }
-    }
-    String storageType =
-        shuffleServer.getShuffleServerConf().get(RssBaseConf.RSS_STORAGE_TYPE).name();
     StatusCode status = StatusCode.SUCCESS;
     String msg = "OK";
     GetLocalShuffleDataResponse response;
     ShuffleDataResult sdr;
-    String requestInfo =
-        "appId["
-            + appId
-            + "], shuffleId["
-            + shuffleId
-            + "], partitionId["
-            + partitionId
-            + "]"
-            + "offset["
-            + offset
-            + "]"
-            + "length["
-            + length
-            + "]";
-
-    int[] range =
-        ShuffleStorageUtils.getPartitionRange(partitionId, partitionNumPerRange, partitionNum);
-    Storage storage =
-        shuffleServer
-            .getStorageManager()
-            .selectStorage(new ShuffleDataReadEvent(appId, shuffleId, partitionId, range[0]));
-    if (storage != null) {
-      storage.updateReadMetrics(new StorageReadMetrics(appId, shuffleId));
-    }
-
-    if (shuffleServer.getShuffleBufferManager().requireReadMemoryWithRetry(length)) {
+    if (required) {
       try {
         long start = System.currentTimeMillis();
         sdr =
@@ -477,6 +560,65 @@ public class ShuffleServerNettyHandler implements BaseMessageHandler {
     client.getChannel().writeAndFlush(response);
   }
 
+  /**
+   * Run the action once the read memory is required. It won't park the event loop when the read
+   * memory isn't available, the action is resumed in the channel's event loop after the memory
+   * is released by others or the waiting is timed out. The action releases the required memory
+   * itself, the memory is only released here if the action can't be run, e.g. the event loop is
+   * shut down.
+   */
+  private void whenReadMemoryRequired(TransportClient client, long size, Consumer<Boolean> action) {
+    CompletableFuture<Boolean> future =
+        shuffleServer.getShuffleBufferManager().requireReadMemoryAsync(size);
+    if (future.isDone()) {
+      action.accept(future.join());
+      return;
+    }
+    AtomicBoolean started = new AtomicBoolean(false);
+    future
+        .thenAcceptAsync(
+            required -> {
+              started.set(true);
+              action.accept(required);
+            },
+            client.getChannel().eventLoop())
+        .whenComplete(
+            (v, e) -> {
+              if (e == null) {
+                return;
+              }
+              if (!started.get() && !future.isCompletedExceptionally() && future.join()) {
+                shuffleServer.getShuffleBufferManager().releaseReadMemory(size);
+              }
+              LOG.error(
+                  "Error happened when process the read request from "
+                      + client.getChannel().remoteAddress(),
+                  e);
+            });
+  }
+
+  private RpcResponse toSendShuffleDataResponse(
+      String appId, long requestId, StatusCode statusCode, String retMessage) {
+    long credit = shuffleServer.getShuffleBufferManager().grantSendCredit(appId);
+    if (credit > 0) {
+      return new SendShuffleDataResponse(requestId, statusCode, retMessage, credit);
+    }
+    // keep the plain response for the clients which don't know the credits
+    return new RpcResponse(requestId, statusCode, retMessage);
+  }
+
+  private long getTotalBlockSize(List<ShufflePartitionedData> shufflePartitionedData) {
+    return shufflePartitionedData.stream()
+        .mapToLong(ShufflePartitionedData::getTotalBlockSize)
+        .sum();
+  }
+
+  private List<Integer> toPartitionIds(List<ShufflePartitionedData> shufflePartitionedData) {
+    return shufflePartitionedData.stream()
+        .map(ShufflePartitionedData::getPartitionId)
+        .collect(Collectors.toList());
+  }
+
   private List<ShufflePartitionedData> toPartitionedData(SendShuffleDataRequest req) {
     List<ShufflePartitionedData> ret = Lists.newArrayList();
 
@@ -137,6 +137,11 @@ public class HybridStorageManager implements StorageManager {
   @Override
   public boolean write(Storage storage, ShuffleWriteHandler handler, ShuffleDataFlushEvent event) {
     StorageManager underStorageManager = eventOfUnderStorageManagers.getIfPresent(event);
+    if (underStorageManager == null) {
+      // the storage manager of the coalesced event is selected for its original events
+      underStorageManager =
+          eventOfUnderStorageManagers.getIfPresent(event.getOriginalEvents().get(0));
+    }
     if (underStorageManager == null) {
       return false;
     }
@@ -145,7 +150,10 @@ public class HybridStorageManager implements StorageManager {
 
   public void start() {}
 
-  public void stop() {}
+  public void stop() {
+    warmStorageManager.stop();
+    coldStorageManager.stop();
+  }
 
   @Override
   public Checker getStorageChecker() {
@@ -69,6 +69,8 @@ import org.apache.uniffle.storage.common.StorageMediaProvider;
 import org.apache.uniffle.storage.factory.ShuffleHandlerFactory;
 import org.apache.uniffle.storage.handler.api.ShuffleDeleteHandler;
 import org.apache.uniffle.storage.request.CreateShuffleDeleteHandlerRequest;
+import org.apache.uniffle.storage.util.FileSyncPolicy;
+import org.apache.uniffle.storage.util.LocalFileLayout;
 import org.apache.uniffle.storage.util.ShuffleStorageUtils;
 import org.apache.uniffle.storage.util.StorageType;
 
@@ -97,6 +99,14 @@ public class LocalStorageManager extends SingleStorageManager {
     double ratio = conf.getDouble(ShuffleServerConf.DISK_CAPACITY_RATIO);
     double highWaterMarkOfWrite = conf.get(ShuffleServerConf.HIGH_WATER_MARK_OF_WRITE);
     double lowWaterMarkOfWrite = conf.get(ShuffleServerConf.LOW_WATER_MARK_OF_WRITE);
+    long writerCacheSize = conf.get(ShuffleServerConf.LOCAL_FILE_WRITER_CACHE_SIZE);
+    long writerIdleTimeoutMs = conf.get(ShuffleServerConf.LOCAL_FILE_WRITER_IDLE_TIMEOUT);
+    FileSyncPolicy writerSyncPolicy = conf.get(ShuffleServerConf.LOCAL_FILE_WRITER_SYNC_POLICY);
+    long indexCacheCapacity = conf.get(ShuffleServerConf.LOCAL_FILE_INDEX_CACHE_CAPACITY);
+    long readAheadCacheCapacity =
+        conf.get(ShuffleServerConf.LOCAL_FILE_READ_AHEAD_CACHE_CAPACITY);
+    int readAheadChunkSize = conf.get(ShuffleServerConf.LOCAL_FILE_READ_AHEAD_CHUNK_SIZE);
+    LocalFileLayout layout = conf.get(ShuffleServerConf.LOCAL_FILE_LAYOUT);
     if (highWaterMarkOfWrite < lowWaterMarkOfWrite) {
       throw new IllegalArgumentException(
           "highWaterMarkOfWrite must be larger than lowWaterMarkOfWrite");
@@ -128,6 +138,13 @@ public class LocalStorageManager extends SingleStorageManager {
                       .lowWaterMarkOfWrite(lowWaterMarkOfWrite)
                       .highWaterMarkOfWrite(highWaterMarkOfWrite)
                       .localStorageMedia(storageType)
+                      .writerCacheSize(writerCacheSize)
+                      .writerIdleTimeoutMs(writerIdleTimeoutMs)
+                      .writerSyncPolicy(writerSyncPolicy)
+                      .indexCacheCapacity(indexCacheCapacity)
+                      .readAheadCacheCapacity(readAheadCacheCapacity)
+                      .readAheadChunkSize(readAheadChunkSize)
+                      .layout(layout)
                       .build();
               successCount.incrementAndGet();
             } catch (Exception e) {
@@ -337,6 +354,13 @@ public class LocalStorageManager extends SingleStorageManager {
     }
   }
 
+  @Override
+  public void stop() {
+    for (LocalStorage storage : localStorages) {
+      storage.close();
+    }
+  }
+
   @Override
   public void registerRemoteStorage(String appId, RemoteStorageInfo remoteStorageInfo) {
     // ignore
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import org.apache.uniffle.common.util.RssUtils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BlockIdSetTest {
+
+  @Test
+  public void concurrentAddTest() throws Exception {
+    BlockIdSet blockIdSet = new BlockIdSet();
+    Roaring64NavigableMap expected = Roaring64NavigableMap.bitmapOf();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        final int thread = t;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 1000; i++) {
+                    blockIdSet.add(new long[] {(long) thread << 32 | i, i});
+                  }
+                }));
+        for (int i = 0; i < 1000; i++) {
+          expected.addLong((long) t << 32 | i);
+          expected.addLong(i);
+        }
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(expected.getLongCardinality(), blockIdSet.getLongCardinality());
+    Roaring64NavigableMap snapshot = blockIdSet.snapshot();
+    assertEquals(expected, snapshot);
+    assertArrayEquals(RssUtils.serializeBitMap(expected), RssUtils.serializeBitMap(snapshot));
+
+    // the snapshot isn't changed by the later updates
+    blockIdSet.add(new long[] {Long.MAX_VALUE});
+    assertEquals(expected.getLongCardinality(), snapshot.getLongCardinality());
+    assertEquals(expected.getLongCardinality() + 1, blockIdSet.getLongCardinality());
+
+    // the pending block ids are merged before iterating
+    blockIdSet.add(new long[] {Long.MAX_VALUE - 1});
+    Roaring64NavigableMap iterated = Roaring64NavigableMap.bitmapOf();
+    blockIdSet.forEach(iterated::addLong);
+    expected.addLong(Long.MAX_VALUE);
+    expected.addLong(Long.MAX_VALUE - 1);
+    assertEquals(expected, iterated);
+  }
+}
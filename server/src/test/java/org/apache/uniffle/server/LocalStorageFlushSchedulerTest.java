@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.apache.uniffle.common.ShufflePartitionedBlock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LocalStorageFlushSchedulerTest {
+
+  private final List<Runnable> tasks = new ArrayList<>();
+  private final List<Long> flushedEventIds = new ArrayList<>();
+
+  @BeforeEach
+  public void setup() {
+    ShuffleServerMetrics.register();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    ShuffleServerMetrics.clear();
+  }
+
+  @Test
+  public void scheduleTest() {
+    LocalStorageFlushScheduler scheduler =
+        new LocalStorageFlushScheduler(
+            "/disk1", 1, 0, tasks::add, event -> flushedEventIds.add(event.getEventId()), () -> {});
+    scheduler.add(createEvent(1, "app1"));
+    scheduler.add(createEvent(2, "app1"));
+    scheduler.add(createEvent(3, "app1"));
+    scheduler.add(createEvent(4, "app2"));
+    ShuffleDataFlushEvent hugePartitionEvent = createEvent(5, "app2");
+    hugePartitionEvent.markOwnedByHugePartition();
+    scheduler.add(hugePartitionEvent);
+    ShuffleDataFlushEvent memoryPressureEvent = createEvent(6, "app1");
+    memoryPressureEvent.markTriggeredByMemoryPressure();
+    scheduler.add(memoryPressureEvent);
+
+    // only one event is flushed at the same time
+    assertEquals(1, tasks.size());
+    assertEquals(1, scheduler.getRunningNum());
+    assertEquals(5, scheduler.getPendingNum());
+    assertEquals(5, ShuffleServerMetrics.gaugeLocalFileFlushQueueSize.labels("/disk1").get());
+    while (!tasks.isEmpty()) {
+      tasks.remove(0).run();
+      scheduler.dispatch();
+      assertEquals(tasks.size(), scheduler.getRunningNum());
+    }
+    // the urgent events are flushed first, then the apps are served in turn
+    assertEquals(Arrays.asList(1L, 5L, 6L, 2L, 4L, 3L), flushedEventIds);
+    assertEquals(0, scheduler.getPendingNum());
+    assertEquals(0, ShuffleServerMetrics.gaugeLocalFileFlushQueueSize.labels("/disk1").get());
+  }
+
+  @Test
+  public void concurrencyTest() {
+    LocalStorageFlushScheduler scheduler =
+        new LocalStorageFlushScheduler(
+            "/disk1", 2, 0, tasks::add, event -> flushedEventIds.add(event.getEventId()), () -> {});
+    for (int i = 0; i < 5; i++) {
+      scheduler.add(createEvent(i, "app" + i));
+    }
+    assertEquals(2, tasks.size());
+    assertEquals(3, scheduler.getPendingNum());
+    tasks.remove(0).run();
+    scheduler.dispatch();
+    assertEquals(2, tasks.size());
+    assertEquals(2, scheduler.getPendingNum());
+  }
+
+  @Test
+  public void rejectedTest() {
+    AtomicBoolean full = new AtomicBoolean(true);
+    LocalStorageFlushScheduler scheduler =
+        new LocalStorageFlushScheduler(
+            "/disk1",
+            1,
+            0,
+            task -> {
+              if (full.get()) {
+                throw new RejectedExecutionException();
+              }
+              tasks.add(task);
+            },
+            event -> flushedEventIds.add(event.getEventId()),
+            () -> {});
+    scheduler.add(createEvent(1, "app1"));
+    // the rejected event is kept until the thread pool is available
+    assertEquals(0, scheduler.getRunningNum());
+    assertEquals(1, scheduler.getPendingNum());
+    full.set(false);
+    scheduler.dispatch();
+    assertEquals(1, tasks.size());
+    tasks.remove(0).run();
+    assertEquals(Arrays.asList(1L), flushedEventIds);
+    assertEquals(0, scheduler.getRunningNum());
+  }
+
+  @Test
+  public void coalesceTest() {
+    List<ShuffleDataFlushEvent> flushedEvents = new ArrayList<>();
+    LocalStorageFlushScheduler scheduler =
+        new LocalStorageFlushScheduler("/disk1", 1, 25, tasks::add, flushedEvents::add, () -> {});
+    AtomicInteger cleanupNum = new AtomicInteger();
+    for (int i = 1; i <= 5; i++) {
+      // the 3rd event belongs to another partition
+      ShuffleDataFlushEvent event = createEvent(i, "app1", i == 3 ? 2 : 1);
+      event.addCleanupCallback(cleanupNum::incrementAndGet);
+      scheduler.add(event);
+    }
+    while (!tasks.isEmpty()) {
+      tasks.remove(0).run();
+      scheduler.dispatch();
+    }
+
+    // the 2nd and 4th events are coalesced, and the 5th one exceeds the coalesce size
+    assertEquals(4, flushedEvents.size());
+    ShuffleDataFlushEvent coalescedEvent = flushedEvents.get(1);
+    assertEquals(20, coalescedEvent.getSize());
+    assertEquals(2, coalescedEvent.getShuffleBlocks().size());
+    assertEquals(2L, coalescedEvent.getShuffleBlocks().get(0).getBlockId());
+    assertEquals(4L, coalescedEvent.getShuffleBlocks().get(1).getBlockId());
+    assertEquals(2, coalescedEvent.getOriginalEvents().size());
+    assertEquals(3L, flushedEvents.get(2).getEventId());
+    assertEquals(5L, flushedEvents.get(3).getEventId());
+    assertEquals(1, flushedEvents.get(3).getOriginalEvents().size());
+    assertEquals(2, ShuffleServerMetrics.counterTotalLocalFileCoalescedEventNum.get());
+
+    // the cleanup callbacks of the original events are called by the coalesced event
+    assertTrue(coalescedEvent.doCleanup());
+    assertEquals(2, cleanupNum.get());
+  }
+
+  private ShuffleDataFlushEvent createEvent(long eventId, String appId) {
+    return new ShuffleDataFlushEvent(eventId, appId, 1, 1, 1, 10, null, null, null);
+  }
+
+  private ShuffleDataFlushEvent createEvent(long eventId, String appId, int partition) {
+    List<ShufflePartitionedBlock> blocks =
+        Arrays.asList(new ShufflePartitionedBlock(10, 10, 0, eventId, 0, new byte[10]));
+    return new ShuffleDataFlushEvent(
+        eventId, appId, 1, partition, partition, 10, blocks, null, null);
+  }
+}
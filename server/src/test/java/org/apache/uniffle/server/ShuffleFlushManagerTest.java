@@ -24,6 +24,9 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
@@ -51,8 +54,10 @@ import org.apache.uniffle.common.RemoteStorageInfo;
 import org.apache.uniffle.common.ShuffleDataResult;
 import org.apache.uniffle.common.ShufflePartitionedBlock;
 import org.apache.uniffle.common.config.RssBaseConf;
+import org.apache.uniffle.common.exception.RssException;
 import org.apache.uniffle.common.util.ChecksumUtils;
 import org.apache.uniffle.common.util.Constants;
+import org.apache.uniffle.common.util.RssUtils;
 import org.apache.uniffle.server.buffer.ShuffleBufferManager;
 import org.apache.uniffle.server.event.AppPurgeEvent;
 import org.apache.uniffle.server.event.ShufflePurgeEvent;
@@ -73,6 +78,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.Mockito.mock;
@@ -507,6 +513,64 @@ public class ShuffleFlushManagerTest extends HadoopTestBase {
         0, ((LocalStorageManager) storageManager).getSortedPartitionsOfStorageMap().size());
   }
 
+  @Test
+  public void waitForCommittedTest(@TempDir File tempDir) throws Exception {
+    final String appId = "waitForCommittedTest_appId";
+    ShuffleServerConf serverConf = new ShuffleServerConf();
+    serverConf.set(
+        ShuffleServerConf.RSS_STORAGE_BASE_PATH, Arrays.asList(tempDir.getAbsolutePath()));
+    serverConf.setString(ShuffleServerConf.RSS_STORAGE_TYPE.key(), StorageType.LOCALFILE.name());
+    serverConf.setLong(ShuffleServerConf.DISK_CAPACITY, 1024L * 1024L * 1024L);
+    StorageManager storageManager =
+        StorageManagerFactory.getInstance().createStorageManager(serverConf);
+    ShuffleFlushManager manager =
+        new ShuffleFlushManager(serverConf, mockShuffleServer, storageManager);
+    ShuffleDataFlushEvent event1 = createShuffleDataFlushEvent(appId, 1, 0, 1, null);
+    ShuffleDataFlushEvent event2 = createShuffleDataFlushEvent(appId, 1, 0, 1, null);
+    Roaring64NavigableMap expectedBlockIds = Roaring64NavigableMap.bitmapOf();
+    event1.getShuffleBlocks().forEach(block -> expectedBlockIds.addLong(block.getBlockId()));
+    event2.getShuffleBlocks().forEach(block -> expectedBlockIds.addLong(block.getBlockId()));
+
+    // the future is completed once the remaining blockIds are committed by the later flush
+    CompletableFuture<Void> future =
+        manager.waitForCommitted(appId, 1, RssUtils.cloneBitMap(expectedBlockIds));
+    assertFalse(future.isDone());
+    assertEquals(1, manager.getCommitWaiterNum(appId, 1));
+    manager.addToFlushQueue(event1);
+    waitForFlush(manager, appId, 1, 5);
+    assertFalse(future.isDone());
+    manager.addToFlushQueue(event2);
+    future.get(10, TimeUnit.SECONDS);
+    // the waiter is removed after it's completed
+    assertEquals(0, manager.getCommitWaiterNum(appId, 1));
+
+    // the blockIds are committed already
+    assertTrue(
+        manager.waitForCommitted(appId, 1, RssUtils.cloneBitMap(expectedBlockIds)).isDone());
+    // nothing is expected to be committed
+    assertTrue(manager.waitForCommitted(appId, 2, Roaring64NavigableMap.bitmapOf()).isDone());
+    assertEquals(0, manager.getCommitWaiterNum(appId, 1));
+    assertEquals(0, manager.getCommitWaiterNum(appId, 2));
+
+    // the waiters of the removed shuffles and apps are failed
+    CompletableFuture<Void> lostFuture1 =
+        manager.waitForCommitted(appId, 1, Roaring64NavigableMap.bitmapOf(Long.MAX_VALUE));
+    CompletableFuture<Void> lostFuture2 =
+        manager.waitForCommitted(appId, 2, Roaring64NavigableMap.bitmapOf(Long.MAX_VALUE));
+    assertEquals(1, manager.getCommitWaiterNum(appId, 1));
+    assertEquals(1, manager.getCommitWaiterNum(appId, 2));
+    manager.removeResourcesOfShuffleId(appId, Lists.newArrayList(1));
+    assertEquals(0, manager.getCommitWaiterNum(appId, 1));
+    assertEquals(1, manager.getCommitWaiterNum(appId, 2));
+    assertTrue(lostFuture1.isCompletedExceptionally());
+    assertFalse(lostFuture2.isDone());
+    manager.removeResources(appId);
+    assertEquals(0, manager.getCommitWaiterNum(appId, 2));
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> lostFuture2.get(10, TimeUnit.SECONDS));
+    assertInstanceOf(RssException.class, e.getCause());
+  }
+
   private void waitForMetrics(Gauge.Child gauge, double expected, double delta) throws Exception {
     int retry = 0;
     boolean match = false;
@@ -25,7 +25,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -72,6 +74,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -157,6 +160,48 @@ public class ShuffleTaskManagerTest extends HadoopTestBase {
     assertEquals(0, ShuffleServerMetrics.gaugeAppWithHugePartitionNum.get());
   }
 
+  @Test
+  public void reserveBufferOnSendTest() throws Exception {
+    String confFile = ClassLoader.getSystemResource("server.conf").getFile();
+    ShuffleServerConf conf = new ShuffleServerConf(confFile);
+    conf.setString(ShuffleServerConf.RSS_STORAGE_TYPE.key(), StorageType.MEMORY_LOCALFILE.name());
+    conf.setString("rss.server.buffer.capacity", "10K");
+
+    shuffleServer = new ShuffleServer(conf);
+    ShuffleTaskManager shuffleTaskManager = shuffleServer.getShuffleTaskManager();
+    ShuffleBufferManager shuffleBufferManager = shuffleServer.getShuffleBufferManager();
+
+    String appId = "reserveBufferOnSendTest_appId";
+    int shuffleId = 1;
+    assertEquals(
+        StatusCode.NO_REGISTER,
+        shuffleTaskManager.reserveBufferOnSend(appId, shuffleId, Arrays.asList(1), 500));
+
+    shuffleTaskManager.registerShuffle(
+        appId,
+        shuffleId,
+        Lists.newArrayList(new PartitionRange(1, 1)),
+        RemoteStorageInfo.EMPTY_REMOTE_STORAGE,
+        StringUtils.EMPTY);
+    // the reservation is counted as pre-allocated size, but no require buffer id is tracked
+    assertEquals(
+        StatusCode.SUCCESS,
+        shuffleTaskManager.reserveBufferOnSend(appId, shuffleId, Arrays.asList(1), 500));
+    assertEquals(500, shuffleBufferManager.getPreAllocatedSize());
+    assertTrue(shuffleTaskManager.getRequireBufferIds().isEmpty());
+    ShufflePartitionedData partitionedData = createPartitionedData(1, 1, 500);
+    assertEquals(
+        StatusCode.SUCCESS,
+        shuffleTaskManager.cacheShuffleData(appId, shuffleId, true, partitionedData));
+    shuffleTaskManager.releasePreAllocatedSize(500);
+    assertEquals(0, shuffleBufferManager.getPreAllocatedSize());
+
+    assertEquals(
+        StatusCode.NO_BUFFER,
+        shuffleTaskManager.reserveBufferOnSend(appId, shuffleId, Arrays.asList(1), 20 * 1024));
+    assertEquals(0, shuffleBufferManager.getPreAllocatedSize());
+  }
+
   @Test
   public void partitionDataSizeSummaryTest() throws Exception {
     String confFile = ClassLoader.getSystemResource("server.conf").getFile();
@@ -380,6 +425,41 @@ public class ShuffleTaskManagerTest extends HadoopTestBase {
     }
   }
 
+  @Test
+  public void commitShuffleAsyncTimeoutTest() throws Exception {
+    String confFile = ClassLoader.getSystemResource("server.conf").getFile();
+    ShuffleServerConf conf = new ShuffleServerConf(confFile);
+    final String remoteStorage = HDFS_URI + "rss/commitShuffleAsyncTimeoutTest";
+    final String appId = "commitShuffleAsyncTimeoutTest";
+    final int shuffleId = 1;
+    conf.setString(ShuffleServerConf.RSS_STORAGE_TYPE.key(), StorageType.HDFS.name());
+    conf.set(ShuffleServerConf.RSS_TEST_MODE_ENABLE, true);
+    conf.set(ShuffleServerConf.SERVER_COMMIT_TIMEOUT, 1000L);
+    conf.set(ShuffleServerConf.HEALTH_CHECK_ENABLE, false);
+    shuffleServer = new ShuffleServer(conf);
+    ShuffleTaskManager shuffleTaskManager = shuffleServer.getShuffleTaskManager();
+    shuffleTaskManager.registerShuffle(
+        appId,
+        shuffleId,
+        Lists.newArrayList(new PartitionRange(1, 1)),
+        new RemoteStorageInfo(remoteStorage),
+        StringUtils.EMPTY);
+
+    // the blocks are reported as cached, but they are never received, so never committed
+    ShufflePartitionedData partitionedData = createPartitionedData(1, 1, 35);
+    shuffleTaskManager.updateCachedBlockIds(appId, shuffleId, partitionedData.getBlockList());
+    CompletableFuture<StatusCode> future = shuffleTaskManager.commitShuffleAsync(appId, shuffleId);
+    assertFalse(future.isDone());
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+    assertTrue(e.getCause().getMessage().startsWith("Shuffle data commit timeout for"));
+    // the waiter is removed once the commit is failed
+    ShuffleFlushManager shuffleFlushManager = shuffleServer.getShuffleFlushManager();
+    Awaitility.await()
+        .timeout(5, TimeUnit.SECONDS)
+        .until(() -> shuffleFlushManager.getCommitWaiterNum(appId, shuffleId) == 0);
+  }
+
   /**
    * Clean up the shuffle data of stage level for one app
    *
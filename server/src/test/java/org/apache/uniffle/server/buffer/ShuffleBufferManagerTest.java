@@ -20,27 +20,37 @@ package org.apache.uniffle.server.buffer;
 import java.io.File;
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.RangeMap;
 import com.google.common.util.concurrent.Uninterruptibles;
+import io.netty.util.internal.PlatformDependent;
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.roaringbitmap.longlong.Roaring64NavigableMap;
 
 import org.apache.uniffle.common.PartitionRange;
 import org.apache.uniffle.common.RemoteStorageInfo;
 import org.apache.uniffle.common.ShuffleDataResult;
+import org.apache.uniffle.common.ShufflePartitionedBlock;
 import org.apache.uniffle.common.ShufflePartitionedData;
 import org.apache.uniffle.common.rpc.StatusCode;
 import org.apache.uniffle.common.util.ByteBufUtils;
 import org.apache.uniffle.common.util.Constants;
 import org.apache.uniffle.server.DefaultFlushEventHandler;
+import org.apache.uniffle.server.ShuffleDataFlushEvent;
 import org.apache.uniffle.server.ShuffleFlushManager;
 import org.apache.uniffle.server.ShuffleServer;
 import org.apache.uniffle.server.ShuffleServerConf;
@@ -380,6 +390,97 @@ public class ShuffleBufferManagerTest extends BufferTestBase {
     verify(mockShuffleFlushManager, times(1)).addToFlushQueue(any());
   }
 
+  @Test
+  public void pickFlushedBuffersTest() {
+    ShuffleServerConf serverConf = new ShuffleServerConf();
+    serverConf.addAll(conf);
+    serverConf.set(ShuffleServerConf.SERVER_MEMORY_SHUFFLE_LOWWATERMARK_PERCENTAGE, 40.0);
+    shuffleBufferManager = new ShuffleBufferManager(serverConf, mockShuffleFlushManager);
+    String appId = "pickFlushedBuffersTest";
+    int shuffleId = 1;
+    for (int i = 0; i < 4; i++) {
+      shuffleBufferManager.registerBuffer(appId, shuffleId, i, i);
+    }
+    shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(0, 100));
+    shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(1, 100));
+    shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(2, 100));
+    // partition 1 is being read, so it should be flushed later than others
+    shuffleBufferManager.getShuffleData(appId, shuffleId, 1, Constants.INVALID_BLOCK_ID, 100);
+    assertEquals(396, shuffleBufferManager.getUsedMemory());
+    verify(mockShuffleFlushManager, times(0)).addToFlushQueue(any());
+
+    // reach high water mark, flush the partitions until the expected size is reached
+    shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(3, 10));
+    verify(mockShuffleFlushManager, times(2)).addToFlushQueue(any());
+    assertEquals(264, shuffleBufferManager.getInFlushSize());
+    assertEquals(0, shuffleBufferManager.getShuffleBuffer(appId, shuffleId, 0).getSize());
+    assertEquals(132, shuffleBufferManager.getShuffleBuffer(appId, shuffleId, 1).getSize());
+    assertEquals(0, shuffleBufferManager.getShuffleBuffer(appId, shuffleId, 2).getSize());
+    // small buffer is kept in memory
+    assertEquals(42, shuffleBufferManager.getShuffleBuffer(appId, shuffleId, 3).getSize());
+  }
+
+  @Test
+  public void pickFlushedBuffersWithShuffleFlushThresholdTest() {
+    ShuffleServerConf serverConf = new ShuffleServerConf();
+    serverConf.addAll(conf);
+    serverConf.set(ShuffleServerConf.SERVER_BUFFER_CAPACITY, 1000L);
+    serverConf.set(ShuffleServerConf.SERVER_SHUFFLE_FLUSH_THRESHOLD, 100L);
+    shuffleBufferManager = new ShuffleBufferManager(serverConf, mockShuffleFlushManager);
+    String appId = "pickFlushedBuffersWithShuffleFlushThresholdTest";
+    int largeShuffleId = 0;
+    shuffleBufferManager.registerBuffer(appId, largeShuffleId, 0, 0);
+    shuffleBufferManager.registerBuffer(appId, largeShuffleId, 1, 1);
+    // the partitions of the small shuffles are scored ahead of the 2nd partition of large shuffle
+    for (int shuffleId = 1; shuffleId <= 12; shuffleId++) {
+      shuffleBufferManager.registerBuffer(appId, shuffleId, 0, 0);
+      shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(0, 10));
+    }
+    shuffleBufferManager.cacheShuffleData(appId, largeShuffleId, false, createData(1, 8));
+    assertEquals(12 * 42 + 40, shuffleBufferManager.getUsedMemory());
+    verify(mockShuffleFlushManager, times(0)).addToFlushQueue(any());
+
+    // reach high water mark, the small shuffles are skipped and both partitions of the large
+    // shuffle are flushed
+    shuffleBufferManager.cacheShuffleData(appId, largeShuffleId, false, createData(0, 300));
+    verify(mockShuffleFlushManager, times(2)).addToFlushQueue(any());
+    assertEquals(332 + 40, shuffleBufferManager.getInFlushSize());
+    assertEquals(0, shuffleBufferManager.getShuffleBuffer(appId, largeShuffleId, 0).getSize());
+    assertEquals(0, shuffleBufferManager.getShuffleBuffer(appId, largeShuffleId, 1).getSize());
+    for (int shuffleId = 1; shuffleId <= 12; shuffleId++) {
+      assertEquals(42, shuffleBufferManager.getShuffleBuffer(appId, shuffleId, 0).getSize());
+    }
+  }
+
+  @Test
+  public void flushWithMemoryPressureTest() {
+    ShuffleServerConf serverConf = new ShuffleServerConf();
+    serverConf.addAll(conf);
+    serverConf.set(ShuffleServerConf.SERVER_BUFFER_CAPACITY, 1000L);
+    serverConf.set(ShuffleServerConf.SERVER_MEMORY_SHUFFLE_LOWWATERMARK_PERCENTAGE, 10.0);
+    serverConf.set(ShuffleServerConf.SERVER_MEMORY_SHUFFLE_HIGHWATERMARK_PERCENTAGE, 40.0);
+    serverConf.set(ShuffleServerConf.SERVER_MEMORY_SHUFFLE_URGENT_FLUSH_PERCENTAGE, 80.0);
+    shuffleBufferManager = new ShuffleBufferManager(serverConf, mockShuffleFlushManager);
+    String appId = "flushWithMemoryPressureTest";
+    int shuffleId = 1;
+    shuffleBufferManager.registerBuffer(appId, shuffleId, 0, 0);
+    shuffleBufferManager.registerBuffer(appId, shuffleId, 1, 1);
+    ArgumentCaptor<ShuffleDataFlushEvent> captor =
+        ArgumentCaptor.forClass(ShuffleDataFlushEvent.class);
+
+    // reach high water mark, the flush isn't urgent
+    shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(0, 410));
+    verify(mockShuffleFlushManager, times(1)).addToFlushQueue(captor.capture());
+    assertFalse(captor.getValue().isTriggeredByMemoryPressure());
+
+    // reach high water mark again before the previous flush is finished, the data in flush is
+    // counted and the used memory is above the urgent flush water mark
+    shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(1, 410));
+    verify(mockShuffleFlushManager, times(2)).addToFlushQueue(captor.capture());
+    assertEquals(884, shuffleBufferManager.getInFlushSize());
+    assertTrue(captor.getValue().isTriggeredByMemoryPressure());
+  }
+
   @Test
   public void bufferSizeTest() throws Exception {
     ShuffleServer mockShuffleServer = mock(ShuffleServer.class);
@@ -420,15 +521,16 @@ public class ShuffleBufferManagerTest extends BufferTestBase {
     shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(6, 64));
     assertEquals(384, shuffleBufferManager.getUsedMemory());
     shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(8, 64));
-    waitForFlush(shuffleFlushManager, appId, shuffleId, 5);
-    assertEquals(0, shuffleBufferManager.getUsedMemory());
+    // flush is done with partition buffer granularity, 4 buffers are enough to reach low water mark
+    waitForFlush(shuffleFlushManager, appId, shuffleId, 3 + 4, 96);
+    assertEquals(96, shuffleBufferManager.getUsedMemory());
     assertEquals(0, shuffleBufferManager.getInFlushSize());
 
     shuffleBufferManager.registerBuffer("bufferSizeTest1", shuffleId, 0, 1);
     shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(0, 32));
-    assertEquals(64, shuffleBufferManager.getUsedMemory());
+    assertEquals(160, shuffleBufferManager.getUsedMemory());
     shuffleBufferManager.cacheShuffleData("bufferSizeTest1", shuffleId, false, createData(0, 32));
-    assertEquals(128, shuffleBufferManager.getUsedMemory());
+    assertEquals(224, shuffleBufferManager.getUsedMemory());
     assertEquals(2, shuffleBufferManager.getBufferPool().keySet().size());
     shuffleBufferManager.removeBuffer(appId);
     assertEquals(64, shuffleBufferManager.getUsedMemory());
@@ -593,9 +695,128 @@ public class ShuffleBufferManagerTest extends BufferTestBase {
     assertEquals(0, shuffleBufferManager.getInFlushSize());
   }
 
+  @Test
+  public void grantSendCreditTest() throws Exception {
+    ShuffleServerConf serverConf = new ShuffleServerConf();
+    serverConf.addAll(conf);
+    serverConf.set(ShuffleServerConf.SERVER_SEND_CREDIT_ENABLED, true);
+    serverConf.set(ShuffleServerConf.SERVER_SEND_CREDIT_MAX, 64L);
+    serverConf.set(ShuffleServerConf.SERVER_SEND_CREDIT_EXPIRED, 60000L);
+    shuffleBufferManager = new ShuffleBufferManager(serverConf, mockShuffleFlushManager);
+    // the free buffer below the high watermark is 400 bytes, the latest credit of an app replaces
+    // its previous one
+    assertEquals(64, shuffleBufferManager.grantSendCredit("app1"));
+    assertEquals(64, shuffleBufferManager.grantSendCredit("app1"));
+    // the concurrent apps share the free buffer, the others can only send one by one
+    for (int i = 2; i <= 6; i++) {
+      assertEquals(64, shuffleBufferManager.grantSendCredit("app" + i));
+    }
+    assertEquals(16, shuffleBufferManager.grantSendCredit("app7"));
+    assertEquals(1, shuffleBufferManager.grantSendCredit("app8"));
+
+    // the credit used by the cached data isn't reserved anymore, the data takes its place
+    shuffleBufferManager.registerBuffer("app1", 1, 0, 0);
+    shuffleBufferManager.cacheShuffleData("app1", 1, false, createData(0, 32));
+    assertEquals(1, shuffleBufferManager.grantSendCredit("app8"));
+    assertEquals(64, shuffleBufferManager.grantSendCredit("app2"));
+    // the credit of the removed app is released
+    shuffleBufferManager.registerBuffer("app7", 1, 0, 0);
+    shuffleBufferManager.removeBuffer("app7");
+    assertEquals(16, shuffleBufferManager.grantSendCredit("app8"));
+
+    // the credits are available again once the granted ones are expired
+    serverConf.set(ShuffleServerConf.SERVER_SEND_CREDIT_EXPIRED, 100L);
+    shuffleBufferManager = new ShuffleBufferManager(serverConf, mockShuffleFlushManager);
+    shuffleBufferManager.registerBuffer("grantSendCreditTest", 1, 0, 0);
+    shuffleBufferManager.cacheShuffleData("grantSendCreditTest", 1, false, createData(0, 268));
+    assertEquals(64, shuffleBufferManager.grantSendCredit("app1"));
+    assertEquals(36, shuffleBufferManager.grantSendCredit("app2"));
+    assertEquals(1, shuffleBufferManager.grantSendCredit("app3"));
+    Thread.sleep(200);
+    assertEquals(64, shuffleBufferManager.grantSendCredit("app3"));
+  }
+
+  @Test
+  public void concurrentRequireMemoryAndCacheTest() throws Exception {
+    int threadNum = 16;
+    ExecutorService executor = Executors.newFixedThreadPool(threadNum);
+    try {
+      // capacity is 500, so exactly 500 requirements of 1 byte should succeed
+      List<Future<Integer>> futures = Lists.newArrayList();
+      for (int i = 0; i < threadNum; i++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  int succeed = 0;
+                  for (int j = 0; j < 100; j++) {
+                    if (shuffleBufferManager.requireMemory(1, true)) {
+                      succeed++;
+                    }
+                  }
+                  return succeed;
+                }));
+      }
+      int totalSucceed = 0;
+      for (Future<Integer> future : futures) {
+        totalSucceed += future.get();
+      }
+      assertEquals(500, totalSucceed);
+      assertEquals(500, shuffleBufferManager.getUsedMemory());
+      assertEquals(500, shuffleBufferManager.getPreAllocatedSize());
+      shuffleBufferManager.releaseMemory(500, false, true);
+
+      // cache data to different partitions concurrently without any flush
+      ShuffleServerConf serverConf = new ShuffleServerConf();
+      serverConf.addAll(conf);
+      serverConf.set(ShuffleServerConf.SERVER_BUFFER_CAPACITY, 1024L * 1024L * 1024L);
+      shuffleBufferManager = new ShuffleBufferManager(serverConf, mockShuffleFlushManager);
+      String appId = "concurrentRequireMemoryAndCacheTest";
+      int shuffleId = 1;
+      for (int i = 0; i < threadNum; i++) {
+        shuffleBufferManager.registerBuffer(appId, shuffleId, i, i);
+      }
+      futures.clear();
+      for (int i = 0; i < threadNum; i++) {
+        final int partitionId = i;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int j = 0; j < 100; j++) {
+                    shuffleBufferManager.cacheShuffleData(
+                        appId, shuffleId, false, createData(partitionId, 16));
+                  }
+                  return 0;
+                }));
+      }
+      for (Future<Integer> future : futures) {
+        future.get();
+      }
+      assertEquals(threadNum * 100 * 48, shuffleBufferManager.getUsedMemory());
+      assertEquals(
+          threadNum * 100 * 48,
+          shuffleBufferManager.getShuffleSizeMap().get(appId).get(shuffleId).get());
+      for (int i = 0; i < threadNum; i++) {
+        assertEquals(
+            100, shuffleBufferManager.getShuffleBuffer(appId, shuffleId, i).getBlocks().size());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   private void waitForFlush(
       ShuffleFlushManager shuffleFlushManager, String appId, int shuffleId, int expectedBlockNum)
       throws Exception {
+    waitForFlush(shuffleFlushManager, appId, shuffleId, expectedBlockNum, 0);
+  }
+
+  private void waitForFlush(
+      ShuffleFlushManager shuffleFlushManager,
+      String appId,
+      int shuffleId,
+      int expectedBlockNum,
+      long expectedUsedMemory)
+      throws Exception {
     int retry = 0;
     long committedCount = 0;
     do {
@@ -615,7 +836,7 @@ public class ShuffleBufferManagerTest extends BufferTestBase {
     // `shuffleBufferManager.getUsedMemory()` and `shuffleBufferManager.getInFlushSize()`.
     Awaitility.await()
         .atMost(Duration.ofSeconds(5))
-        .until(() -> shuffleBufferManager.getUsedMemory() == 0);
+        .until(() -> shuffleBufferManager.getUsedMemory() == expectedUsedMemory);
   }
 
   @Test
@@ -641,6 +862,94 @@ public class ShuffleBufferManagerTest extends BufferTestBase {
         shuffleBufferManager.getReadCapacity());
   }
 
+  @Test
+  public void offHeapBufferTest() {
+    ShuffleServerConf serverConf = new ShuffleServerConf();
+    serverConf.set(ShuffleServerConf.SERVER_BUFFER_OFF_HEAP_ENABLED, true);
+    serverConf.set(ShuffleServerConf.SERVER_BUFFER_CAPACITY_RATIO, 0.5);
+    serverConf.set(ShuffleServerConf.SERVER_READ_BUFFER_CAPACITY_RATIO, 0.3);
+    shuffleBufferManager = new ShuffleBufferManager(serverConf, mockShuffleFlushManager);
+    assertTrue(shuffleBufferManager.isOffHeap());
+    assertEquals(
+        (long) (PlatformDependent.maxDirectMemory() * 0.5), shuffleBufferManager.getCapacity());
+    assertEquals(
+        (long) (PlatformDependent.maxDirectMemory() * 0.3), shuffleBufferManager.getReadCapacity());
+
+    serverConf.addAll(conf);
+    serverConf.set(ShuffleServerConf.SERVER_BUFFER_OFF_HEAP_ENABLED, true);
+    shuffleBufferManager = new ShuffleBufferManager(serverConf, mockShuffleFlushManager);
+    assertEquals(500, shuffleBufferManager.getCapacity());
+    String appId = "offHeapBufferTest";
+    int shuffleId = 1;
+    shuffleBufferManager.registerBuffer(appId, shuffleId, 0, 1);
+    // the data created in heap will be moved to the off-heap arena
+    ShufflePartitionedData spd = createData(0, 16);
+    byte[] expectedData = ByteBufUtils.readBytes(spd.getBlockList()[0].getData());
+    assertFalse(spd.getBlockList()[0].getData().isDirect());
+    shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, spd);
+    assertEquals(48, shuffleBufferManager.getUsedMemory());
+    ShufflePartitionedBlock block =
+        shuffleBufferManager.getShuffleBuffer(appId, shuffleId, 0).getBlocks().get(0);
+    assertTrue(block.getData().isDirect());
+    assertArrayEquals(expectedData, ByteBufUtils.readBytes(block.getData()));
+
+    ShuffleDataResult sdr =
+        shuffleBufferManager.getShuffleData(appId, shuffleId, 0, Constants.INVALID_BLOCK_ID, 100);
+    assertArrayEquals(expectedData, sdr.getData());
+    sdr.release();
+    shuffleBufferManager.removeBuffer(appId);
+    assertEquals(0, shuffleBufferManager.getUsedMemory());
+    assertEquals(0, block.getData().refCnt());
+  }
+
+  @Test
+  public void requireReadMemoryAsyncTest() throws Exception {
+    conf.set(ShuffleServerConf.SERVER_READ_BUFFER_CAPACITY, 100L);
+    conf.set(ShuffleServerConf.SERVER_READ_MEMORY_REQUIRE_TIMEOUT, 500L);
+    shuffleBufferManager = new ShuffleBufferManager(conf, mockShuffleFlushManager);
+
+    assertTrue(shuffleBufferManager.requireReadMemoryAsync(60).isDone());
+    // the request larger than the capacity fails immediately
+    CompletableFuture<Boolean> tooLarge = shuffleBufferManager.requireReadMemoryAsync(100);
+    assertTrue(tooLarge.isDone());
+    assertFalse(tooLarge.get());
+
+    // the waiters are admitted in order as soon as the memory is released
+    CompletableFuture<Boolean> first = shuffleBufferManager.requireReadMemoryAsync(50);
+    CompletableFuture<Boolean> second = shuffleBufferManager.requireReadMemoryAsync(10);
+    assertFalse(first.isDone());
+    assertFalse(second.isDone());
+    shuffleBufferManager.releaseReadMemory(60);
+    assertTrue(first.get(1, TimeUnit.SECONDS));
+    assertTrue(second.get(1, TimeUnit.SECONDS));
+    assertEquals(0, (int) ShuffleServerMetrics.gaugeReadMemoryWaiterNum.get());
+
+    // the waiter fails when the memory isn't released in time
+    CompletableFuture<Boolean> timeout = shuffleBufferManager.requireReadMemoryAsync(50);
+    assertFalse(timeout.get(5, TimeUnit.SECONDS));
+    assertFalse(shuffleBufferManager.requireReadMemoryWithRetry(50));
+    shuffleBufferManager.releaseReadMemory(60);
+    assertTrue(shuffleBufferManager.requireReadMemoryWithRetry(50));
+    assertEquals(0, (int) ShuffleServerMetrics.gaugeReadMemoryWaiterNum.get());
+
+    // the interrupted waiting fails and keeps the interrupt status
+    Thread.currentThread().interrupt();
+    assertFalse(shuffleBufferManager.requireReadMemoryWithRetry(60));
+    assertTrue(Thread.interrupted());
+    // the memory admitted to the abandoned waiter is given back
+    shuffleBufferManager.releaseReadMemory(50);
+    assertEquals(0, (int) ShuffleServerMetrics.gaugeReadMemoryWaiterNum.get());
+    assertTrue(shuffleBufferManager.requireReadMemoryWithRetry(90));
+
+    // the waiters fail once the manager is closed, so do the later ones
+    CompletableFuture<Boolean> closed = shuffleBufferManager.requireReadMemoryAsync(50);
+    assertFalse(closed.isDone());
+    shuffleBufferManager.close();
+    assertFalse(closed.get(1, TimeUnit.SECONDS));
+    assertFalse(shuffleBufferManager.requireReadMemoryAsync(50).get(1, TimeUnit.SECONDS));
+    assertEquals(0, (int) ShuffleServerMetrics.gaugeReadMemoryWaiterNum.get());
+  }
+
   @Test
   public void flushBufferTestWhenNotSelectedStorage(@TempDir File tmpDir) throws Exception {
     // In this test, rss.server.single.buffer.flush.threshold and
@@ -35,7 +35,9 @@ import org.apache.uniffle.server.ShuffleDataFlushEvent;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ShuffleBufferTest extends BufferTestBase {
@@ -82,6 +84,26 @@ public class ShuffleBufferTest extends BufferTestBase {
     assertEquals(0, shuffleBuffer.getBlocks().size());
   }
 
+  @Test
+  public void toFlushEventWithoutCopyTest() {
+    ShuffleBuffer shuffleBuffer = new ShuffleBuffer(100);
+    shuffleBuffer.append(createData(10));
+    shuffleBuffer.append(createData(10));
+    List<ShufflePartitionedBlock> cachedBlocks = shuffleBuffer.getBlocks();
+    ShuffleDataFlushEvent event = shuffleBuffer.toFlushEvent("appId", 0, 0, 1, null);
+    // the cached blocks are handed over to the event and the in-flush map
+    assertSame(cachedBlocks, event.getShuffleBlocks());
+    assertSame(cachedBlocks, shuffleBuffer.getInFlushBlockMap().get(event.getEventId()));
+    assertEquals(2, event.getShuffleBlocks().size());
+    assertNotSame(cachedBlocks, shuffleBuffer.getBlocks());
+    assertEquals(0, shuffleBuffer.getBlocks().size());
+
+    // new blocks won't be appended to the handed over list
+    shuffleBuffer.append(createData(10));
+    assertEquals(2, event.getShuffleBlocks().size());
+    assertEquals(1, shuffleBuffer.getBlocks().size());
+  }
+
   @Test
   public void getShuffleDataWithExpectedTaskIdsFilterTest() {
     /** case1: all blocks in cached(or in flushed map) and size < readBufferSize */
@@ -562,6 +584,43 @@ public class ShuffleBufferTest extends BufferTestBase {
     assertArrayEquals(expectedData, sdr.getData());
   }
 
+  @Test
+  public void getShuffleDataPageByPageTest() {
+    ShuffleBuffer shuffleBuffer = new ShuffleBuffer(2000);
+    List<ShufflePartitionedData> spds = Lists.newArrayList();
+    for (int i = 0; i < 50; i++) {
+      ShufflePartitionedData spd = createData(10);
+      spds.add(spd);
+      shuffleBuffer.append(spd);
+      // make the blocks spread over several in-flush events and the cached blocks
+      if (i % 20 == 19) {
+        shuffleBuffer.toFlushEvent("appId", 0, 0, 1, null);
+      }
+    }
+    assertEquals(2, shuffleBuffer.getInFlushBlockMap().size());
+    assertEquals(10, shuffleBuffer.getBlocks().size());
+
+    // every read should resume from the block right after lastBlockId
+    long lastBlockId = Constants.INVALID_BLOCK_ID;
+    for (int i = 0; i < 50; i++) {
+      ShuffleDataResult sdr = shuffleBuffer.getShuffleData(lastBlockId, 10);
+      assertEquals(1, sdr.getBufferSegments().size());
+      assertEquals(
+          spds.get(i).getBlockList()[0].getBlockId(), sdr.getBufferSegments().get(0).getBlockId());
+      assertArrayEquals(getExpectedData(spds.get(i)), sdr.getData());
+      lastBlockId = sdr.getBufferSegments().get(0).getBlockId();
+    }
+    assertEquals(0, shuffleBuffer.getShuffleData(lastBlockId, 10).getBufferSegments().size());
+
+    // the index of flushed event should be dropped with the event
+    long firstEventId = shuffleBuffer.getInFlushBlockMap().keySet().iterator().next();
+    shuffleBuffer.clearInFlushBuffer(firstEventId);
+    ShuffleDataResult sdr =
+        shuffleBuffer.getShuffleData(spds.get(5).getBlockList()[0].getBlockId(), 10);
+    assertEquals(
+        spds.get(20).getBlockList()[0].getBlockId(), sdr.getBufferSegments().get(0).getBlockId());
+  }
+
   private byte[] getExpectedData(ShufflePartitionedData... spds) {
     int size = 0;
     for (ShufflePartitionedData spd : spds) {
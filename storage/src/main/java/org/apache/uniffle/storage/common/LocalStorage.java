@@ -23,6 +23,7 @@ import java.nio.file.FileStore;
 import java.nio.file.Files;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -30,15 +31,27 @@ import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.uniffle.common.exception.FileNotFoundException;
 import org.apache.uniffle.common.exception.RssException;
 import org.apache.uniffle.common.storage.StorageMedia;
+import org.apache.uniffle.common.util.Constants;
+import org.apache.uniffle.common.util.JavaUtils;
 import org.apache.uniffle.common.util.RssUtils;
 import org.apache.uniffle.storage.handler.api.ServerReadHandler;
 import org.apache.uniffle.storage.handler.api.ShuffleWriteHandler;
+import org.apache.uniffle.storage.handler.impl.LocalFileIndexCache;
+import org.apache.uniffle.storage.handler.impl.LocalFileReadAheadCache;
 import org.apache.uniffle.storage.handler.impl.LocalFileServerReadHandler;
 import org.apache.uniffle.storage.handler.impl.LocalFileWriteHandler;
+import org.apache.uniffle.storage.handler.impl.LocalFileWriterCache;
+import org.apache.uniffle.storage.handler.impl.LocalMergedFile;
+import org.apache.uniffle.storage.handler.impl.LocalMergedFileServerReadHandler;
+import org.apache.uniffle.storage.handler.impl.LocalMergedFileWriteHandler;
 import org.apache.uniffle.storage.request.CreateShuffleReadHandlerRequest;
 import org.apache.uniffle.storage.request.CreateShuffleWriteHandlerRequest;
+import org.apache.uniffle.storage.util.FileSyncPolicy;
+import org.apache.uniffle.storage.util.LocalFileLayout;
+import org.apache.uniffle.storage.util.ShuffleStorageUtils;
 
 public class LocalStorage extends AbstractStorage {
 
@@ -54,6 +67,13 @@ public class LocalStorage extends AbstractStorage {
   private final StorageMedia media;
   private boolean isSpaceEnough = true;
   private volatile boolean isCorrupted = false;
+  private final LocalFileWriterCache writerCache;
+  private final LocalFileIndexCache indexCache;
+  private final LocalFileReadAheadCache readAheadCache;
+  private final FileSyncPolicy writerSyncPolicy;
+  private final LocalFileLayout layout;
+  // shuffleKey -> the merged file of the shuffle in this storage
+  private final Map<String, LocalMergedFile> mergedFiles = JavaUtils.newConcurrentMap();
 
   private LocalStorage(Builder builder) {
     this.basePath = builder.basePath;
@@ -61,6 +81,20 @@ public class LocalStorage extends AbstractStorage {
     this.lowWaterMarkOfWrite = builder.lowWaterMarkOfWrite;
     this.capacity = builder.capacity;
     this.media = builder.media;
+    this.writerCache =
+        builder.writerCacheSize > 0
+            ? new LocalFileWriterCache(
+                builder.writerCacheSize, builder.writerIdleTimeoutMs, builder.writerSyncPolicy)
+            : null;
+    this.indexCache =
+        builder.indexCacheCapacity > 0 ? new LocalFileIndexCache(builder.indexCacheCapacity) : null;
+    this.readAheadCache =
+        builder.readAheadCacheCapacity > 0
+            ? new LocalFileReadAheadCache(
+                builder.readAheadCacheCapacity, builder.readAheadChunkSize)
+            : null;
+    this.writerSyncPolicy = builder.writerSyncPolicy;
+    this.layout = builder.layout;
 
     File baseFolder = new File(basePath);
     try {
@@ -122,24 +156,54 @@ public class LocalStorage extends AbstractStorage {
 
   @Override
   ShuffleWriteHandler newWriteHandler(CreateShuffleWriteHandlerRequest request) {
+    if (layout == LocalFileLayout.MERGED) {
+      String shuffleKey = RssUtils.generateShuffleKey(request.getAppId(), request.getShuffleId());
+      LocalMergedFile mergedFile =
+          mergedFiles.computeIfAbsent(
+              shuffleKey,
+              key ->
+                  new LocalMergedFile(
+                      ShuffleStorageUtils.getFullShuffleDataFolder(basePath, key),
+                      request.getFileNamePrefix(),
+                      writerSyncPolicy));
+      return new LocalMergedFileWriteHandler(mergedFile, request.getStartPartition());
+    }
     return new LocalFileWriteHandler(
         request.getAppId(),
         request.getShuffleId(),
         request.getStartPartition(),
         request.getEndPartition(),
         basePath,
-        request.getFileNamePrefix());
+        request.getFileNamePrefix(),
+        writerCache,
+        indexCache);
   }
 
   @Override
   protected ServerReadHandler newReadHandler(CreateShuffleReadHandlerRequest request) {
+    if (layout == LocalFileLayout.MERGED) {
+      String shuffleKey = RssUtils.generateShuffleKey(request.getAppId(), request.getShuffleId());
+      LocalMergedFile mergedFile = mergedFiles.get(shuffleKey);
+      if (mergedFile == null) {
+        // the shuffle doesn't exist in this storage, skip
+        throw new FileNotFoundException("Can't find merged file of " + shuffleKey);
+      }
+      int[] range =
+          ShuffleStorageUtils.getPartitionRange(
+              request.getPartitionId(),
+              request.getPartitionNumPerRange(),
+              request.getPartitionNum());
+      return new LocalMergedFileServerReadHandler(mergedFile, range[0]);
+    }
     return new LocalFileServerReadHandler(
         request.getAppId(),
         request.getShuffleId(),
         request.getPartitionId(),
         request.getPartitionNumPerRange(),
         request.getPartitionNum(),
-        basePath);
+        basePath,
+        indexCache,
+        readAheadCache);
   }
 
   @Override
@@ -195,6 +259,47 @@ public class LocalStorage extends AbstractStorage {
     return media;
   }
 
+  @Override
+  public void removeHandlers(String appId) {
+    super.removeHandlers(appId);
+    String prefix = appId + Constants.KEY_SPLIT_CHAR;
+    mergedFiles
+        .entrySet()
+        .removeIf(
+            entry -> {
+              if (entry.getKey().startsWith(prefix)) {
+                entry.getValue().close();
+                return true;
+              }
+              return false;
+            });
+    String appFolder = ShuffleStorageUtils.getFullShuffleDataFolder(basePath, appId);
+    if (writerCache != null) {
+      writerCache.invalidateAll(appFolder);
+    }
+    if (indexCache != null) {
+      indexCache.invalidateAll(appFolder);
+    }
+    if (readAheadCache != null) {
+      readAheadCache.invalidateAll(appFolder);
+    }
+  }
+
+  /** Close the opened files and the caches of this storage when the server is stopped. */
+  public void close() {
+    mergedFiles.values().forEach(LocalMergedFile::close);
+    mergedFiles.clear();
+    if (writerCache != null) {
+      writerCache.close();
+    }
+    if (indexCache != null) {
+      indexCache.close();
+    }
+    if (readAheadCache != null) {
+      readAheadCache.close();
+    }
+  }
+
   // This is the only place to remove shuffle metadata, clean and gc thread may remove
   // the shuffle metadata concurrently or serially. Force uploader thread may update the
   // shuffle size so gc thread must acquire write lock before updating disk size, and force
@@ -202,6 +307,21 @@ public class LocalStorage extends AbstractStorage {
   // add the shuffle key back to the expiredShuffleKeys if get lock but fail to acquire write lock.
   public void removeResources(String shuffleKey) {
     LOG.info("Start to remove resource of {}", shuffleKey);
+    LocalMergedFile mergedFile = mergedFiles.remove(shuffleKey);
+    if (mergedFile != null) {
+      mergedFile.close();
+    }
+    // the shuffle key is the same as the relative path of the shuffle folder
+    String shuffleFolder = ShuffleStorageUtils.getFullShuffleDataFolder(basePath, shuffleKey);
+    if (writerCache != null) {
+      writerCache.invalidateAll(shuffleFolder);
+    }
+    if (indexCache != null) {
+      indexCache.invalidateAll(shuffleFolder);
+    }
+    if (readAheadCache != null) {
+      readAheadCache.invalidateAll(shuffleFolder);
+    }
     try {
       metaData.updateDiskSize(-metaData.getShuffleSize(shuffleKey));
       metaData.remoteShuffle(shuffleKey);
@@ -250,6 +370,13 @@ public class LocalStorage extends AbstractStorage {
     private double highWaterMarkOfWrite;
     private String basePath;
     private StorageMedia media;
+    private long writerCacheSize;
+    private long writerIdleTimeoutMs;
+    private FileSyncPolicy writerSyncPolicy = FileSyncPolicy.NONE;
+    private long indexCacheCapacity;
+    private long readAheadCacheCapacity;
+    private int readAheadChunkSize;
+    private LocalFileLayout layout = LocalFileLayout.PARTITION;
 
     private Builder() {}
 
@@ -283,6 +410,41 @@ public class LocalStorage extends AbstractStorage {
       return this;
     }
 
+    public Builder writerCacheSize(long writerCacheSize) {
+      this.writerCacheSize = writerCacheSize;
+      return this;
+    }
+
+    public Builder writerIdleTimeoutMs(long writerIdleTimeoutMs) {
+      this.writerIdleTimeoutMs = writerIdleTimeoutMs;
+      return this;
+    }
+
+    public Builder writerSyncPolicy(FileSyncPolicy writerSyncPolicy) {
+      this.writerSyncPolicy = writerSyncPolicy;
+      return this;
+    }
+
+    public Builder indexCacheCapacity(long indexCacheCapacity) {
+      this.indexCacheCapacity = indexCacheCapacity;
+      return this;
+    }
+
+    public Builder readAheadCacheCapacity(long readAheadCacheCapacity) {
+      this.readAheadCacheCapacity = readAheadCacheCapacity;
+      return this;
+    }
+
+    public Builder readAheadChunkSize(int readAheadChunkSize) {
+      this.readAheadChunkSize = readAheadChunkSize;
+      return this;
+    }
+
+    public Builder layout(LocalFileLayout layout) {
+      this.layout = layout;
+      return this;
+    }
+
     public LocalStorage build() {
       return new LocalStorage(this);
     }
@@ -19,11 +19,15 @@ package org.apache.uniffle.storage.handler.impl;
 
 import java.io.Closeable;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 
+import io.netty.buffer.ByteBuf;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IOUtils;
@@ -46,15 +50,33 @@ public class HadoopFileWriter implements FileWriter, Closeable {
 
   public HadoopFileWriter(FileSystem fileSystem, Path path, Configuration hadoopConf)
       throws IOException {
+    this(fileSystem, path, hadoopConf, false);
+  }
+
+  /**
+   * Create the writer of the file, if the file is known to exist, e.g. it's written by the same
+   * writer before, it's appended without asking the NameNode for its status.
+   */
+  public HadoopFileWriter(
+      FileSystem fileSystem, Path path, Configuration hadoopConf, boolean fileExists)
+      throws IOException {
     this.path = path;
     this.hadoopConf = hadoopConf;
     this.fileSystem = fileSystem;
-    initStream();
+    initStream(fileExists);
   }
 
-  private void initStream() throws IOException, IllegalStateException {
+  private void initStream(boolean fileExists) throws IOException, IllegalStateException {
     final FileSystem writerFs = fileSystem;
-    if (writerFs.isFile(path)) {
+    FileStatus fileStatus = null;
+    if (!fileExists) {
+      try {
+        fileStatus = writerFs.getFileStatus(path);
+      } catch (FileNotFoundException e) {
+        // the file is created below
+      }
+    }
+    if (fileExists || (fileStatus != null && fileStatus.isFile())) {
       if (hadoopConf.getBoolean("dfs.support.append", true)) {
         fsDataOutputStream = writerFs.append(path);
         nextOffset = fsDataOutputStream.getPos();
@@ -63,7 +85,7 @@ public class HadoopFileWriter implements FileWriter, Closeable {
         LOG.error(msg);
         throw new IllegalStateException(msg);
       }
-    } else if (writerFs.isDirectory(path)) {
+    } else if (fileStatus != null && fileStatus.isDirectory()) {
       String msg = path + " is a directory!";
       LOG.error(msg);
       throw new IllegalStateException(msg);
@@ -94,6 +116,28 @@ public class HadoopFileWriter implements FileWriter, Closeable {
     nextOffset = fsDataOutputStream.getPos();
   }
 
+  /** Write the readable bytes of the buffer without copying them to a new array. */
+  public void writeData(ByteBuf buf) throws IOException {
+    if (buf != null && buf.readableBytes() > 0) {
+      buf.getBytes(buf.readerIndex(), fsDataOutputStream, buf.readableBytes());
+      nextOffset = fsDataOutputStream.getPos();
+    }
+  }
+
+  /** Write the index of all the segments to the stream at once. */
+  public void writeIndex(List<FileBasedShuffleSegment> segments) throws IOException {
+    ByteBuffer index = ByteBuffer.allocate(segments.size() * FileBasedShuffleSegment.SEGMENT_SIZE);
+    for (FileBasedShuffleSegment segment : segments) {
+      index.putLong(segment.getOffset());
+      index.putInt(segment.getLength());
+      index.putInt(segment.getUncompressLength());
+      index.putLong(segment.getCrc());
+      index.putLong(segment.getBlockId());
+      index.putLong(segment.getTaskAttemptId());
+    }
+    fsDataOutputStream.write(index.array(), 0, index.position());
+  }
+
   public void writeIndex(FileBasedShuffleSegment segment) throws IOException {
     fsDataOutputStream.writeLong(segment.getOffset());
     fsDataOutputStream.writeInt(segment.getLength());
@@ -18,6 +18,7 @@
 package org.apache.uniffle.storage.handler.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -32,11 +33,16 @@ import org.slf4j.LoggerFactory;
 import org.apache.uniffle.common.ShufflePartitionedBlock;
 import org.apache.uniffle.common.exception.RssException;
 import org.apache.uniffle.common.filesystem.HadoopFilesystemProvider;
-import org.apache.uniffle.common.util.ByteBufUtils;
 import org.apache.uniffle.storage.common.FileBasedShuffleSegment;
 import org.apache.uniffle.storage.handler.api.ShuffleWriteHandler;
 import org.apache.uniffle.storage.util.ShuffleStorageUtils;
 
+/**
+ * Writes the blocks of a flush to the data file of the prefix, then their index to the index file
+ * at once. The blocks are already serialized when they're flushed, so the writing of a flush isn't
+ * overlapped with the preparing of the next one: the only work before the HDFS write is building
+ * the index, and the flushes of the other partitions are written concurrently by the flush pool.
+ */
 public class HadoopShuffleWriteHandler implements ShuffleWriteHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(HadoopShuffleWriteHandler.class);
@@ -46,6 +52,8 @@ public class HadoopShuffleWriteHandler implements ShuffleWriteHandler {
   private String fileNamePrefix;
   private Lock writeLock = new ReentrantLock();
   private int failTimes = 0;
+  // the files of this fail times are created by this handler, so they are appended directly
+  private int createdFailTimes = -1;
   private String user;
   private FileSystem fileSystem;
 
@@ -120,13 +128,15 @@ public class HadoopShuffleWriteHandler implements ShuffleWriteHandler {
           ShuffleStorageUtils.generateDataFileName(fileNamePrefix + "_" + failTimes);
       String indexFileName =
           ShuffleStorageUtils.generateIndexFileName(fileNamePrefix + "_" + failTimes);
-      try (HadoopFileWriter dataWriter = createWriter(dataFileName);
-          HadoopFileWriter indexWriter = createWriter(indexFileName)) {
+      boolean filesExist = createdFailTimes == failTimes;
+      try (HadoopFileWriter dataWriter = createWriter(dataFileName, filesExist);
+          HadoopFileWriter indexWriter = createWriter(indexFileName, filesExist)) {
+        List<FileBasedShuffleSegment> segments = new ArrayList<>(shuffleBlocks.size());
         for (ShufflePartitionedBlock block : shuffleBlocks) {
           long blockId = block.getBlockId();
           long crc = block.getCrc();
           long startOffset = dataWriter.nextOffset();
-          dataWriter.writeData(ByteBufUtils.readBytes(block.getData()));
+          dataWriter.writeData(block.getData());
 
           FileBasedShuffleSegment segment =
               new FileBasedShuffleSegment(
@@ -136,8 +146,11 @@ public class HadoopShuffleWriteHandler implements ShuffleWriteHandler {
                   block.getUncompressLength(),
                   crc,
                   block.getTaskAttemptId());
-          indexWriter.writeIndex(segment);
+          segments.add(segment);
         }
+        // the index of the blocks is written after all the data, so it never points to the data
+        // which isn't written yet
+        indexWriter.writeIndex(segments);
         if (LOG.isDebugEnabled()) {
           LOG.debug(
               "Write handler inside cost {} ms for {}",
@@ -156,6 +169,7 @@ public class HadoopShuffleWriteHandler implements ShuffleWriteHandler {
         failTimes++;
         throw new RssException(e);
       }
+      createdFailTimes = failTimes;
     } finally {
       writeLock.unlock();
     }
@@ -170,9 +184,13 @@ public class HadoopShuffleWriteHandler implements ShuffleWriteHandler {
 
   @VisibleForTesting
   public HadoopFileWriter createWriter(String fileName) throws IOException, IllegalStateException {
+    return createWriter(fileName, false);
+  }
+
+  private HadoopFileWriter createWriter(String fileName, boolean fileExists)
+      throws IOException, IllegalStateException {
     Path path = new Path(basePath, fileName);
-    HadoopFileWriter writer = new HadoopFileWriter(fileSystem, path, hadoopConf);
-    return writer;
+    return new HadoopFileWriter(fileSystem, path, hadoopConf, fileExists);
   }
 
   @VisibleForTesting
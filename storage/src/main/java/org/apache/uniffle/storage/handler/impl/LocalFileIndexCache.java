@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.storage.handler.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.uniffle.common.ShuffleIndexResult;
+import org.apache.uniffle.common.exception.FileNotFoundException;
+import org.apache.uniffle.common.exception.RssException;
+import org.apache.uniffle.storage.common.FileBasedShuffleSegment;
+
+/**
+ * A size bounded cache of the local index files read into the heap, so the index which is fetched
+ * again and again by the readers isn't read from the file for every request. The writers must mark
+ * the index stale after appending to it, then only the appended entries are read on the next read.
+ */
+public class LocalFileIndexCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LocalFileIndexCache.class);
+
+  // index file path -> cached index
+  private final Cache<String, CachedIndex> indexes;
+
+  public LocalFileIndexCache(long capacity) {
+    this.indexes =
+        CacheBuilder.newBuilder()
+            .maximumWeight(capacity)
+            .weigher((Weigher<String, CachedIndex>) (path, index) -> index.weight())
+            .build();
+  }
+
+  /**
+   * Get all the index entries of the index file. The returned length of the data file covers all
+   * the data indexed by them.
+   */
+  public ShuffleIndexResult get(File indexFile, File dataFile) {
+    String path = indexFile.getPath();
+    CachedIndex index;
+    try {
+      index = indexes.get(path, CachedIndex::new);
+    } catch (ExecutionException e) {
+      throw new RssException(e.getCause());
+    }
+    if (index.refreshIfStale(indexFile, dataFile)) {
+      // update the weight of the refreshed index unless it's removed just now
+      indexes.asMap().replace(path, index, index);
+    }
+    return index.read();
+  }
+
+  /** Called after appending to the index file, so the appended entries are visible next time. */
+  public void invalidate(File indexFile) {
+    CachedIndex index = indexes.getIfPresent(indexFile.getPath());
+    if (index != null) {
+      index.markStale();
+    }
+  }
+
+  /** Drop the indexes of the files under the folder, which is going to be deleted. */
+  public void invalidateAll(String folder) {
+    String prefix = new File(folder).getPath() + File.separator;
+    indexes.asMap().keySet().removeIf(path -> path.startsWith(prefix));
+  }
+
+  public void close() {
+    indexes.invalidateAll();
+  }
+
+  private static class CachedIndex {
+    private volatile boolean stale = true;
+    // the entries are only appended, so the returned views of the array are never changed
+    private byte[] index = new byte[0];
+    private int len;
+    private long dataFileLen;
+
+    void markStale() {
+      stale = true;
+    }
+
+    synchronized boolean refreshIfStale(File indexFile, File dataFile) {
+      if (!stale) {
+        return false;
+      }
+      // clear the flag before checking the files, so the appending after that is not missed
+      stale = false;
+      try {
+        long indexFileSize = indexFile.length();
+        int indexNum = (int) (indexFileSize / FileBasedShuffleSegment.SEGMENT_SIZE);
+        int newLen = indexNum * FileBasedShuffleSegment.SEGMENT_SIZE;
+        if (indexFileSize != newLen) {
+          LOG.warn(
+              "Maybe the index file: {} is being written due to the shuffle-buffer flushing.",
+              indexFile);
+        }
+        // get dataFileSize for read segment generation in DataSkippableReadHandler#readShuffleData
+        dataFileLen = dataFile.length();
+        if (newLen < len) {
+          // the file is recreated, read it from the beginning
+          index = new byte[0];
+          len = 0;
+        }
+        if (newLen > len) {
+          readAppended(indexFile, newLen);
+        }
+        return true;
+      } catch (NoSuchFileException e) {
+        stale = true;
+        throw new FileNotFoundException("Can't find index file " + indexFile, e);
+      } catch (IOException e) {
+        stale = true;
+        throw new RssException("Error in reading index file " + indexFile, e);
+      }
+    }
+
+    private void readAppended(File indexFile, int newLen) throws IOException {
+      // a new array is allocated to grow, so the views of the old one stay unchanged
+      byte[] target =
+          newLen > index.length ? Arrays.copyOf(index, Math.max(newLen, index.length * 2)) : index;
+      ByteBuffer buffer = ByteBuffer.wrap(target, len, newLen - len);
+      try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer, buffer.position()) < 0) {
+            throw new IOException("Unexpected end of index file " + indexFile);
+          }
+        }
+      }
+      index = target;
+      len = newLen;
+    }
+
+    synchronized ShuffleIndexResult read() {
+      return new ShuffleIndexResult(
+          ByteBuffer.wrap(index, 0, len).slice().asReadOnlyBuffer(), dataFileLen);
+    }
+
+    synchronized int weight() {
+      return index.length;
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.storage.handler.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.uniffle.common.util.ThreadUtils;
+
+/**
+ * A size bounded cache of the local shuffle data which is read ahead of the readers. The data files
+ * are split into the fixed size chunks, once a reader is found reading a file sequentially, the
+ * next chunks are read asynchronously while the current data is being sent, so the next requests
+ * are served from the memory instead of waiting for the disk. The read ahead also warms up the page
+ * cache of the file, as java has no way to advise the OS about the access pattern.
+ */
+public class LocalFileReadAheadCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LocalFileReadAheadCache.class);
+  // the read ahead is skipped if the disk can't catch up with it
+  private static final int MAX_PENDING_READS = 16;
+
+  // data file path + chunk index -> data of the chunk
+  private final Cache<String, byte[]> chunks;
+  private final Set<String> loadingChunks = ConcurrentHashMap.newKeySet();
+  private final int chunkSize;
+  // the chunks read before the files are deleted are dropped
+  private final AtomicLong generation = new AtomicLong();
+  private final ThreadPoolExecutor executor;
+
+  public LocalFileReadAheadCache(long capacity, int chunkSize) {
+    this.chunkSize = chunkSize;
+    this.chunks =
+        CacheBuilder.newBuilder()
+            .maximumWeight(capacity)
+            .weigher((Weigher<String, byte[]>) (key, data) -> data.length)
+            .expireAfterAccess(60, TimeUnit.SECONDS)
+            .build();
+    this.executor =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(MAX_PENDING_READS),
+            ThreadUtils.getThreadFactory("localFileReadAhead"));
+  }
+
+  /** Get the data if all of it is read ahead, or null to read it from the file. */
+  public ByteBuffer get(File dataFile, long offset, int length) {
+    if (length <= 0) {
+      return null;
+    }
+    long firstChunk = offset / chunkSize;
+    long lastChunk = (offset + length - 1) / chunkSize;
+    if (firstChunk == lastChunk) {
+      byte[] data = chunks.getIfPresent(key(dataFile, firstChunk));
+      int start = (int) (offset - firstChunk * chunkSize);
+      if (data == null || data.length < start + length) {
+        return null;
+      }
+      return ByteBuffer.wrap(data, start, length).slice();
+    }
+    // the data across the chunks is copied together
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    for (long i = firstChunk; i <= lastChunk; i++) {
+      byte[] data = chunks.getIfPresent(key(dataFile, i));
+      int start = (int) (offset + buffer.position() - i * chunkSize);
+      int len = Math.min(chunkSize - start, buffer.remaining());
+      if (data == null || data.length < start + len) {
+        return null;
+      }
+      buffer.put(data, start, len);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /** Read the chunks of the data asynchronously, which is going to be read sequentially. */
+  public void readAhead(File dataFile, long offset, int length) {
+    long firstChunk = offset / chunkSize;
+    long lastChunk = (offset + Math.max(length, 1) - 1) / chunkSize;
+    for (long i = firstChunk; i <= lastChunk; i++) {
+      String key = key(dataFile, i);
+      if (chunks.getIfPresent(key) != null || !loadingChunks.add(key)) {
+        continue;
+      }
+      long chunk = i;
+      long expectedGeneration = generation.get();
+      try {
+        executor.execute(
+            () -> {
+              try {
+                byte[] data = readChunk(dataFile, chunk);
+                if (data != null && generation.get() == expectedGeneration) {
+                  chunks.put(key, data);
+                }
+              } finally {
+                loadingChunks.remove(key);
+              }
+            });
+      } catch (RejectedExecutionException e) {
+        // too many pending reads, the chunk can be read ahead next time
+        loadingChunks.remove(key);
+        break;
+      }
+    }
+  }
+
+  private byte[] readChunk(File dataFile, long chunk) {
+    long position = chunk * chunkSize;
+    try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+      // the chunk at the end of the file may be being written, which is read from the file later
+      if (channel.size() < position + chunkSize) {
+        return null;
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0) {
+          return null;
+        }
+      }
+      return buffer.array();
+    } catch (IOException e) {
+      LOG.warn("Failed to read ahead {} at {}", dataFile, position, e);
+      return null;
+    }
+  }
+
+  /** Drop the data of the files under the folder, which is going to be deleted. */
+  public void invalidateAll(String folder) {
+    generation.incrementAndGet();
+    String prefix = new File(folder).getPath() + File.separator;
+    chunks.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+  }
+
+  public void close() {
+    executor.shutdownNow();
+    chunks.invalidateAll();
+  }
+
+  private static String key(File dataFile, long chunk) {
+    return dataFile.getPath() + "#" + chunk;
+  }
+}
@@ -18,58 +18,80 @@
 package org.apache.uniffle.storage.handler.impl;
 
 import java.io.Closeable;
-import java.io.DataInputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.uniffle.common.exception.RssException;
 import org.apache.uniffle.storage.api.FileReader;
 
+/**
+ * Read the local file by the positional reads of a file channel, which don't change the position of
+ * the channel, so the reader can be used by multiple threads concurrently.
+ */
 public class LocalFileReader implements FileReader, Closeable {
 
   private static final Logger LOG = LoggerFactory.getLogger(LocalFileReader.class);
   private String path;
-  private DataInputStream dataInputStream;
+  private FileChannel channel;
+  // the position to read the rest of the file from, which isn't changed by the positional reads
+  private long position;
 
   public LocalFileReader(String path) throws Exception {
     this.path = path;
-    dataInputStream = new DataInputStream(new FileInputStream(path));
+    channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
   }
 
   public byte[] read(long offset, int length) {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    if (!read(offset, buffer)) {
+      return new byte[0];
+    }
+    return buffer.array();
+  }
+
+  public synchronized byte[] read() {
+    return readToEnd(false).array();
+  }
+
+  @Override
+  public ByteBuffer readAsByteBuffer(long offset, int length) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+    if (!read(offset, buffer)) {
+      return ByteBuffer.allocateDirect(0);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  @Override
+  public synchronized ByteBuffer readAsByteBuffer() {
+    return readToEnd(true);
+  }
+
+  /**
+   * Fill the remaining of the buffer with the data from the offset, the buffer may be a direct one
+   * from a pool of the caller. The position of the buffer is moved forward by the read length.
+   *
+   * @return whether the buffer is filled
+   */
+  public boolean read(long offset, ByteBuffer buffer) {
+    int length = buffer.remaining();
     try {
-      long targetSkip = offset;
-      // comments from skip API:
-      // The skip method may, for a variety of reasons,
-      // end up skipping over some smaller number of bytes, possibly 0
-      // the result should be checked and try again until skip expectation length
-      while (targetSkip > 0) {
-        long realSkip = dataInputStream.skip(targetSkip);
-        if (realSkip == -1) {
-          throw new RssException("Unexpected EOF when skip bytes");
-        }
-        targetSkip -= realSkip;
-        if (targetSkip > 0) {
-          LOG.warn(
-              "Got unexpected skip for path:"
-                  + path
-                  + " with offset["
-                  + offset
-                  + "], length["
-                  + length
-                  + "], remain["
-                  + targetSkip
-                  + "]");
+      long readPosition = offset;
+      while (buffer.hasRemaining()) {
+        int read = channel.read(buffer, readPosition);
+        if (read < 0) {
+          throw new RssException("Unexpected EOF at " + readPosition);
         }
+        readPosition += read;
       }
-      byte[] buf = new byte[length];
-      dataInputStream.readFully(buf);
-      return buf;
+      return true;
     } catch (Exception e) {
       LOG.warn(
           "Can't read data for path:"
@@ -81,33 +103,53 @@ public class LocalFileReader implements FileReader, Closeable {
               + "]",
           e);
     }
-    return new byte[0];
+    return false;
   }
 
-  public byte[] read() {
+  /**
+   * Read the multiple ranges of the file at once, e.g. the segments of several blocks, every buffer
+   * is filled with the data from the offset of the same index.
+   *
+   * @return whether all the buffers are filled
+   */
+  public boolean read(long[] offsets, ByteBuffer[] buffers) {
+    if (offsets.length != buffers.length) {
+      throw new IllegalArgumentException(
+          "The number of offsets " + offsets.length + " isn't " + buffers.length);
+    }
+    for (int i = 0; i < offsets.length; i++) {
+      if (!read(offsets[i], buffers[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private ByteBuffer readToEnd(boolean direct) {
     try {
-      return IOUtils.toByteArray(dataInputStream);
+      long length = channel.size() - position;
+      if (length > Integer.MAX_VALUE) {
+        LOG.warn("File " + path + " length is too long");
+        return direct ? ByteBuffer.allocateDirect(0) : ByteBuffer.allocate(0);
+      }
+      ByteBuffer buffer =
+          direct ? ByteBuffer.allocateDirect((int) length) : ByteBuffer.allocate((int) length);
+      if (read(position, buffer)) {
+        position += length;
+        buffer.flip();
+        return buffer;
+      }
     } catch (IOException e) {
       LOG.error("Fail to read all data from {}", path, e);
-      return new byte[0];
     }
-  }
-
-  @Override
-  public ByteBuffer readAsByteBuffer(long offset, int length) {
-    throw new UnsupportedOperationException("Local file reader don't support off heap read now");
-  }
-
-  @Override
-  public ByteBuffer readAsByteBuffer() {
-    throw new UnsupportedOperationException("Local file reader don't support off heap read now");
+    return direct ? ByteBuffer.allocateDirect(0) : ByteBuffer.allocate(0);
   }
 
   @Override
   public synchronized void close() {
-    if (dataInputStream != null) {
+    if (channel != null) {
       try {
-        dataInputStream.close();
+        channel.close();
       } catch (IOException ioe) {
         LOG.warn("Error happen when close " + path, ioe);
       }
@@ -19,7 +19,9 @@ package org.apache.uniffle.storage.handler.impl;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.nio.ByteBuffer;
 
+import io.netty.buffer.Unpooled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,6 +30,7 @@ import org.apache.uniffle.common.ShuffleIndexResult;
 import org.apache.uniffle.common.exception.FileNotFoundException;
 import org.apache.uniffle.common.exception.RssException;
 import org.apache.uniffle.common.netty.buffer.FileSegmentManagedBuffer;
+import org.apache.uniffle.common.netty.buffer.NettyManagedBuffer;
 import org.apache.uniffle.common.util.Constants;
 import org.apache.uniffle.storage.common.FileBasedShuffleSegment;
 import org.apache.uniffle.storage.handler.api.ServerReadHandler;
@@ -41,6 +44,11 @@ public class LocalFileServerReadHandler implements ServerReadHandler {
   private String appId;
   private int shuffleId;
   private int partitionId;
+  // the index is read from the file for every request if it's null
+  private final LocalFileIndexCache indexCache;
+  // the data is always read from the file if it's null
+  private final LocalFileReadAheadCache readAheadCache;
+  private long nextReadOffset = -1L;
 
   public LocalFileServerReadHandler(
       String appId,
@@ -49,9 +57,23 @@ public class LocalFileServerReadHandler implements ServerReadHandler {
       int partitionNumPerRange,
       int partitionNum,
       String path) {
+    this(appId, shuffleId, partitionId, partitionNumPerRange, partitionNum, path, null, null);
+  }
+
+  public LocalFileServerReadHandler(
+      String appId,
+      int shuffleId,
+      int partitionId,
+      int partitionNumPerRange,
+      int partitionNum,
+      String path,
+      LocalFileIndexCache indexCache,
+      LocalFileReadAheadCache readAheadCache) {
     this.appId = appId;
     this.shuffleId = shuffleId;
     this.partitionId = partitionId;
+    this.indexCache = indexCache;
+    this.readAheadCache = readAheadCache;
     init(appId, shuffleId, partitionId, partitionNumPerRange, partitionNum, path);
   }
 
@@ -132,13 +154,32 @@ public class LocalFileServerReadHandler implements ServerReadHandler {
 
   @Override
   public ShuffleDataResult getShuffleData(long offset, int length) {
-    return new ShuffleDataResult(
-        new FileSegmentManagedBuffer(new File(dataFileName), offset, length));
+    File dataFile = new File(dataFileName);
+    if (readAheadCache != null) {
+      // the next data is likely to be read with the same length after the sequential reads
+      if (isSequentialRead(offset, length)) {
+        readAheadCache.readAhead(dataFile, offset + length, length);
+      }
+      ByteBuffer data = readAheadCache.get(dataFile, offset, length);
+      if (data != null) {
+        return new ShuffleDataResult(new NettyManagedBuffer(Unpooled.wrappedBuffer(data)));
+      }
+    }
+    return new ShuffleDataResult(new FileSegmentManagedBuffer(dataFile, offset, length));
+  }
+
+  private synchronized boolean isSequentialRead(long offset, int length) {
+    boolean sequential = offset == nextReadOffset;
+    nextReadOffset = offset + length;
+    return sequential;
   }
 
   @Override
   public ShuffleIndexResult getShuffleIndex() {
     File indexFile = new File(indexFileName);
+    if (indexCache != null && !indexFileName.isEmpty()) {
+      return indexCache.get(indexFile, new File(dataFileName));
+    }
     long indexFileSize = indexFile.length();
     int indexNum = (int) (indexFileSize / FileBasedShuffleSegment.SEGMENT_SIZE);
     int len = indexNum * FileBasedShuffleSegment.SEGMENT_SIZE;
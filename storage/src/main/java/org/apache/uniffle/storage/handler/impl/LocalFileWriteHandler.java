@@ -20,15 +20,16 @@ package org.apache.uniffle.storage.handler.impl;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.google.common.annotations.VisibleForTesting;
+import io.netty.buffer.ByteBuf;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.uniffle.common.ShufflePartitionedBlock;
 import org.apache.uniffle.common.exception.RssException;
-import org.apache.uniffle.common.util.ByteBufUtils;
 import org.apache.uniffle.storage.common.FileBasedShuffleSegment;
 import org.apache.uniffle.storage.handler.api.ShuffleWriteHandler;
 import org.apache.uniffle.storage.util.ShuffleStorageUtils;
@@ -39,6 +40,10 @@ public class LocalFileWriteHandler implements ShuffleWriteHandler {
 
   private String fileNamePrefix;
   private String basePath;
+  // the files are opened and closed for every write if it's null
+  private final LocalFileWriterCache writerCache;
+  // the cached index of the partition is invalidated after being appended if it's not null
+  private final LocalFileIndexCache indexCache;
 
   public LocalFileWriteHandler(
       String appId,
@@ -47,7 +52,29 @@ public class LocalFileWriteHandler implements ShuffleWriteHandler {
       int endPartition,
       String storageBasePath,
       String fileNamePrefix) {
+    this(
+        appId,
+        shuffleId,
+        startPartition,
+        endPartition,
+        storageBasePath,
+        fileNamePrefix,
+        null,
+        null);
+  }
+
+  public LocalFileWriteHandler(
+      String appId,
+      int shuffleId,
+      int startPartition,
+      int endPartition,
+      String storageBasePath,
+      String fileNamePrefix,
+      LocalFileWriterCache writerCache,
+      LocalFileIndexCache indexCache) {
     this.fileNamePrefix = fileNamePrefix;
+    this.writerCache = writerCache;
+    this.indexCache = indexCache;
     this.basePath =
         ShuffleStorageUtils.getFullShuffleDataFolder(
             storageBasePath,
@@ -94,32 +121,36 @@ public class LocalFileWriteHandler implements ShuffleWriteHandler {
     long accessTime = System.currentTimeMillis();
     String dataFileName = ShuffleStorageUtils.generateDataFileName(fileNamePrefix);
     String indexFileName = ShuffleStorageUtils.generateIndexFileName(fileNamePrefix);
+    File dataFile = new File(basePath, dataFileName);
+    File indexFile = new File(basePath, indexFileName);
 
-    try (LocalFileWriter dataWriter = createWriter(dataFileName);
-        LocalFileWriter indexWriter = createWriter(indexFileName)) {
-
-      long startTime = System.currentTimeMillis();
-      for (ShufflePartitionedBlock block : shuffleBlocks) {
-        long blockId = block.getBlockId();
-        long crc = block.getCrc();
-        long startOffset = dataWriter.nextOffset();
-        dataWriter.writeData(ByteBufUtils.readBytes(block.getData()));
-
-        FileBasedShuffleSegment segment =
-            new FileBasedShuffleSegment(
-                blockId,
-                startOffset,
-                block.getLength(),
-                block.getUncompressLength(),
-                crc,
-                block.getTaskAttemptId());
-        indexWriter.writeIndex(segment);
+    try {
+      if (writerCache == null) {
+        try (LocalFileWriter dataWriter = createWriter(dataFileName);
+            LocalFileWriter indexWriter = createWriter(indexFileName)) {
+          write(dataWriter, indexWriter, shuffleBlocks);
+        }
+      } else {
+        LocalFileWriter dataWriter = writerCache.acquire(dataFile);
+        LocalFileWriter indexWriter = null;
+        try {
+          indexWriter = writerCache.acquire(indexFile);
+          write(dataWriter, indexWriter, shuffleBlocks);
+        } catch (Exception e) {
+          // the offsets of the writers may be wrong, reopen the files next time
+          writerCache.invalidate(dataFile);
+          writerCache.invalidate(indexFile);
+          throw e;
+        } finally {
+          writerCache.release(dataWriter);
+          if (indexWriter != null) {
+            writerCache.release(indexWriter);
+          }
+        }
       }
-      if (LOG.isDebugEnabled()) {
-        LOG.debug(
-            "Write handler write {} blocks cost {} ms without file open close",
-            shuffleBlocks.size(),
-            (System.currentTimeMillis() - startTime));
+    } finally {
+      if (indexCache != null) {
+        indexCache.invalidate(indexFile);
       }
     }
     if (LOG.isDebugEnabled()) {
@@ -130,6 +161,41 @@ public class LocalFileWriteHandler implements ShuffleWriteHandler {
     }
   }
 
+  private void write(
+      LocalFileWriter dataWriter,
+      LocalFileWriter indexWriter,
+      List<ShufflePartitionedBlock> shuffleBlocks)
+      throws IOException {
+    long startTime = System.currentTimeMillis();
+    List<ByteBuf> dataList = new ArrayList<>(shuffleBlocks.size());
+    for (ShufflePartitionedBlock block : shuffleBlocks) {
+      dataList.add(block.getData());
+    }
+    long startOffset = dataWriter.nextOffset();
+    // write all the data at once without copying, then the index of the written data
+    dataWriter.writeData(dataList);
+    dataWriter.flush();
+    for (ShufflePartitionedBlock block : shuffleBlocks) {
+      FileBasedShuffleSegment segment =
+          new FileBasedShuffleSegment(
+              block.getBlockId(),
+              startOffset,
+              block.getLength(),
+              block.getUncompressLength(),
+              block.getCrc(),
+              block.getTaskAttemptId());
+      indexWriter.writeIndex(segment);
+      startOffset += block.getData().readableBytes();
+    }
+    indexWriter.flush();
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(
+          "Write handler write {} blocks cost {} ms without file open close",
+          shuffleBlocks.size(),
+          (System.currentTimeMillis() - startTime));
+    }
+  }
+
   private LocalFileWriter createWriter(String fileName) throws IOException, IllegalStateException {
     File file = new File(basePath, fileName);
     return new LocalFileWriter(file);
@@ -17,53 +17,149 @@
 
 package org.apache.uniffle.storage.handler.impl;
 
-import java.io.BufferedOutputStream;
 import java.io.Closeable;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
 
 import org.apache.uniffle.storage.api.FileWriter;
 import org.apache.uniffle.storage.common.FileBasedShuffleSegment;
+import org.apache.uniffle.storage.util.FileSyncPolicy;
 
 public class LocalFileWriter implements FileWriter, Closeable {
 
-  private DataOutputStream dataOutputStream;
-  private FileOutputStream fileOutputStream;
+  private static final int WRITE_BUFFER_SIZE = 8192;
+
+  private final FileChannel fileChannel;
+  // buffer the small writes, e.g. the index
+  private final ByteBuffer writeBuffer;
+  private final FileSyncPolicy syncPolicy;
   private long nextOffset;
+  // the references of the cache and the users, the writer is closed when it's 0
+  private int refCount = 1;
 
   public LocalFileWriter(File file) throws IOException {
-    fileOutputStream = new FileOutputStream(file, true);
-    // init fsDataOutputStream
-    dataOutputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+    this(file, FileSyncPolicy.NONE);
+  }
+
+  public LocalFileWriter(File file, FileSyncPolicy syncPolicy) throws IOException {
+    fileChannel =
+        FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+    writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    this.syncPolicy = syncPolicy;
     nextOffset = file.length();
   }
 
   public void writeData(byte[] data) throws IOException {
     if (data != null && data.length > 0) {
-      dataOutputStream.write(data);
+      flushWriteBuffer();
+      writeFully(new ByteBuffer[] {ByteBuffer.wrap(data)});
       nextOffset = nextOffset + data.length;
     }
   }
 
+  /**
+   * Write the readable bytes of the buffers by gathering writes, so the data isn't copied to the
+   * heap. The reader indexes of the buffers aren't changed.
+   */
+  public void writeData(List<ByteBuf> dataList) throws IOException {
+    List<ByteBuffer> nioBuffers = new ArrayList<>();
+    long length = 0L;
+    for (ByteBuf data : dataList) {
+      if (data != null && data.isReadable()) {
+        for (ByteBuffer nioBuffer : data.nioBuffers()) {
+          nioBuffers.add(nioBuffer);
+        }
+        length += data.readableBytes();
+      }
+    }
+    if (length > 0) {
+      flushWriteBuffer();
+      writeFully(nioBuffers.toArray(new ByteBuffer[0]));
+      nextOffset = nextOffset + length;
+    }
+  }
+
   public void writeIndex(FileBasedShuffleSegment segment) throws IOException {
-    dataOutputStream.writeLong(segment.getOffset());
-    dataOutputStream.writeInt(segment.getLength());
-    dataOutputStream.writeInt(segment.getUncompressLength());
-    dataOutputStream.writeLong(segment.getCrc());
-    dataOutputStream.writeLong(segment.getBlockId());
-    dataOutputStream.writeLong(segment.getTaskAttemptId());
+    if (writeBuffer.remaining() < FileBasedShuffleSegment.SEGMENT_SIZE) {
+      flushWriteBuffer();
+    }
+    writeBuffer.putLong(segment.getOffset());
+    writeBuffer.putInt(segment.getLength());
+    writeBuffer.putInt(segment.getUncompressLength());
+    writeBuffer.putLong(segment.getCrc());
+    writeBuffer.putLong(segment.getBlockId());
+    writeBuffer.putLong(segment.getTaskAttemptId());
   }
 
   public long nextOffset() {
     return nextOffset;
   }
 
+  /** Write the buffered data to the file, and sync it to the disk if required by the policy. */
+  public void flush() throws IOException {
+    flushWriteBuffer();
+    if (syncPolicy == FileSyncPolicy.WRITE) {
+      fileChannel.force(false);
+    }
+  }
+
+  synchronized boolean retain() {
+    if (refCount <= 0) {
+      return false;
+    }
+    refCount++;
+    return true;
+  }
+
+  void release() throws IOException {
+    synchronized (this) {
+      if (refCount <= 0 || --refCount > 0) {
+        return;
+      }
+    }
+    close();
+  }
+
+  private void flushWriteBuffer() throws IOException {
+    if (writeBuffer.position() > 0) {
+      writeBuffer.flip();
+      writeFully(new ByteBuffer[] {writeBuffer});
+      writeBuffer.clear();
+    }
+  }
+
+  private void writeFully(ByteBuffer[] buffers) throws IOException {
+    int index = 0;
+    while (index < buffers.length) {
+      fileChannel.write(buffers, index, buffers.length - index);
+      while (index < buffers.length && !buffers[index].hasRemaining()) {
+        index++;
+      }
+    }
+  }
+
   @Override
   public synchronized void close() throws IOException {
-    if (dataOutputStream != null) {
-      dataOutputStream.close();
+    if (fileChannel.isOpen()) {
+      try {
+        flushWriteBuffer();
+        if (syncPolicy != FileSyncPolicy.NONE) {
+          fileChannel.force(false);
+        }
+      } finally {
+        fileChannel.close();
+      }
     }
   }
 }
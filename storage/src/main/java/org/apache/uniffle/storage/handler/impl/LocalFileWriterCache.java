@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.storage.handler.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.uniffle.common.util.ThreadUtils;
+import org.apache.uniffle.storage.util.FileSyncPolicy;
+
+/**
+ * A bounded LRU cache of the open local file writers, so the files which are flushed again and
+ * again don't need to be opened and closed every time. The writers are closed once they are
+ * evicted or idle, and after the users release them.
+ */
+public class LocalFileWriterCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LocalFileWriterCache.class);
+  private static final ScheduledExecutorService CLEANER =
+      ThreadUtils.getDaemonSingleThreadScheduledExecutor("localFileWriterCacheCleaner");
+
+  // file path -> writer
+  private final Cache<String, LocalFileWriter> writers;
+  private final FileSyncPolicy syncPolicy;
+  private final ScheduledFuture<?> cleanUpFuture;
+
+  public LocalFileWriterCache(long maxSize, long idleTimeoutMs, FileSyncPolicy syncPolicy) {
+    this.syncPolicy = syncPolicy;
+    this.writers =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterAccess(idleTimeoutMs, TimeUnit.MILLISECONDS)
+            .removalListener(
+                (RemovalListener<String, LocalFileWriter>)
+                    notification -> release(notification.getValue()))
+            .build();
+    // the idle writers are only evicted by the cache operations, so clean up them periodically
+    long cleanUpInterval = Math.max(idleTimeoutMs / 2, 1000L);
+    this.cleanUpFuture =
+        CLEANER.scheduleWithFixedDelay(
+            writers::cleanUp, cleanUpInterval, cleanUpInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /** Get the writer of the file, which must be released after being used. */
+  public LocalFileWriter acquire(File file) throws IOException {
+    String path = file.getPath();
+    while (true) {
+      LocalFileWriter writer;
+      try {
+        writer = writers.get(path, () -> new LocalFileWriter(file, syncPolicy));
+      } catch (ExecutionException e) {
+        throw e.getCause() instanceof IOException
+            ? (IOException) e.getCause()
+            : new IOException(e.getCause());
+      }
+      if (writer.retain()) {
+        return writer;
+      }
+      // the writer is closed by the eviction just now
+      writers.asMap().remove(path, writer);
+    }
+  }
+
+  public void release(LocalFileWriter writer) {
+    try {
+      writer.release();
+    } catch (IOException e) {
+      LOG.warn("Failed to close the local file writer", e);
+    }
+  }
+
+  /** Close the writer of the file, e.g. its offset is unknown after failing to write. */
+  public void invalidate(File file) {
+    writers.invalidate(file.getPath());
+  }
+
+  /** Close the writers of the files under the folder, which is going to be deleted. */
+  public void invalidateAll(String folder) {
+    String prefix = new File(folder).getPath() + File.separator;
+    writers.asMap().keySet().removeIf(path -> path.startsWith(prefix));
+  }
+
+  public FileSyncPolicy getSyncPolicy() {
+    return syncPolicy;
+  }
+
+  public void close() {
+    cleanUpFuture.cancel(false);
+    writers.invalidateAll();
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.storage.handler.impl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import org.apache.uniffle.common.ShuffleDataResult;
+import org.apache.uniffle.common.ShuffleIndexResult;
+import org.apache.uniffle.common.ShufflePartitionedBlock;
+import org.apache.uniffle.common.exception.RssException;
+import org.apache.uniffle.common.util.JavaUtils;
+import org.apache.uniffle.storage.common.FileBasedShuffleSegment;
+import org.apache.uniffle.storage.util.FileSyncPolicy;
+import org.apache.uniffle.storage.util.ShuffleStorageUtils;
+
+/**
+ * The data and index of all the partitions of a shuffle on a disk, which are appended to a pair of
+ * files so the disk is written sequentially. Every partition sees its data as a continuous file,
+ * its index records the offsets in this virtual file, and the extents of every partition map the
+ * virtual file to the real files.
+ */
+public class LocalMergedFile implements Closeable {
+
+  private final String basePath;
+  private final File dataFile;
+  private final File indexFile;
+  private final FileSyncPolicy syncPolicy;
+  // partition -> extents
+  private final Map<Integer, PartitionExtents> partitions = JavaUtils.newConcurrentMap();
+  // opened on demand and reopened after failures, guarded by this
+  private LocalFileWriter dataWriter;
+  private LocalFileWriter indexWriter;
+  private volatile boolean closed = false;
+
+  public LocalMergedFile(String basePath, String fileNamePrefix, FileSyncPolicy syncPolicy) {
+    this.basePath = basePath;
+    this.dataFile = new File(basePath, ShuffleStorageUtils.generateDataFileName(fileNamePrefix));
+    this.indexFile = new File(basePath, ShuffleStorageUtils.generateIndexFileName(fileNamePrefix));
+    this.syncPolicy = syncPolicy;
+  }
+
+  public synchronized void append(int partition, List<ShufflePartitionedBlock> blocks)
+      throws IOException {
+    if (closed) {
+      // fail the flush instead of dropping the blocks silently, the flush of the deleted app or
+      // shuffle is dropped when it's retried
+      throw new RssException(
+          dataFile.getAbsolutePath() + " is closed, the app or shuffle may be deleted");
+    }
+    PartitionExtents extents = partitions.computeIfAbsent(partition, x -> new PartitionExtents());
+    List<ByteBuf> dataList = new ArrayList<>(blocks.size());
+    ByteBuf index = Unpooled.buffer(blocks.size() * FileBasedShuffleSegment.SEGMENT_SIZE);
+    long virtualOffset = extents.getDataLength();
+    long dataLength = 0L;
+    for (ShufflePartitionedBlock block : blocks) {
+      dataList.add(block.getData());
+      index.writeLong(virtualOffset + dataLength);
+      index.writeInt(block.getLength());
+      index.writeInt(block.getUncompressLength());
+      index.writeLong(block.getCrc());
+      index.writeLong(block.getBlockId());
+      index.writeLong(block.getTaskAttemptId());
+      dataLength += block.getData().readableBytes();
+    }
+    try {
+      openWriters();
+      long dataOffset = dataWriter.nextOffset();
+      long indexOffset = indexWriter.nextOffset();
+      dataWriter.writeData(dataList);
+      dataWriter.flush();
+      indexWriter.writeData(Collections.singletonList(index));
+      indexWriter.flush();
+      extents.add(dataOffset, dataLength, indexOffset, index.readableBytes());
+    } catch (IOException e) {
+      // the written length is unknown, reopen the files to get it
+      closeWriters();
+      throw e;
+    }
+  }
+
+  public ShuffleIndexResult getShuffleIndex(int partition) {
+    PartitionExtents extents = partitions.get(partition);
+    if (extents == null) {
+      return new ShuffleIndexResult();
+    }
+    long[][] snapshot = extents.snapshot();
+    long[] indexOffsets = snapshot[3];
+    long[] indexLengths = snapshot[4];
+    long totalLength = Arrays.stream(indexLengths).sum();
+    if (totalLength > Integer.MAX_VALUE) {
+      throw new RssException("Too large index of partition " + partition + " in " + indexFile);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate((int) totalLength);
+    try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+      for (int i = 0; i < indexOffsets.length; i++) {
+        buffer.limit(buffer.position() + (int) indexLengths[i]);
+        readFully(channel, buffer, indexOffsets[i]);
+      }
+    } catch (IOException e) {
+      throw new RssException("Error in reading the index of partition " + partition, e);
+    }
+    buffer.flip();
+    // the length of the partition's virtual file which is indexed
+    return new ShuffleIndexResult(buffer, Arrays.stream(snapshot[2]).sum());
+  }
+
+  /** Read the data of the partition, the offset is the one of the partition's virtual file. */
+  public ShuffleDataResult getShuffleData(int partition, long offset, int length) {
+    PartitionExtents extents = partitions.get(partition);
+    if (extents == null || length <= 0) {
+      return new ShuffleDataResult();
+    }
+    long[][] snapshot = extents.snapshot();
+    long[] virtualOffsets = snapshot[0];
+    long[] dataOffsets = snapshot[1];
+    long[] dataLengths = snapshot[2];
+    // the last extent starting before the offset
+    int i = Arrays.binarySearch(virtualOffsets, offset);
+    if (i < 0) {
+      i = -i - 2;
+    }
+    if (i < 0) {
+      throw new RssException("Invalid offset " + offset + " of partition " + partition);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+      long position = offset;
+      for (; i < virtualOffsets.length && buffer.hasRemaining(); i++) {
+        long skip = position - virtualOffsets[i];
+        int readLength = (int) Math.min(buffer.remaining(), dataLengths[i] - skip);
+        buffer.limit(buffer.position() + readLength);
+        readFully(channel, buffer, dataOffsets[i] + skip);
+        buffer.limit(buffer.capacity());
+        position += readLength;
+      }
+    } catch (IOException e) {
+      throw new RssException("Error in reading the data of partition " + partition, e);
+    }
+    if (buffer.hasRemaining()) {
+      throw new RssException(
+          "Reached the end of partition " + partition + " before reading " + length + " bytes");
+    }
+    return new ShuffleDataResult(buffer.array());
+  }
+
+  public String getBasePath() {
+    return basePath;
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    closeWriters();
+  }
+
+  private void openWriters() throws IOException {
+    if (dataWriter == null) {
+      Files.createDirectories(dataFile.getParentFile().toPath());
+      dataWriter = new LocalFileWriter(dataFile, syncPolicy);
+      indexWriter = new LocalFileWriter(indexFile, syncPolicy);
+    }
+  }
+
+  private void closeWriters() {
+    JavaUtils.closeQuietly(dataWriter);
+    JavaUtils.closeQuietly(indexWriter);
+    dataWriter = null;
+    indexWriter = null;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("Reached EOF at " + position);
+      }
+      position += read;
+    }
+  }
+
+  private static class PartitionExtents {
+    private long[] virtualOffsets = new long[4];
+    private long[] dataOffsets = new long[4];
+    private long[] dataLengths = new long[4];
+    private long[] indexOffsets = new long[4];
+    private long[] indexLengths = new long[4];
+    private int num = 0;
+    private volatile long dataLength = 0L;
+
+    long getDataLength() {
+      return dataLength;
+    }
+
+    synchronized void add(long dataOffset, long length, long indexOffset, long indexLength) {
+      if (num == virtualOffsets.length) {
+        int newLength = num * 2;
+        virtualOffsets = Arrays.copyOf(virtualOffsets, newLength);
+        dataOffsets = Arrays.copyOf(dataOffsets, newLength);
+        dataLengths = Arrays.copyOf(dataLengths, newLength);
+        indexOffsets = Arrays.copyOf(indexOffsets, newLength);
+        indexLengths = Arrays.copyOf(indexLengths, newLength);
+      }
+      virtualOffsets[num] = dataLength;
+      dataOffsets[num] = dataOffset;
+      dataLengths[num] = length;
+      indexOffsets[num] = indexOffset;
+      indexLengths[num] = indexLength;
+      num++;
+      dataLength += length;
+    }
+
+    /** Return the virtual offsets, data offsets, data lengths, index offsets and index lengths. */
+    synchronized long[][] snapshot() {
+      return new long[][] {
+        Arrays.copyOf(virtualOffsets, num),
+        Arrays.copyOf(dataOffsets, num),
+        Arrays.copyOf(dataLengths, num),
+        Arrays.copyOf(indexOffsets, num),
+        Arrays.copyOf(indexLengths, num)
+      };
+    }
+  }
+}
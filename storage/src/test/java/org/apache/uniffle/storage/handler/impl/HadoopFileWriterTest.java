@@ -20,8 +20,11 @@ package org.apache.uniffle.storage.handler.impl;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Random;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -163,4 +166,50 @@ public class HadoopFileWriterTest extends HadoopTestBase {
       assertEquals(23, in.readLong());
     }
   }
+
+  @Test
+  public void writeBatchTest() throws IOException {
+    byte[] data = new byte[32];
+    new Random().nextBytes(data);
+    ByteBuf buf = Unpooled.wrappedBuffer(data);
+    buf.readerIndex(16);
+
+    Path dataPath = new Path(HDFS_URI, "writeBatchTest.data");
+    try (HadoopFileWriter writer = new HadoopFileWriter(fs, dataPath, conf)) {
+      writer.writeData(buf);
+      assertEquals(16, writer.nextOffset());
+      // the buffer is not consumed
+      assertEquals(16, buf.readerIndex());
+    }
+    // the existing file is appended directly
+    try (HadoopFileWriter writer = new HadoopFileWriter(fs, dataPath, conf, true)) {
+      assertEquals(16, writer.nextOffset());
+      writer.writeData(buf);
+      assertEquals(32, writer.nextOffset());
+    }
+
+    Path indexPath = new Path(HDFS_URI, "writeBatchTest.index");
+    try (HadoopFileWriter writer = new HadoopFileWriter(fs, indexPath, conf)) {
+      writer.writeIndex(
+          Arrays.asList(
+              new FileBasedShuffleSegment(23, 0, 16, 32, 0xdeadbeef, 1),
+              new FileBasedShuffleSegment(24, 16, 16, 32, 0xcafebabe, 2)));
+    }
+
+    assertEquals(2 * FileBasedShuffleSegment.SEGMENT_SIZE, fs.getFileStatus(indexPath).getLen());
+    try (FSDataInputStream in = fs.open(indexPath)) {
+      assertEquals(0, in.readLong());
+      assertEquals(16, in.readInt());
+      assertEquals(32, in.readInt());
+      assertEquals(0xdeadbeef, in.readLong());
+      assertEquals(23, in.readLong());
+      assertEquals(1, in.readLong());
+      assertEquals(16, in.readLong());
+      assertEquals(16, in.readInt());
+      assertEquals(32, in.readInt());
+      assertEquals(0xcafebabe, in.readLong());
+      assertEquals(24, in.readLong());
+      assertEquals(2, in.readLong());
+    }
+  }
 }
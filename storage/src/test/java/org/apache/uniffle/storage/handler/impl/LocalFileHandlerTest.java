@@ -19,22 +19,36 @@ package org.apache.uniffle.storage.handler.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.awaitility.Awaitility;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import org.apache.uniffle.common.ShuffleDataResult;
 import org.apache.uniffle.common.ShuffleIndexResult;
 import org.apache.uniffle.common.config.RssBaseConf;
+import org.apache.uniffle.common.exception.RssException;
+import org.apache.uniffle.common.netty.buffer.FileSegmentManagedBuffer;
+import org.apache.uniffle.storage.common.FileBasedShuffleSegment;
+import org.apache.uniffle.storage.util.FileSyncPolicy;
 import org.apache.uniffle.storage.util.ShuffleStorageUtils;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class LocalFileHandlerTest {
@@ -140,6 +154,174 @@ public class LocalFileHandlerTest {
     }
   }
 
+  @Test
+  public void writeWithWriterCacheTest(@TempDir File tmpDir) throws Exception {
+    String basePath = tmpDir.getAbsolutePath();
+    // the writers are evicted while being used with only 1 writer cached
+    for (long cacheSize : new long[] {1, 10}) {
+      LocalFileWriterCache writerCache =
+          new LocalFileWriterCache(cacheSize, 60000, FileSyncPolicy.WRITE);
+      String appId = "app" + cacheSize;
+      LocalFileWriteHandler writeHandler =
+          new LocalFileWriteHandler(appId, 0, 1, 1, basePath, "pre", writerCache, null);
+      Map<Long, byte[]> expectedData = Maps.newHashMap();
+      Set<Long> expectedBlockIds = Sets.newHashSet();
+      for (int i = 1; i <= 3; i++) {
+        LocalFileHandlerTestBase.writeTestData(
+            LocalFileHandlerTestBase.generateBlocks(i, 32),
+            writeHandler,
+            expectedData,
+            expectedBlockIds);
+      }
+      LocalFileServerReadHandler readHandler =
+          new LocalFileServerReadHandler(appId, 0, 1, 1, 10, basePath);
+      LocalFileHandlerTestBase.validateResult(readHandler, expectedBlockIds, expectedData);
+
+      // the files are reopened after the writers are closed by purging
+      writerCache.invalidateAll(ShuffleStorageUtils.getFullShuffleDataFolder(basePath, appId));
+      LocalFileHandlerTestBase.writeTestData(
+          LocalFileHandlerTestBase.generateBlocks(2, 32),
+          writeHandler,
+          expectedData,
+          expectedBlockIds);
+      LocalFileHandlerTestBase.validateResult(readHandler, expectedBlockIds, expectedData);
+      writerCache.close();
+    }
+  }
+
+  @Test
+  public void readWithIndexCacheTest(@TempDir File tmpDir) throws Exception {
+    String basePath = tmpDir.getAbsolutePath();
+    LocalFileIndexCache indexCache = new LocalFileIndexCache(1024 * 1024);
+    LocalFileWriteHandler writeHandler =
+        new LocalFileWriteHandler("appId", 0, 1, 1, basePath, "pre", null, indexCache);
+    Map<Long, byte[]> expectedData = Maps.newHashMap();
+    Set<Long> expectedBlockIds = Sets.newHashSet();
+    LocalFileHandlerTestBase.writeTestData(
+        LocalFileHandlerTestBase.generateBlocks(3, 32),
+        writeHandler,
+        expectedData,
+        expectedBlockIds);
+    LocalFileServerReadHandler readHandler =
+        new LocalFileServerReadHandler("appId", 0, 1, 1, 10, basePath, indexCache, null);
+    LocalFileHandlerTestBase.validateResult(readHandler, expectedBlockIds, expectedData);
+    ByteBuffer index = readHandler.getShuffleIndex().getIndexData();
+    assertEquals(3 * FileBasedShuffleSegment.SEGMENT_SIZE, index.remaining());
+
+    // the appended index is visible after the cached one is invalidated by the writer
+    LocalFileHandlerTestBase.writeTestData(
+        LocalFileHandlerTestBase.generateBlocks(2, 32),
+        writeHandler,
+        expectedData,
+        expectedBlockIds);
+    LocalFileHandlerTestBase.validateResult(readHandler, expectedBlockIds, expectedData);
+    ShuffleIndexResult appended = readHandler.getShuffleIndex();
+    ByteBuffer appendedIndex = appended.getIndexData();
+    assertEquals(5 * FileBasedShuffleSegment.SEGMENT_SIZE, appendedIndex.remaining());
+    assertEquals(5 * 32, appended.getDataFileLen());
+    // only the appended entries are read, the index returned before is unchanged
+    appendedIndex.limit(appendedIndex.position() + index.remaining());
+    assertEquals(index, appendedIndex);
+
+    indexCache.invalidateAll(ShuffleStorageUtils.getFullShuffleDataFolder(basePath, "appId"));
+    LocalFileHandlerTestBase.validateResult(readHandler, expectedBlockIds, expectedData);
+    indexCache.close();
+  }
+
+  @Test
+  public void readAheadTest(@TempDir File tmpDir) throws Exception {
+    String basePath = tmpDir.getAbsolutePath();
+    LocalFileWriteHandler writeHandler =
+        new LocalFileWriteHandler("appId", 0, 1, 1, basePath, "pre");
+    Map<Long, byte[]> expectedData = Maps.newHashMap();
+    Set<Long> expectedBlockIds = Sets.newHashSet();
+    LocalFileHandlerTestBase.writeTestData(
+        LocalFileHandlerTestBase.generateBlocks(8, 32),
+        writeHandler,
+        expectedData,
+        expectedBlockIds);
+    File dataFile = new File(writeHandler.getBasePath(), "pre.data");
+    byte[] data = Files.readAllBytes(dataFile.toPath());
+
+    LocalFileReadAheadCache readAheadCache = new LocalFileReadAheadCache(1024, 64);
+    LocalFileServerReadHandler readHandler =
+        new LocalFileServerReadHandler("appId", 0, 1, 1, 10, basePath, null, readAheadCache);
+    assertArrayEquals(Arrays.copyOfRange(data, 0, 64), readHandler.getShuffleData(0, 64).getData());
+    // the next chunk is read ahead after the sequential reads
+    assertArrayEquals(
+        Arrays.copyOfRange(data, 64, 128), readHandler.getShuffleData(64, 64).getData());
+    Awaitility.await()
+        .atMost(5, TimeUnit.SECONDS)
+        .until(() -> readAheadCache.get(dataFile, 128, 64) != null);
+    ShuffleDataResult result = readHandler.getShuffleData(128, 64);
+    assertFalse(result.getManagedBuffer() instanceof FileSegmentManagedBuffer);
+    assertArrayEquals(Arrays.copyOfRange(data, 128, 192), result.getData());
+    Awaitility.await()
+        .atMost(5, TimeUnit.SECONDS)
+        .until(() -> readAheadCache.get(dataFile, 192, 64) != null);
+    // the data across the chunks is served too
+    assertEquals(ByteBuffer.wrap(data, 160, 64), readAheadCache.get(dataFile, 160, 64));
+
+    readAheadCache.invalidateAll(ShuffleStorageUtils.getFullShuffleDataFolder(basePath, "appId"));
+    assertNull(readAheadCache.get(dataFile, 128, 64));
+    assertArrayEquals(
+        Arrays.copyOfRange(data, 192, 256), readHandler.getShuffleData(192, 64).getData());
+    readAheadCache.close();
+  }
+
+  @Test
+  public void writeMergedFileTest(@TempDir File tmpDir) throws Exception {
+    LocalMergedFile mergedFile =
+        new LocalMergedFile(
+            ShuffleStorageUtils.getFullShuffleDataFolder(tmpDir.getAbsolutePath(), "appId/0"),
+            "pre",
+            FileSyncPolicy.NONE);
+    LocalMergedFileWriteHandler writeHandler1 = new LocalMergedFileWriteHandler(mergedFile, 1);
+    LocalMergedFileWriteHandler writeHandler2 = new LocalMergedFileWriteHandler(mergedFile, 2);
+    Map<Long, byte[]> expectedData = Maps.newHashMap();
+    Set<Long> expectedBlockIds1 = Sets.newHashSet();
+    Set<Long> expectedBlockIds2 = Sets.newHashSet();
+    // the data of the partitions is interleaved in the merged file
+    for (int i = 1; i <= 4; i++) {
+      LocalFileHandlerTestBase.writeTestData(
+          LocalFileHandlerTestBase.generateBlocks(i, 32),
+          writeHandler1,
+          expectedData,
+          expectedBlockIds1);
+      LocalFileHandlerTestBase.writeTestData(
+          LocalFileHandlerTestBase.generateBlocks(5 - i, 32),
+          writeHandler2,
+          expectedData,
+          expectedBlockIds2);
+    }
+    assertEquals(2, tmpDir.toPath().resolve("appId/0").toFile().list().length);
+
+    LocalMergedFileServerReadHandler readHandler1 =
+        new LocalMergedFileServerReadHandler(mergedFile, 1);
+    LocalMergedFileServerReadHandler readHandler2 =
+        new LocalMergedFileServerReadHandler(mergedFile, 2);
+    LocalFileHandlerTestBase.validateResult(readHandler1, expectedBlockIds1, expectedData);
+    LocalFileHandlerTestBase.validateResult(readHandler2, expectedBlockIds2, expectedData);
+    assertEquals(320, readHandler1.getShuffleIndex().getDataFileLen());
+    assertTrue(new LocalMergedFileServerReadHandler(mergedFile, 3).getShuffleIndex().isEmpty());
+    // the index entries of all the writes are read together
+    assertEquals(
+        10 * FileBasedShuffleSegment.SEGMENT_SIZE,
+        readHandler1.getShuffleIndex().getIndexData().remaining());
+
+    // the writes fail after the merged file is closed
+    mergedFile.close();
+    assertThrows(
+        RssException.class,
+        () ->
+            LocalFileHandlerTestBase.writeTestData(
+                LocalFileHandlerTestBase.generateBlocks(1, 32),
+                writeHandler1,
+                Maps.newHashMap(),
+                Sets.newHashSet()));
+    assertEquals(320, readHandler1.getShuffleIndex().getDataFileLen());
+  }
+
   @Test
   public void writeBigDataTest(@TempDir File tmpDir) throws IOException {
     File writeFile = new File(tmpDir, "writetest");
@@ -153,6 +335,28 @@ public class LocalFileHandlerTest {
     assertEquals(writer.nextOffset(), totalSize);
   }
 
+  @Test
+  public void writeByteBufsTest(@TempDir File tmpDir) throws IOException {
+    File writeFile = new File(tmpDir, "writetest");
+    ByteBuf heapBuf = Unpooled.wrappedBuffer(new byte[] {1, 2, 3});
+    ByteBuf directBuf = Unpooled.directBuffer(2).writeBytes(new byte[] {4, 5});
+    ByteBuf compositeBuf =
+        Unpooled.wrappedBuffer(
+            Unpooled.wrappedBuffer(new byte[] {6}), Unpooled.wrappedBuffer(new byte[] {7, 8}));
+    try (LocalFileWriter writer = new LocalFileWriter(writeFile)) {
+      writer.writeData(new byte[] {0});
+      writer.writeData(Arrays.asList(heapBuf, directBuf, Unpooled.EMPTY_BUFFER, compositeBuf));
+      assertEquals(9, writer.nextOffset());
+    }
+    assertArrayEquals(
+        new byte[] {0, 1, 2, 3, 4, 5, 6, 7, 8}, Files.readAllBytes(writeFile.toPath()));
+    // the written buffers can be read again
+    assertEquals(3, heapBuf.readableBytes());
+    assertEquals(2, directBuf.readableBytes());
+    assertEquals(3, compositeBuf.readableBytes());
+    directBuf.release();
+  }
+
   @Test
   public void testReadIndex() {}
 }
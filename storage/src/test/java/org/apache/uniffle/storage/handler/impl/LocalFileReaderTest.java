@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.uniffle.storage.handler.impl;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LocalFileReaderTest {
+
+  @Test
+  public void readDataTest(@TempDir File tmpDir) throws Exception {
+    File file = new File(tmpDir, "readDataTest");
+    byte[] data = new byte[160];
+    new Random().nextBytes(data);
+    Files.write(file.toPath(), data);
+
+    try (LocalFileReader reader = new LocalFileReader(file.getAbsolutePath())) {
+      // the positional reads don't depend on the previous reads
+      assertArrayEquals(Arrays.copyOfRange(data, 128, 160), reader.read(128, 32));
+      assertArrayEquals(Arrays.copyOfRange(data, 0, 32), reader.read(0, 32));
+      ByteBuffer buffer = reader.readAsByteBuffer(64, 32);
+      assertTrue(buffer.isDirect());
+      assertEquals(ByteBuffer.wrap(data, 64, 32), buffer);
+      // EOF is expected
+      assertEquals(0, reader.read(256, 32).length);
+      assertEquals(0, reader.readAsByteBuffer(256, 32).remaining());
+
+      // read the multiple ranges into the buffers of the caller
+      ByteBuffer[] buffers = {ByteBuffer.allocateDirect(16), ByteBuffer.allocate(8)};
+      assertTrue(reader.read(new long[] {100, 10}, buffers));
+      buffers[0].flip();
+      buffers[1].flip();
+      assertEquals(ByteBuffer.wrap(data, 100, 16), buffers[0]);
+      assertEquals(ByteBuffer.wrap(data, 10, 8), buffers[1]);
+      assertFalse(reader.read(new long[] {150}, new ByteBuffer[] {ByteBuffer.allocate(16)}));
+
+      assertArrayEquals(data, reader.read());
+      assertEquals(0, reader.read().length);
+    }
+  }
+
+  @Test
+  public void concurrentReadTest(@TempDir File tmpDir) throws Exception {
+    File file = new File(tmpDir, "concurrentReadTest");
+    byte[] data = new byte[1024 * 1024];
+    new Random().nextBytes(data);
+    Files.write(file.toPath(), data);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try (LocalFileReader reader = new LocalFileReader(file.getAbsolutePath())) {
+      Future<?>[] futures = new Future<?>[16];
+      for (int i = 0; i < futures.length; i++) {
+        int offset = i * 1024;
+        futures[i] =
+            executor.submit(
+                () -> {
+                  for (int j = 0; j < 64; j++) {
+                    int position = offset + j * 16 * 1024;
+                    assertArrayEquals(
+                        Arrays.copyOfRange(data, position, position + 1024),
+                        reader.read(position, 1024));
+                  }
+                });
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}